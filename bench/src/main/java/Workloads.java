@@ -0,0 +1,358 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Operations measured by the benchmarks in the <code>bench</code> package.
+ * <p>
+ * JMH refuses benchmark classes in the default package, and a named package
+ * can't refer to classes in the default package, so this class builds the
+ * inputs and hands each operation over as a {@link Supplier}.
+ * The benchmarks look it up once during setup, see {@link bench.Workload}.
+ */
+public final class Workloads {
+    private Workloads() {
+    }
+
+    /**
+     * The visualizer's transform of a 3 by N point matrix by a precomposed 3x3 matrix.
+     */
+    public static Supplier<Object> transform(int points) {
+        Matrix t = Matrix.product(Matrix.translationMatrix(10, 20), Matrix.rotationMatrix(5),
+                Matrix.translationMatrix(-10, -20));
+        Matrix data = Matrix.randomMatrix(3, points);
+        return () -> Matrix.product(t, data);
+    }
+
+    /**
+     * The visualizer's full (From Origin)*(Rotate)*(To Origin)*(data) chain.
+     */
+    public static Supplier<Object> transformChain(int points) {
+        Matrix from = Matrix.translationMatrix(10, 20);
+        Matrix rotation = Matrix.rotationMatrix(5);
+        Matrix to = Matrix.translationMatrix(-10, -20);
+        Matrix data = Matrix.randomMatrix(3, points);
+        return () -> Matrix.product(from, rotation, to, data);
+    }
+
+    /**
+     * The same transform through the fused in-place affine kernel.
+     */
+    public static Supplier<Object> affineTransform(int points) {
+        Affine2D t = Affine2D.about(Affine2D.rotation(5), 10, 20);
+        Matrix data = Matrix.randomMatrix(3, points);
+        return () -> {
+            t.transform(data);
+            return data;
+        };
+    }
+
+    public static Supplier<Object> squareProduct(int size) {
+        Matrix a = Matrix.randomMatrix(size, size);
+        Matrix b = Matrix.randomMatrix(size, size);
+        return () -> Matrix.product(a, b);
+    }
+
+    public static Supplier<Object> transposedProduct(int size) {
+        Matrix a = Matrix.randomMatrix(size, size);
+        Matrix b = Matrix.randomMatrix(size, size);
+        return () -> Matrix.product(a.transpose(), b);
+    }
+
+    /**
+     * The same product as {@link #squareProduct(int)}, into a reused destination.
+     */
+    public static Supplier<Object> squareProductInto(int size) {
+        Matrix a = Matrix.randomMatrix(size, size);
+        Matrix b = Matrix.randomMatrix(size, size);
+        Matrix dst = new Matrix(size, size);
+        return () -> Matrix.productInto(a, b, dst);
+    }
+
+    public static Supplier<Object> lu(int size) {
+        Matrix a = Matrix.randomMatrix(size, size);
+        return a::lu;
+    }
+
+    public static Supplier<Object> luSolve(int size) {
+        LU lu = Matrix.randomMatrix(size, size).lu();
+        Vector b = Matrix.randomMatrix(size, 1).getColumn(0);
+        return () -> lu.solve(b);
+    }
+
+    public static Supplier<Object> solveBatch(int size, int count) {
+        LinearSolver solver = LinearSolver.of(Matrix.randomMatrix(size, size), 0, LinearSolver.DEFAULT_BATCH_SIZE);
+        Matrix b = Matrix.randomMatrix(size, count);
+        return () -> solver.solve(b);
+    }
+
+    public static Supplier<Object> rref(int rows, int columns) {
+        Matrix a = Matrix.randomMatrix(rows, columns);
+        return () -> Matrix.rref(a);
+    }
+
+    /**
+     * Grows a 3 by 1 matrix to the given number of columns, one click at a time.
+     */
+    public static Supplier<Object> addColumn(int columns) {
+        float[] point = {1, 2, 1};
+        return () -> {
+            Matrix result = new Matrix(3, 1);
+            for (int i = 1; i < columns; i++) {
+                result = result.addColumn(point);
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Same growth as {@link #addColumn(int)}, through the amortized point buffer.
+     */
+    public static Supplier<Object> append(int columns) {
+        return () -> {
+            GrowableMatrix result = new GrowableMatrix(3);
+            for (int i = 0; i < columns; i++) {
+                result.append(1, 2, 1);
+            }
+            return result;
+        };
+    }
+
+    public static Supplier<Object> vectorize(int rows, int columns) {
+        Matrix a = Matrix.randomMatrix(rows, columns);
+        return () -> {
+            a.vectorize(value -> value * 0.5f + 1, true);
+            return a;
+        };
+    }
+
+    /**
+     * One in-place pass over the entries, as in {@link #vectorize(int, int)}, through the built-in
+     * scale kernel. The factor alternates between 0.5 and 2, both exact, so the entries keep their
+     * values instead of decaying into subnormals and zeros over the iterations.
+     */
+    public static Supplier<Object> scale(int rows, int columns) {
+        Matrix a = Matrix.randomMatrix(rows, columns);
+        float[] factor = {0.5f};
+        return () -> {
+            a.scale(factor[0]);
+            factor[0] = 1 / factor[0];
+            return a;
+        };
+    }
+
+    public static Supplier<Object> sum(int rows, int columns) {
+        Matrix a = Matrix.randomMatrix(rows, columns);
+        return a::sum;
+    }
+
+    /**
+     * Bounding box and centroid of the points, as for zoom-to-fit.
+     */
+    public static Supplier<Object> rowStatistics(int rows, int columns) {
+        Matrix a = Matrix.randomMatrix(rows, columns);
+        return a::rowStatistics;
+    }
+
+    /**
+     * (a - b + c) followed by a vectorize, one operation at a time.
+     */
+    public static Supplier<Object> eagerChain(int rows, int columns) {
+        Matrix a = Matrix.randomMatrix(rows, columns);
+        Matrix b = Matrix.randomMatrix(rows, columns);
+        Matrix c = Matrix.randomMatrix(rows, columns);
+        return () -> {
+            Matrix result = Matrix.add(Matrix.subtract(a, b), c);
+            result.vectorize(value -> value * 0.5f + 1, true);
+            return result;
+        };
+    }
+
+    /**
+     * Same chain as {@link #eagerChain(int, int)}, fused into a single pass.
+     */
+    public static Supplier<Object> fusedChain(int rows, int columns) {
+        Matrix a = Matrix.randomMatrix(rows, columns);
+        Matrix b = Matrix.randomMatrix(rows, columns);
+        Matrix c = Matrix.randomMatrix(rows, columns);
+        MatrixExpression chain = a.lazy().subtract(b).add(c).vectorize(value -> value * 0.5f + 1, true);
+        return chain::evaluate;
+    }
+
+    public static Supplier<Object> times(int size) {
+        Matrix a = Matrix.randomMatrix(size, size);
+        Vector x = Matrix.randomMatrix(size, 1).getColumn(0);
+        return () -> a.times(x);
+    }
+
+    public static Supplier<Object> dot(int length) {
+        Vector x = Matrix.randomMatrix(length, 1).getColumn(0);
+        Vector y = Matrix.randomMatrix(length, 1).getColumn(0);
+        return () -> x.dot(y);
+    }
+
+    public static Supplier<Object> add(int size) {
+        Matrix a = Matrix.randomMatrix(size, size);
+        Matrix b = Matrix.randomMatrix(size, size);
+        return () -> Matrix.add(a, b);
+    }
+
+    /**
+     * Draws the points one AWT call at a time, as the visualizer used to.
+     */
+    public static Supplier<Object> fillOval(int points) {
+        float[][] xy = screenPoints(points);
+        BufferedImage image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        return () -> {
+            Graphics2D g = image.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, 1600, 1200);
+            g.setColor(Color.BLACK);
+            for (int i = 0; i < points; i++) {
+                g.fillOval((int) (xy[0][i] + 800 - 6), (int) (xy[1][i] + 600 - 6), 12, 12);
+            }
+            g.dispose();
+            return image;
+        };
+    }
+
+    public static Supplier<Object> renderPoints(int points) {
+        float[][] xy = screenPoints(points);
+        PointRenderer renderer = new PointRenderer(1600, 1200);
+        return () -> renderer.render(xy[0], xy[1], points, 800, 600, 6);
+    }
+
+    public static Supplier<Object> renderDensity(int points) {
+        float[][] xy = screenPoints(points);
+        PointRenderer renderer = new PointRenderer(1600, 1200);
+        return () -> renderer.renderDensity(xy[0], xy[1], points, 800, 600);
+    }
+
+    /**
+     * One frame zoomed in 20 times on the middle of the points, culled through a PointIndex.
+     */
+    public static Supplier<Object> renderZoomedIn(int points) {
+        float[][] xy = screenPoints(points);
+        GrowableMatrix data = new GrowableMatrix(3, points);
+        for (int i = 0; i < points; i++) {
+            data.append(xy[0][i], xy[1][i], 1);
+        }
+        PointIndex index = new PointIndex(data);
+        PointRenderer renderer = new PointRenderer(1600, 1200);
+        Affine2D zoom = Affine2D.scaling(20);
+        int[] visible = new int[points];
+        return () -> {
+            int count = index.candidates(zoom, -806, -606, 806, 606, visible);
+            zoom.transform(data.values, 3, visible, xy[0], xy[1], count);
+            return renderer.render(xy[0], xy[1], count, 800, 600, 6);
+        };
+    }
+
+    /**
+     * Streams a text file of points, one "x,y" line each, into a point buffer.
+     */
+    public static Supplier<Object> loadText(int points) {
+        float[][] xy = screenPoints(points);
+        Path path = temporaryFile(".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("x,y\n");
+            for (int i = 0; i < points; i++) {
+                writer.write(xy[0][i] + "," + xy[1][i] + "\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return () -> load(path);
+    }
+
+    /**
+     * Streams a matrix file of 3 by N homogeneous points into a point buffer.
+     */
+    public static Supplier<Object> loadBinary(int points) {
+        Path path = temporaryFile(".mtrx");
+        try {
+            MatrixFile.save(Matrix.randomMatrix(3, points), path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return () -> load(path);
+    }
+
+    private static Object load(Path path) {
+        Thread consumer = Thread.currentThread();
+        GrowableMatrix points = new GrowableMatrix(3);
+        try (PointLoader loader = new PointLoader(path, () -> LockSupport.unpark(consumer))) {
+            while (true) {
+                loader.drainTo(points, 1);
+                if (loader.isDone()) break;
+                LockSupport.park();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return points;
+    }
+
+    private static Path temporaryFile(String suffix) {
+        try {
+            Path path = Files.createTempFile("points", suffix);
+            path.toFile().deleteOnExit();
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static float[][] screenPoints(int points) {
+        Matrix m = Matrix.randomMatrix(2, points);
+        float[][] xy = new float[2][points];
+        for (int i = 0; i < points; i++) {
+            xy[0][i] = m.getEntry(0, i) * 1600 - 800;
+            xy[1][i] = m.getEntry(1, i) * 1200 - 600;
+        }
+        return xy;
+    }
+
+    public static Supplier<Object> sparseTimes(int side) {
+        CsrMatrix a = laplacian(side).toCsr();
+        Vector x = Matrix.randomMatrix(side * side, 1).getColumn(0);
+        return () -> a.times(x);
+    }
+
+    public static Supplier<Object> sparseLu(int side) {
+        CscMatrix a = laplacian(side);
+        return a::lu;
+    }
+
+    /**
+     * Five-point Laplacian on a side by side grid, the typical sparse system.
+     */
+    private static CscMatrix laplacian(int side) {
+        int n = side * side, k = 0;
+        int[] rows = new int[5 * n], columns = new int[5 * n];
+        float[] entries = new float[5 * n];
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                int p = i * side + j;
+                int[] neighbours = {i > 0 ? p - side : -1, i < side - 1 ? p + side : -1,
+                        j > 0 ? p - 1 : -1, j < side - 1 ? p + 1 : -1};
+                rows[k] = p; columns[k] = p; entries[k++] = 4;
+                for (int q : neighbours) {
+                    if (q >= 0) {
+                        rows[k] = p; columns[k] = q; entries[k++] = -1;
+                    }
+                }
+            }
+        }
+        return CscMatrix.fromTriplets(n, n, Arrays.copyOf(rows, k),
+                Arrays.copyOf(columns, k), Arrays.copyOf(entries, k));
+    }
+}
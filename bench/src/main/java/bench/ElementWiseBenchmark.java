@@ -0,0 +1,80 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Element-wise passes over a whole matrix.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = Workload.VECTOR_API)
+@State(Scope.Thread)
+public class ElementWiseBenchmark {
+    @Param({"3"})
+    public int rows;
+
+    @Param({"30000", "1000000"})
+    public int columns;
+
+    private Supplier<Object> vectorize;
+    private Supplier<Object> scale;
+    private Supplier<Object> sum;
+    private Supplier<Object> rowStatistics;
+    private Supplier<Object> eagerChain;
+    private Supplier<Object> fusedChain;
+
+    @Setup
+    public void setup() {
+        vectorize = Workload.of("vectorize", rows, columns);
+        scale = Workload.of("scale", rows, columns);
+        sum = Workload.of("sum", rows, columns);
+        rowStatistics = Workload.of("rowStatistics", rows, columns);
+        eagerChain = Workload.of("eagerChain", rows, columns);
+        fusedChain = Workload.of("fusedChain", rows, columns);
+    }
+
+    @Benchmark
+    public Object vectorize() {
+        return vectorize.get();
+    }
+
+    @Benchmark
+    public Object scale() {
+        return scale.get();
+    }
+
+    @Benchmark
+    public Object sum() {
+        return sum.get();
+    }
+
+    @Benchmark
+    public Object rowStatistics() {
+        return rowStatistics.get();
+    }
+
+    @Benchmark
+    public Object eagerChain() {
+        return eagerChain.get();
+    }
+
+    @Benchmark
+    public Object fusedChain() {
+        return fusedChain.get();
+    }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Adding points one at a time, as done by clicking in the visualizer.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = Workload.VECTOR_API)
+@State(Scope.Thread)
+public class GrowthBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int columns;
+
+    private Supplier<Object> addColumn, append;
+
+    @Setup
+    public void setup() {
+        addColumn = Workload.of("addColumn", columns);
+        append = Workload.of("append", columns);
+    }
+
+    @Benchmark
+    public Object addColumn() {
+        return addColumn.get();
+    }
+
+    @Benchmark
+    public Object append() {
+        return append.get();
+    }
+}
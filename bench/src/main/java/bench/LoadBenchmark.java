@@ -0,0 +1,50 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Streaming a file of points into the visualizer's point buffer, from text and from a matrix file.
+ * The files are written during setup and are usually in the page cache, so this measures parsing
+ * and hand-off rather than the disk.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = Workload.VECTOR_API)
+@State(Scope.Thread)
+public class LoadBenchmark {
+    @Param({"1000000"})
+    public int points;
+
+    private Supplier<Object> text, binary;
+
+    @Setup
+    public void setup() {
+        text = Workload.of("loadText", points);
+        binary = Workload.of("loadBinary", points);
+    }
+
+    @Benchmark
+    public Object text() {
+        return text.get();
+    }
+
+    @Benchmark
+    public Object binary() {
+        return binary.get();
+    }
+}
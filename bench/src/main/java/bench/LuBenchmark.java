@@ -0,0 +1,55 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * LU factorization of a square N by N matrix, and solving one or a batch of
+ * 1000 right-hand sides against an existing factorization.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = Workload.VECTOR_API)
+@State(Scope.Thread)
+public class LuBenchmark {
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private Supplier<Object> factor, solve, solveBatch;
+
+    @Setup
+    public void setup() {
+        factor = Workload.of("lu", size);
+        solve = Workload.of("luSolve", size);
+        solveBatch = Workload.of("solveBatch", size, 1000);
+    }
+
+    @Benchmark
+    public Object factor() {
+        return factor.get();
+    }
+
+    @Benchmark
+    public Object solve() {
+        return solve.get();
+    }
+
+    @Benchmark
+    public Object solveBatch() {
+        return solveBatch.get();
+    }
+}
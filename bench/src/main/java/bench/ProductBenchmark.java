@@ -0,0 +1,57 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Square N by N matrix products: plain, with a transposed view as the left factor,
+ * and into a reused destination. Run with <code>-prof gc</code> to compare allocation rates.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = Workload.VECTOR_API)
+@State(Scope.Thread)
+public class ProductBenchmark {
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private Supplier<Object> product;
+    private Supplier<Object> transposedProduct;
+    private Supplier<Object> productInto;
+
+    @Setup
+    public void setup() {
+        product = Workload.of("squareProduct", size);
+        transposedProduct = Workload.of("transposedProduct", size);
+        productInto = Workload.of("squareProductInto", size);
+    }
+
+    @Benchmark
+    public Object product() {
+        return product.get();
+    }
+
+    @Benchmark
+    public Object transposedProduct() {
+        return transposedProduct.get();
+    }
+
+    @Benchmark
+    public Object productInto() {
+        return productInto.get();
+    }
+}
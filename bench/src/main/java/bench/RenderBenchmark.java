@@ -0,0 +1,63 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * One frame of the visualizer's points on a 1600 by 1200 screen,
+ * through Graphics.fillOval and through the raster renderer,
+ * zoomed in with the points off the screen culled by a spatial index,
+ * and as a density map.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {Workload.VECTOR_API, "-Djava.awt.headless=true"})
+@State(Scope.Thread)
+public class RenderBenchmark {
+    @Param({"30000", "1000000"})
+    public int points;
+
+    private Supplier<Object> fillOval, raster, zoomedIn, density;
+
+    @Setup
+    public void setup() {
+        fillOval = Workload.of("fillOval", points);
+        raster = Workload.of("renderPoints", points);
+        zoomedIn = Workload.of("renderZoomedIn", points);
+        density = Workload.of("renderDensity", points);
+    }
+
+    @Benchmark
+    public Object fillOval() {
+        return fillOval.get();
+    }
+
+    @Benchmark
+    public Object raster() {
+        return raster.get();
+    }
+
+    @Benchmark
+    public Object zoomedIn() {
+        return zoomedIn.get();
+    }
+
+    @Benchmark
+    public Object density() {
+        return density.get();
+    }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 3x3 homogeneous transforms applied to a 3 by N point matrix,
+ * as done by the visualizer on every mouse event.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = Workload.VECTOR_API)
+@State(Scope.Thread)
+public class TransformBenchmark {
+    @Param({"1000", "30000", "1000000"})
+    public int points;
+
+    private Supplier<Object> transform, chain, affine;
+
+    @Setup
+    public void setup() {
+        transform = Workload.of("transform", points);
+        chain = Workload.of("transformChain", points);
+        affine = Workload.of("affineTransform", points);
+    }
+
+    @Benchmark
+    public Object precomposed() {
+        return transform.get();
+    }
+
+    @Benchmark
+    public Object chain() {
+        return chain.get();
+    }
+
+    @Benchmark
+    public Object affine() {
+        return affine.get();
+    }
+}
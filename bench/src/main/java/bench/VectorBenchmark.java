@@ -0,0 +1,58 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Matrix-vector products, dot products and matrix addition, with each kernel implementation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = Workload.VECTOR_API)
+@State(Scope.Thread)
+public class VectorBenchmark {
+    @Param({"64", "1024"})
+    public int size;
+
+    @Param({"simd", "scalar"})
+    public String kernels;
+
+    private Supplier<Object> times, dot, add;
+
+    @Setup
+    public void setup() {
+        Workload.useKernels(kernels);
+        times = Workload.of("times", size);
+        dot = Workload.of("dot", size * size);
+        add = Workload.of("add", size);
+    }
+
+    @Benchmark
+    public Object times() {
+        return times.get();
+    }
+
+    @Benchmark
+    public Object dot() {
+        return dot.get();
+    }
+
+    @Benchmark
+    public Object add() {
+        return add.get();
+    }
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * Looks up operations from the default-package <code>Workloads</code> class.
+ * Reflection only happens during setup; the measured call is a plain
+ * {@link Supplier#get()} that the JIT inlines, since every benchmark runs
+ * in its own forked JVM.
+ */
+final class Workload {
+    /**
+     * JVM option every fork is started with. Without it <code>Kernels</code> can't load the
+     * SIMD kernels and silently falls back to the scalar ones, whatever is being measured.
+     */
+    static final String VECTOR_API = "--add-modules=jdk.incubator.vector";
+
+    private Workload() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static Supplier<Object> of(String name, int... parameters) {
+        Class<?>[] types = new Class<?>[parameters.length];
+        Object[] arguments = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            types[i] = int.class;
+            arguments[i] = parameters[i];
+        }
+        try {
+            Method factory = Class.forName("Workloads").getMethod(name, types);
+            return (Supplier<Object>) factory.invoke(null, arguments);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Setting up workload " + name + " failed", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No workload named " + name, e);
+        }
+    }
+
+    /**
+     * Selects the kernels behind vector and matrix arithmetic, see <code>Kernels.use</code>.
+     */
+    static void useKernels(String name) {
+        try {
+            Class.forName("Kernels").getMethod("use", String.class).invoke(null, name);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Selecting " + name + " kernels failed", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Kernels can't be selected", e);
+        }
+    }
+}
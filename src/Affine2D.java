@@ -0,0 +1,334 @@
+import java.util.InputMismatchException;
+
+/**
+ * Immutable 2D affine transform, the specialized form of a 3x3 homogeneous matrix
+ * <pre>
+ * [ a  c  tx ]
+ * [ b  d  ty ]
+ * [ 0  0  1  ]
+ * </pre>
+ * Only the six meaningful entries are stored, so composing two transforms costs
+ * 12 multiplications instead of a general 3x3 product, and applying one to a point
+ * skips the multiply by the constant homogeneous row.
+ * <p>
+ * The batch <code>transform</code> methods work in place on packed point buffers
+ * without allocating. The version over separate x and y arrays has unit-stride
+ * loops that the JIT can auto-vectorize.
+ */
+public final class Affine2D {
+    public static final Affine2D IDENTITY = new Affine2D(1, 0, 0, 1, 0, 0);
+
+    private final float a, b, c, d, tx, ty;
+
+    /**
+     * Constructor from the entries of the homogeneous matrix, in column-major order.
+     *
+     * @param a  entry (0, 0)
+     * @param b  entry (1, 0)
+     * @param c  entry (0, 1)
+     * @param d  entry (1, 1)
+     * @param tx entry (0, 2), translation in x
+     * @param ty entry (1, 2), translation in y
+     */
+    public Affine2D(float a, float b, float c, float d, float tx, float ty) {
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+        this.tx = tx;
+        this.ty = ty;
+    }
+
+    // ================== SPECIAL TRANSFORMS BEGIN ==================
+
+    /**
+     * @param dx translation in x
+     * @param dy translation in y
+     * @return translation transform
+     * @see Matrix#translationMatrix(float, float)
+     */
+    public static Affine2D translation(float dx, float dy) {
+        return new Affine2D(1, 0, 0, 1, dx, dy);
+    }
+
+    /**
+     * @param k scalar to scale by
+     * @return uniform scaling transform
+     * @see Matrix#scalingMatrix(float)
+     */
+    public static Affine2D scaling(float k) {
+        return new Affine2D(k, 0, 0, k, 0, 0);
+    }
+
+    /**
+     * @param kx scalar to scale x by
+     * @param ky scalar to scale y by
+     * @return scaling transform
+     */
+    public static Affine2D scaling(float kx, float ky) {
+        return new Affine2D(kx, 0, 0, ky, 0, 0);
+    }
+
+    /**
+     * @param angle the angle to rotate by, in degrees
+     * @return rotation transform
+     * @see Matrix#rotationMatrix(double)
+     */
+    public static Affine2D rotation(double angle) {
+        angle = Math.toRadians(angle);
+        float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+        return new Affine2D(cos, sin, -sin, cos, 0, 0);
+    }
+
+    /**
+     * Conjugates a transform so it happens around a point instead of the origin,
+     * (From Origin)*(transform)*(To Origin).
+     *
+     * @param transform transform to apply around the point
+     * @param x         x coordinate of the point
+     * @param y         y coordinate of the point
+     * @return transform that keeps (x, y) in place
+     */
+    public static Affine2D about(Affine2D transform, float x, float y) {
+        return translation(x, y).times(transform).times(translation(-x, -y));
+    }
+
+    /**
+     * Converts a 3x3 homogeneous matrix.
+     *
+     * @param mat matrix whose last row is [0 0 1]
+     * @return the same transform
+     */
+    public static Affine2D of(Matrix mat) {
+        if (mat.m != 3 || mat.n != 3) {
+            throw new InputMismatchException("Dimension mismatch. Expected a 3 by 3 matrix. Provided: " + mat.m + " by " + mat.n);
+        }
+        if (Math.abs(mat.getEntry(2, 0)) > Matrix.epsilon || Math.abs(mat.getEntry(2, 1)) > Matrix.epsilon
+                || Math.abs(mat.getEntry(2, 2) - 1) > Matrix.epsilon) {
+            throw new InputMismatchException("Matrix is not an affine transform. Expected the last row to be [0 0 1].");
+        }
+        return new Affine2D(mat.getEntry(0, 0), mat.getEntry(1, 0), mat.getEntry(0, 1), mat.getEntry(1, 1),
+                mat.getEntry(0, 2), mat.getEntry(1, 2));
+    }
+
+    // ================== SPECIAL TRANSFORMS END ==================
+
+
+    // ================== ARITHMETIC BEGIN ==================
+
+    /**
+     * Matrix product of the two transforms: the result applies
+     * <code>that</code> first and this transform second.
+     *
+     * @param that transform on the right
+     * @return this * that
+     */
+    public Affine2D times(Affine2D that) {
+        return new Affine2D(
+                a * that.a + c * that.b,
+                b * that.a + d * that.b,
+                a * that.c + c * that.d,
+                b * that.c + d * that.d,
+                a * that.tx + c * that.ty + tx,
+                b * that.tx + d * that.ty + ty);
+    }
+
+    /**
+     * Composition in the order of application.
+     *
+     * @param next transform to apply after this one
+     * @return next * this
+     */
+    public Affine2D then(Affine2D next) {
+        return next.times(this);
+    }
+
+    public float determinant() {
+        return a * d - b * c;
+    }
+
+    /**
+     * @return the transform that undoes this one
+     * @throws ArithmeticException if the transform is singular
+     */
+    public Affine2D inverse() {
+        float det = determinant();
+        if (Math.abs(det) < Matrix.epsilon * Matrix.epsilon) {
+            throw new ArithmeticException("Transform is singular and can't be inverted. Determinant: " + det);
+        }
+        float ia = d / det, ib = -b / det, ic = -c / det, id = a / det;
+        return new Affine2D(ia, ib, ic, id, -(ia * tx + ic * ty), -(ib * tx + id * ty));
+    }
+
+    // ================== ARITHMETIC END ==================
+
+
+    // ================== BATCH TRANSFORMS BEGIN ==================
+
+    /**
+     * Transforms points held in separate coordinate arrays, in place.
+     *
+     * @param xs     x coordinates
+     * @param ys     y coordinates
+     * @param offset index of the first point
+     * @param count  number of points
+     */
+    public void transform(float[] xs, float[] ys, int offset, int count) {
+        final float a = this.a, b = this.b, c = this.c, d = this.d, tx = this.tx, ty = this.ty;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            float x = xs[i], y = ys[i];
+            xs[i] = a * x + c * y + tx;
+            ys[i] = b * x + d * y + ty;
+        }
+    }
+
+    /**
+     * Transforms points packed one after another, in place. Each point starts with its
+     * x and y coordinates; anything after them, such as the homogeneous 1, is left alone.
+     *
+     * @param points buffer of points
+     * @param offset index of the first point's x coordinate
+     * @param stride distance between consecutive points, at least 2
+     * @param count  number of points
+     */
+    public void transform(float[] points, int offset, int stride, int count) {
+        final float a = this.a, b = this.b, c = this.c, d = this.d, tx = this.tx, ty = this.ty;
+        for (int i = offset, end = offset + count * stride; i < end; i += stride) {
+            float x = points[i], y = points[i + 1];
+            points[i] = a * x + c * y + tx;
+            points[i + 1] = b * x + d * y + ty;
+        }
+    }
+
+    /**
+     * Transforms packed points into separate coordinate arrays, leaving the source untouched.
+     *
+     * @param src       buffer of points, x then y for each point
+     * @param srcOffset index of the first point's x coordinate
+     * @param srcStride distance between consecutive points, at least 2
+     * @param xs        destination for the x coordinates
+     * @param ys        destination for the y coordinates
+     * @param dstOffset index of the first point in the destinations
+     * @param count     number of points
+     */
+    public void transform(float[] src, int srcOffset, int srcStride, float[] xs, float[] ys, int dstOffset, int count) {
+        final float a = this.a, b = this.b, c = this.c, d = this.d, tx = this.tx, ty = this.ty;
+        for (int i = 0, s = srcOffset; i < count; i++, s += srcStride) {
+            float x = src[s], y = src[s + 1];
+            xs[dstOffset + i] = a * x + c * y + tx;
+            ys[dstOffset + i] = b * x + d * y + ty;
+        }
+    }
+
+    /**
+     * Transforms some of the points of a packed buffer into separate coordinate arrays,
+     * such as the ones a {@link PointIndex} found on the screen.
+     *
+     * @param src       buffer of points, x then y for each point
+     * @param srcStride distance between consecutive points, at least 2
+     * @param indices   indices of the points to transform; point indices[i] goes to position i
+     * @param xs        destination for the x coordinates
+     * @param ys        destination for the y coordinates
+     * @param count     number of indices
+     */
+    public void transform(float[] src, int srcStride, int[] indices, float[] xs, float[] ys, int count) {
+        final float a = this.a, b = this.b, c = this.c, d = this.d, tx = this.tx, ty = this.ty;
+        for (int i = 0; i < count; i++) {
+            int s = indices[i] * srcStride;
+            float x = src[s], y = src[s + 1];
+            xs[i] = a * x + c * y + tx;
+            ys[i] = b * x + d * y + ty;
+        }
+    }
+
+    /**
+     * Transforms every column of a matrix of homogeneous points in place,
+     * splitting the work across threads for large matrices.
+     *
+     * @param points 3 by N matrix whose columns are [x y 1]
+     */
+    public void transform(Matrix points) {
+        if (points.m != 3) {
+            throw new InputMismatchException("Dimension mismatch. Expected a matrix with 3 rows. Provided: " + points.m);
+        }
+        Parallel.forColumns(points.n, 6, (from, to) -> {
+            if (points.values != null) {
+                transform(points.values, points.index(0, from), points.ld, to - from);
+            } else {
+                for (int col = from; col < to; col++) {
+                    float x = points.getEntry(0, col), y = points.getEntry(1, col);
+                    points.setEntry(0, col, a * x + c * y + tx);
+                    points.setEntry(1, col, b * x + d * y + ty);
+                }
+            }
+        });
+    }
+
+    /**
+     * Transforms every column of a buffer of homogeneous points in place.
+     *
+     * @param points buffer with 3 rows whose columns are [x y 1]
+     */
+    public void transform(GrowableMatrix points) {
+        if (points.m != 3) {
+            throw new InputMismatchException("Dimension mismatch. Expected a matrix with 3 rows. Provided: " + points.m);
+        }
+        Parallel.forColumns(points.n, 6, (from, to) -> transform(points.values, from * 3, 3, to - from));
+    }
+
+    // ================== BATCH TRANSFORMS END ==================
+
+
+    // ================== GET BEGIN ==================
+
+    /**
+     * @return 3x3 homogeneous matrix of this transform
+     */
+    public Matrix toMatrix() {
+        return new Matrix(3, 3, false, a, b, 0, c, d, 0, tx, ty, 1);
+    }
+
+    public float getScaleX() { return a; }
+
+    public float getShearY() { return b; }
+
+    public float getShearX() { return c; }
+
+    public float getScaleY() { return d; }
+
+    public float getTranslateX() { return tx; }
+
+    public float getTranslateY() { return ty; }
+
+    // ================== GET END ==================
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Affine2D)) return false;
+        Affine2D that = (Affine2D) o;
+        return Float.compare(a, that.a) == 0 && Float.compare(b, that.b) == 0
+                && Float.compare(c, that.c) == 0 && Float.compare(d, that.d) == 0
+                && Float.compare(tx, that.tx) == 0 && Float.compare(ty, that.ty) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(a);
+        result = 31 * result + Float.floatToIntBits(b);
+        result = 31 * result + Float.floatToIntBits(c);
+        result = 31 * result + Float.floatToIntBits(d);
+        result = 31 * result + Float.floatToIntBits(tx);
+        result = 31 * result + Float.floatToIntBits(ty);
+        return result;
+    }
+
+    /**
+     * Prints the transform as its 3x3 homogeneous matrix.
+     *
+     * @return text version of the transform
+     */
+    public String toString() {
+        return toMatrix().toString();
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * Immutable 3D affine transform, the specialized form of a 4x4 homogeneous matrix
+ * <pre>
+ * [ m00  m01  m02  tx ]
+ * [ m10  m11  m12  ty ]
+ * [ m20  m21  m22  tz ]
+ * [ 0    0    0    1  ]
+ * </pre>
+ * Like {@link Affine2D}, only the twelve meaningful entries are stored and the batch
+ * <code>transform</code> methods work in place on packed point buffers without allocating.
+ */
+public final class Affine3D {
+    public static final Affine3D IDENTITY = new Affine3D(1, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0);
+
+    private final float m00, m01, m02, m10, m11, m12, m20, m21, m22, tx, ty, tz;
+
+    /**
+     * Constructor from the entries of the homogeneous matrix, in column-major order
+     * like {@link Affine2D#Affine2D(float, float, float, float, float, float)}:
+     * the three columns of the linear part, then the translation.
+     *
+     * @param m00 entry (0, 0)
+     * @param m10 entry (1, 0)
+     * @param m20 entry (2, 0)
+     * @param m01 entry (0, 1)
+     * @param m11 entry (1, 1)
+     * @param m21 entry (2, 1)
+     * @param m02 entry (0, 2)
+     * @param m12 entry (1, 2)
+     * @param m22 entry (2, 2)
+     * @param tx  entry (0, 3), translation in x
+     * @param ty  entry (1, 3), translation in y
+     * @param tz  entry (2, 3), translation in z
+     */
+    public Affine3D(float m00, float m10, float m20,
+                    float m01, float m11, float m21,
+                    float m02, float m12, float m22,
+                    float tx, float ty, float tz) {
+        this.m00 = m00; this.m01 = m01; this.m02 = m02;
+        this.m10 = m10; this.m11 = m11; this.m12 = m12;
+        this.m20 = m20; this.m21 = m21; this.m22 = m22;
+        this.tx = tx; this.ty = ty; this.tz = tz;
+    }
+
+    // ================== SPECIAL TRANSFORMS BEGIN ==================
+
+    public static Affine3D translation(float dx, float dy, float dz) {
+        return new Affine3D(1, 0, 0, 0, 1, 0, 0, 0, 1, dx, dy, dz);
+    }
+
+    public static Affine3D scaling(float k) {
+        return scaling(k, k, k);
+    }
+
+    public static Affine3D scaling(float kx, float ky, float kz) {
+        return new Affine3D(kx, 0, 0, 0, ky, 0, 0, 0, kz, 0, 0, 0);
+    }
+
+    /**
+     * @param angle the angle to rotate by around the x axis, in degrees
+     * @return rotation transform
+     */
+    public static Affine3D rotationX(double angle) {
+        angle = Math.toRadians(angle);
+        float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+        return new Affine3D(1, 0, 0, 0, cos, sin, 0, -sin, cos, 0, 0, 0);
+    }
+
+    /**
+     * @param angle the angle to rotate by around the y axis, in degrees
+     * @return rotation transform
+     */
+    public static Affine3D rotationY(double angle) {
+        angle = Math.toRadians(angle);
+        float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+        return new Affine3D(cos, 0, -sin, 0, 1, 0, sin, 0, cos, 0, 0, 0);
+    }
+
+    /**
+     * @param angle the angle to rotate by around the z axis, in degrees
+     * @return rotation transform
+     */
+    public static Affine3D rotationZ(double angle) {
+        angle = Math.toRadians(angle);
+        float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+        return new Affine3D(cos, sin, 0, -sin, cos, 0, 0, 0, 1, 0, 0, 0);
+    }
+
+    /**
+     * Conjugates a transform so it happens around a point instead of the origin.
+     *
+     * @param transform transform to apply around the point
+     * @return transform that keeps (x, y, z) in place
+     */
+    public static Affine3D about(Affine3D transform, float x, float y, float z) {
+        return translation(x, y, z).times(transform).times(translation(-x, -y, -z));
+    }
+
+    /**
+     * Converts a 4x4 homogeneous matrix.
+     *
+     * @param mat matrix whose last row is [0 0 0 1]
+     * @return the same transform
+     */
+    public static Affine3D of(Matrix mat) {
+        if (mat.m != 4 || mat.n != 4) {
+            throw new InputMismatchException("Dimension mismatch. Expected a 4 by 4 matrix. Provided: " + mat.m + " by " + mat.n);
+        }
+        for (int col = 0; col < 4; col++) {
+            if (Math.abs(mat.getEntry(3, col) - (col == 3 ? 1 : 0)) > Matrix.epsilon) {
+                throw new InputMismatchException("Matrix is not an affine transform. Expected the last row to be [0 0 0 1].");
+            }
+        }
+        return new Affine3D(
+                mat.getEntry(0, 0), mat.getEntry(1, 0), mat.getEntry(2, 0),
+                mat.getEntry(0, 1), mat.getEntry(1, 1), mat.getEntry(2, 1),
+                mat.getEntry(0, 2), mat.getEntry(1, 2), mat.getEntry(2, 2),
+                mat.getEntry(0, 3), mat.getEntry(1, 3), mat.getEntry(2, 3));
+    }
+
+    // ================== SPECIAL TRANSFORMS END ==================
+
+
+    // ================== ARITHMETIC BEGIN ==================
+
+    /**
+     * Matrix product of the two transforms: the result applies
+     * <code>that</code> first and this transform second.
+     *
+     * @param that transform on the right
+     * @return this * that
+     */
+    public Affine3D times(Affine3D that) {
+        return new Affine3D(
+                m00 * that.m00 + m01 * that.m10 + m02 * that.m20,
+                m10 * that.m00 + m11 * that.m10 + m12 * that.m20,
+                m20 * that.m00 + m21 * that.m10 + m22 * that.m20,
+                m00 * that.m01 + m01 * that.m11 + m02 * that.m21,
+                m10 * that.m01 + m11 * that.m11 + m12 * that.m21,
+                m20 * that.m01 + m21 * that.m11 + m22 * that.m21,
+                m00 * that.m02 + m01 * that.m12 + m02 * that.m22,
+                m10 * that.m02 + m11 * that.m12 + m12 * that.m22,
+                m20 * that.m02 + m21 * that.m12 + m22 * that.m22,
+                m00 * that.tx + m01 * that.ty + m02 * that.tz + tx,
+                m10 * that.tx + m11 * that.ty + m12 * that.tz + ty,
+                m20 * that.tx + m21 * that.ty + m22 * that.tz + tz);
+    }
+
+    /**
+     * Composition in the order of application.
+     *
+     * @param next transform to apply after this one
+     * @return next * this
+     */
+    public Affine3D then(Affine3D next) {
+        return next.times(this);
+    }
+
+    public float determinant() {
+        return m00 * (m11 * m22 - m12 * m21) - m01 * (m10 * m22 - m12 * m20) + m02 * (m10 * m21 - m11 * m20);
+    }
+
+    /**
+     * @return the transform that undoes this one
+     * @throws ArithmeticException if the transform is singular
+     */
+    public Affine3D inverse() {
+        float det = determinant();
+        if (Math.abs(det) < Matrix.epsilon * Matrix.epsilon) {
+            throw new ArithmeticException("Transform is singular and can't be inverted. Determinant: " + det);
+        }
+        // adjugate of the linear part divided by the determinant
+        float i00 = (m11 * m22 - m12 * m21) / det, i01 = (m02 * m21 - m01 * m22) / det, i02 = (m01 * m12 - m02 * m11) / det;
+        float i10 = (m12 * m20 - m10 * m22) / det, i11 = (m00 * m22 - m02 * m20) / det, i12 = (m02 * m10 - m00 * m12) / det;
+        float i20 = (m10 * m21 - m11 * m20) / det, i21 = (m01 * m20 - m00 * m21) / det, i22 = (m00 * m11 - m01 * m10) / det;
+        return new Affine3D(i00, i10, i20, i01, i11, i21, i02, i12, i22,
+                -(i00 * tx + i01 * ty + i02 * tz),
+                -(i10 * tx + i11 * ty + i12 * tz),
+                -(i20 * tx + i21 * ty + i22 * tz));
+    }
+
+    // ================== ARITHMETIC END ==================
+
+
+    // ================== BATCH TRANSFORMS BEGIN ==================
+
+    /**
+     * Transforms points held in separate coordinate arrays, in place.
+     *
+     * @param xs     x coordinates
+     * @param ys     y coordinates
+     * @param zs     z coordinates
+     * @param offset index of the first point
+     * @param count  number of points
+     */
+    public void transform(float[] xs, float[] ys, float[] zs, int offset, int count) {
+        final float m00 = this.m00, m01 = this.m01, m02 = this.m02;
+        final float m10 = this.m10, m11 = this.m11, m12 = this.m12;
+        final float m20 = this.m20, m21 = this.m21, m22 = this.m22;
+        final float tx = this.tx, ty = this.ty, tz = this.tz;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            float x = xs[i], y = ys[i], z = zs[i];
+            xs[i] = m00 * x + m01 * y + m02 * z + tx;
+            ys[i] = m10 * x + m11 * y + m12 * z + ty;
+            zs[i] = m20 * x + m21 * y + m22 * z + tz;
+        }
+    }
+
+    /**
+     * Transforms points packed one after another, in place. Each point starts with its
+     * x, y and z coordinates; anything after them, such as the homogeneous 1, is left alone.
+     *
+     * @param points buffer of points
+     * @param offset index of the first point's x coordinate
+     * @param stride distance between consecutive points, at least 3
+     * @param count  number of points
+     */
+    public void transform(float[] points, int offset, int stride, int count) {
+        final float m00 = this.m00, m01 = this.m01, m02 = this.m02;
+        final float m10 = this.m10, m11 = this.m11, m12 = this.m12;
+        final float m20 = this.m20, m21 = this.m21, m22 = this.m22;
+        final float tx = this.tx, ty = this.ty, tz = this.tz;
+        for (int i = offset, end = offset + count * stride; i < end; i += stride) {
+            float x = points[i], y = points[i + 1], z = points[i + 2];
+            points[i] = m00 * x + m01 * y + m02 * z + tx;
+            points[i + 1] = m10 * x + m11 * y + m12 * z + ty;
+            points[i + 2] = m20 * x + m21 * y + m22 * z + tz;
+        }
+    }
+
+    /**
+     * Transforms every column of a matrix of homogeneous points in place,
+     * splitting the work across threads for large matrices.
+     *
+     * @param points 4 by N matrix whose columns are [x y z 1]
+     */
+    public void transform(Matrix points) {
+        if (points.m != 4) {
+            throw new InputMismatchException("Dimension mismatch. Expected a matrix with 4 rows. Provided: " + points.m);
+        }
+        Parallel.forColumns(points.n, 15, (from, to) -> {
+            if (points.values != null) {
+                transform(points.values, points.index(0, from), points.ld, to - from);
+            } else {
+                for (int col = from; col < to; col++) {
+                    float x = points.getEntry(0, col), y = points.getEntry(1, col), z = points.getEntry(2, col);
+                    points.setEntry(0, col, m00 * x + m01 * y + m02 * z + tx);
+                    points.setEntry(1, col, m10 * x + m11 * y + m12 * z + ty);
+                    points.setEntry(2, col, m20 * x + m21 * y + m22 * z + tz);
+                }
+            }
+        });
+    }
+
+    // ================== BATCH TRANSFORMS END ==================
+
+
+    /**
+     * @return 4x4 homogeneous matrix of this transform
+     */
+    public Matrix toMatrix() {
+        return new Matrix(4, 4, true,
+                m00, m01, m02, tx,
+                m10, m11, m12, ty,
+                m20, m21, m22, tz,
+                0, 0, 0, 1);
+    }
+
+    private float[] entries() {
+        return new float[]{m00, m01, m02, m10, m11, m12, m20, m21, m22, tx, ty, tz};
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Affine3D)) return false;
+        return Arrays.equals(entries(), ((Affine3D) o).entries());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(entries());
+    }
+
+    /**
+     * Prints the transform as its 4x4 homogeneous matrix.
+     *
+     * @return text version of the transform
+     */
+    public String toString() {
+        return toMatrix().toString();
+    }
+}
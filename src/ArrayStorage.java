@@ -0,0 +1,32 @@
+/**
+ * Storage backed by a single contiguous float array on the heap.
+ */
+public final class ArrayStorage implements FloatStorage {
+    private final float[] array;
+
+    /**
+     * Allocates zeroed storage.
+     *
+     * @param size number of floats
+     */
+    public ArrayStorage(int size) {
+        array = new float[size];
+    }
+
+    /**
+     * Wraps an existing array without copying it.
+     *
+     * @param array backing array
+     */
+    public ArrayStorage(float[] array) {
+        this.array = array;
+    }
+
+    public float get(int index) { return array[index]; }
+
+    public void set(int index, float value) { array[index] = value; }
+
+    public int size() { return array.length; }
+
+    public float[] array() { return array; }
+}
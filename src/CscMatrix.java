@@ -0,0 +1,305 @@
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * Sparse matrix in compressed sparse column form. Only the nonzero entries are stored:
+ * column j has its row indices in <code>rowIndices[columnPointers[j] .. columnPointers[j + 1])</code>,
+ * sorted, with the matching entries at the same positions in <code>values</code>.
+ * <p>
+ * This is the sparse analogue of the column-major {@link Matrix}: a column is one
+ * contiguous run, so products that combine columns and the column-oriented
+ * {@link SparseLU} touch only the nonzeros.
+ */
+public final class CscMatrix {
+    protected final int m;
+    protected final int n;
+    protected final int[] columnPointers;
+    protected final int[] rowIndices;
+    protected final float[] values;
+
+    /**
+     * Wraps compressed arrays without checking or copying them.
+     */
+    CscMatrix(int m, int n, int[] columnPointers, int[] rowIndices, float[] values) {
+        this.m = m;
+        this.n = n;
+        this.columnPointers = columnPointers;
+        this.rowIndices = rowIndices;
+        this.values = values;
+    }
+
+    // ================== CONVERSIONS BEGIN ==================
+
+    /**
+     * Keeps the nonzero entries of a dense matrix.
+     *
+     * @param dense matrix to compress
+     * @return sparse copy of the matrix
+     */
+    public static CscMatrix of(Matrix dense) {
+        int m = dense.m, n = dense.n;
+        int[] pointers = new int[n + 1];
+        for (int col = 0; col < n; col++) {
+            int count = 0;
+            for (int row = 0; row < m; row++) {
+                if (dense.getEntry(row, col) != 0) count++;
+            }
+            pointers[col + 1] = pointers[col] + count;
+        }
+        int[] rows = new int[pointers[n]];
+        float[] entries = new float[pointers[n]];
+        for (int col = 0, p = 0; col < n; col++) {
+            for (int row = 0; row < m; row++) {
+                float value = dense.getEntry(row, col);
+                if (value != 0) {
+                    rows[p] = row;
+                    entries[p++] = value;
+                }
+            }
+        }
+        return new CscMatrix(m, n, pointers, rows, entries);
+    }
+
+    /**
+     * Builds a sparse matrix from (row, column, value) triplets in any order.
+     * Entries given more than once are summed.
+     *
+     * @param m       number of rows
+     * @param n       number of columns
+     * @param rows    row of each entry
+     * @param columns column of each entry
+     * @param entries value of each entry
+     * @return sparse matrix holding the entries
+     */
+    public static CscMatrix fromTriplets(int m, int n, int[] rows, int[] columns, float[] entries) {
+        if (m <= 0 || n <= 0) {
+            throw new InputMismatchException("Matrix has to have a positive number of rows and columns. " +
+                    "Provided: " + m + " by " + n);
+        }
+        if (rows.length != columns.length || rows.length != entries.length) {
+            throw new InputMismatchException("Triplet arrays have different lengths: " + rows.length + ", "
+                    + columns.length + " and " + entries.length);
+        }
+        int nnz = rows.length;
+        // bucket by row first, so that bucketing by column leaves every column sorted by row
+        int[] rowPointers = new int[m + 1];
+        for (int i = 0; i < nnz; i++) {
+            if (rows[i] < 0 || rows[i] >= m || columns[i] < 0 || columns[i] >= n) {
+                throw new IndexOutOfBoundsException("Entry (" + rows[i] + ", " + columns[i] + ") is outside of a "
+                        + m + " by " + n + " matrix.");
+            }
+            rowPointers[rows[i] + 1]++;
+        }
+        for (int i = 0; i < m; i++) rowPointers[i + 1] += rowPointers[i];
+        int[] byRow = new int[nnz];
+        int[] next = rowPointers.clone();
+        for (int i = 0; i < nnz; i++) byRow[next[rows[i]]++] = i;
+
+        int[] pointers = new int[n + 1];
+        for (int i = 0; i < nnz; i++) pointers[columns[i] + 1]++;
+        for (int j = 0; j < n; j++) pointers[j + 1] += pointers[j];
+        int[] resultRows = new int[nnz];
+        float[] resultValues = new float[nnz];
+        next = pointers.clone();
+        for (int t : byRow) {
+            int p = next[columns[t]]++;
+            resultRows[p] = rows[t];
+            resultValues[p] = entries[t];
+        }
+        return new CscMatrix(m, n, pointers, resultRows, resultValues).sumDuplicates();
+    }
+
+    /**
+     * Merges entries repeated within a column, which are adjacent since columns are sorted.
+     */
+    private CscMatrix sumDuplicates() {
+        int[] pointers = new int[n + 1];
+        int q = 0;
+        for (int j = 0; j < n; j++) {
+            int start = q;
+            for (int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                if (q > start && rowIndices[q - 1] == rowIndices[p]) {
+                    values[q - 1] += values[p];
+                } else {
+                    rowIndices[q] = rowIndices[p];
+                    values[q++] = values[p];
+                }
+            }
+            pointers[j + 1] = q;
+        }
+        if (q == rowIndices.length) {
+            return new CscMatrix(m, n, pointers, rowIndices, values);
+        }
+        return new CscMatrix(m, n, pointers, Arrays.copyOf(rowIndices, q), Arrays.copyOf(values, q));
+    }
+
+    /**
+     * @return dense copy of this matrix
+     */
+    public Matrix toMatrix() {
+        Matrix result = new Matrix(m, n);
+        for (int j = 0; j < n; j++) {
+            for (int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                result.setEntry(rowIndices[p], j, values[p]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the same matrix in compressed sparse row form
+     */
+    public CsrMatrix toCsr() {
+        CscMatrix t = transposeOf(m, n, columnPointers, rowIndices, values);
+        return new CsrMatrix(m, n, t.columnPointers, t.rowIndices, t.values);
+    }
+
+    /**
+     * Transpose without copying: the compressed columns of this matrix
+     * are the compressed rows of its transpose.
+     *
+     * @return transpose of this matrix, sharing its arrays
+     */
+    public CsrMatrix transpose() {
+        return new CsrMatrix(n, m, columnPointers, rowIndices, values);
+    }
+
+    /**
+     * Transposes compressed arrays with a counting sort, keeping the result sorted.
+     * Works for either form, since the compressed rows of a matrix are the compressed
+     * columns of its transpose.
+     *
+     * @param m rows of the matrix the arrays compress by column
+     * @param n columns of that matrix
+     * @return the transpose, an n by m matrix
+     */
+    static CscMatrix transposeOf(int m, int n, int[] pointers, int[] indices, float[] entries) {
+        int nnz = pointers[n];
+        int[] resultPointers = new int[m + 1];
+        for (int p = 0; p < nnz; p++) resultPointers[indices[p] + 1]++;
+        for (int i = 0; i < m; i++) resultPointers[i + 1] += resultPointers[i];
+        int[] next = resultPointers.clone();
+        int[] resultIndices = new int[nnz];
+        float[] resultValues = new float[nnz];
+        for (int j = 0; j < n; j++) {
+            for (int p = pointers[j]; p < pointers[j + 1]; p++) {
+                int q = next[indices[p]]++;
+                resultIndices[q] = j;
+                resultValues[q] = entries[p];
+            }
+        }
+        return new CscMatrix(n, m, resultPointers, resultIndices, resultValues);
+    }
+
+    // ================== CONVERSIONS END ==================
+
+
+    // ================== ARITHMETIC BEGIN ==================
+
+    /**
+     * Computes Ax as a combination of the columns of A, skipping the zero entries of x.
+     *
+     * @param x vector to be multiplied by
+     * @return this matrix times x
+     */
+    public Vector times(Vector x) {
+        if (x.length != n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrix by a vector of improper length.");
+        }
+        Vector result = new Vector(m);
+        float[] r = result.entries;
+        for (int j = 0; j < n; j++) {
+            float k = x.getEntry(j);
+            if (k == 0) continue;
+            for (int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                r[rowIndices[p]] += values[p] * k;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sparse times dense product. Every column of the result combines the columns of a
+     * picked out by a column of b, so the cost is nnz(a) per column of b.
+     * The columns of the result are split across threads.
+     *
+     * @param a sparse multiplier
+     * @param b dense multiplicand
+     * @return dense product ab
+     */
+    public static Matrix product(CscMatrix a, Matrix b) {
+        if (a.n != b.m) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of improper size.");
+        }
+        Matrix result = new Matrix(a.m, b.n);
+        float[] r = result.values;
+        Parallel.forColumns(b.n, a.getNonZeros() + a.m, (from, to) -> {
+            for (int col = from; col < to; col++) {
+                int c = col * a.m;
+                for (int j = 0; j < a.n; j++) {
+                    float k = b.getEntry(j, col);
+                    if (k == 0) continue;
+                    for (int p = a.columnPointers[j]; p < a.columnPointers[j + 1]; p++) {
+                        r[c + a.rowIndices[p]] += a.values[p] * k;
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    // ================== ARITHMETIC END ==================
+
+
+    /**
+     * LU decomposition with a fill-reducing ordering, for solving systems.
+     *
+     * @return factorization of this square matrix
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public SparseLU lu() {
+        return SparseLU.of(this);
+    }
+
+
+    // ================== GET BEGIN ==================
+
+    /**
+     * Looks an entry up by binary search within its column.
+     */
+    public float getEntry(int row, int column) {
+        if (row < 0 || row >= m || column < 0 || column >= n) {
+            throw new IndexOutOfBoundsException("Entry (" + row + ", " + column + ") is outside of a "
+                    + m + " by " + n + " matrix.");
+        }
+        int p = Arrays.binarySearch(rowIndices, columnPointers[column], columnPointers[column + 1], row);
+        return p >= 0 ? values[p] : 0;
+    }
+
+    public int getNumberOfRows() { return m; }
+
+    public int getNumberOfColumns() { return n; }
+
+    /**
+     * @return number of stored entries
+     */
+    public int getNonZeros() { return columnPointers[n]; }
+
+    // ================== GET END ==================
+
+    /**
+     * Lists the stored entries, one per line, column by column.
+     *
+     * @return text version of the matrix
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(m).append(" by ").append(n).append(", ").append(getNonZeros()).append(" nonzeros\n");
+        for (int j = 0; j < n; j++) {
+            for (int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                result.append(String.format("(%d, %d) % 8.2f%n", rowIndices[p], j, values[p]));
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.InputMismatchException;
+
+/**
+ * Sparse matrix in compressed sparse row form. Row i has its column indices in
+ * <code>columnIndices[rowPointers[i] .. rowPointers[i + 1])</code>, sorted,
+ * with the matching entries at the same positions in <code>values</code>.
+ * <p>
+ * Rows are contiguous, so every entry of a product is a short dot product that
+ * can be computed independently; products are split across threads by rows or columns.
+ * The arrays of a matrix in this form are those of its transpose in {@link CscMatrix} form.
+ */
+public final class CsrMatrix {
+    protected final int m;
+    protected final int n;
+    protected final int[] rowPointers;
+    protected final int[] columnIndices;
+    protected final float[] values;
+
+    /**
+     * Wraps compressed arrays without checking or copying them.
+     */
+    CsrMatrix(int m, int n, int[] rowPointers, int[] columnIndices, float[] values) {
+        this.m = m;
+        this.n = n;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+
+    // ================== CONVERSIONS BEGIN ==================
+
+    /**
+     * Keeps the nonzero entries of a dense matrix.
+     *
+     * @param dense matrix to compress
+     * @return sparse copy of the matrix
+     */
+    public static CsrMatrix of(Matrix dense) {
+        return CscMatrix.of(dense).toCsr();
+    }
+
+    /**
+     * Builds a sparse matrix from (row, column, value) triplets in any order.
+     * Entries given more than once are summed.
+     *
+     * @param m       number of rows
+     * @param n       number of columns
+     * @param rows    row of each entry
+     * @param columns column of each entry
+     * @param entries value of each entry
+     * @return sparse matrix holding the entries
+     */
+    public static CsrMatrix fromTriplets(int m, int n, int[] rows, int[] columns, float[] entries) {
+        return CscMatrix.fromTriplets(n, m, columns, rows, entries).transpose();
+    }
+
+    /**
+     * @return dense copy of this matrix
+     */
+    public Matrix toMatrix() {
+        Matrix result = new Matrix(m, n);
+        for (int i = 0; i < m; i++) {
+            for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                result.setEntry(i, columnIndices[p], values[p]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the same matrix in compressed sparse column form
+     */
+    public CscMatrix toCsc() {
+        return CscMatrix.transposeOf(n, m, rowPointers, columnIndices, values);
+    }
+
+    /**
+     * Transpose without copying: the compressed rows of this matrix
+     * are the compressed columns of its transpose.
+     *
+     * @return transpose of this matrix, sharing its arrays
+     */
+    public CscMatrix transpose() {
+        return new CscMatrix(n, m, rowPointers, columnIndices, values);
+    }
+
+    // ================== CONVERSIONS END ==================
+
+
+    // ================== ARITHMETIC BEGIN ==================
+
+    /**
+     * Computes Ax a row at a time, splitting the rows across threads for large matrices.
+     *
+     * @param x vector to be multiplied by
+     * @return this matrix times x
+     */
+    public Vector times(Vector x) {
+        if (x.length != n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrix by a vector of improper length.");
+        }
+        float[] dense = x.toFloatArray();
+        Vector result = new Vector(m);
+        float[] r = result.entries;
+        long perRow = Math.max(1, getNonZeros() / Math.max(1, m));
+        Parallel.forColumns(m, perRow, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                float sum = 0;
+                for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                    sum += values[p] * dense[columnIndices[p]];
+                }
+                r[i] = sum;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Sparse times dense product. Every entry of the result is a dot product of a
+     * sparse row of a with a column of b, so the cost is nnz(a) per column of b.
+     * The columns of the result are split across threads.
+     *
+     * @param a sparse multiplier
+     * @param b dense multiplicand
+     * @return dense product ab
+     */
+    public static Matrix product(CsrMatrix a, Matrix b) {
+        if (a.n != b.m) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of improper size.");
+        }
+        Matrix result = new Matrix(a.m, b.n);
+        float[] r = result.values;
+        Parallel.forColumns(b.n, a.getNonZeros() + a.m, (from, to) -> {
+            float[] column = new float[b.m];
+            for (int col = from; col < to; col++) {
+                for (int row = 0; row < b.m; row++) {
+                    column[row] = b.getEntry(row, col);
+                }
+                int c = col * a.m;
+                for (int i = 0; i < a.m; i++) {
+                    float sum = 0;
+                    for (int p = a.rowPointers[i]; p < a.rowPointers[i + 1]; p++) {
+                        sum += a.values[p] * column[a.columnIndices[p]];
+                    }
+                    r[c + i] = sum;
+                }
+            }
+        });
+        return result;
+    }
+
+    // ================== ARITHMETIC END ==================
+
+
+    // ================== GET BEGIN ==================
+
+    /**
+     * Looks an entry up by binary search within its row.
+     */
+    public float getEntry(int row, int column) {
+        return transpose().getEntry(column, row);
+    }
+
+    public int getNumberOfRows() { return m; }
+
+    public int getNumberOfColumns() { return n; }
+
+    /**
+     * @return number of stored entries
+     */
+    public int getNonZeros() { return rowPointers[m]; }
+
+    // ================== GET END ==================
+
+    /**
+     * Lists the stored entries, one per line, row by row.
+     *
+     * @return text version of the matrix
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(m).append(" by ").append(n).append(", ").append(getNonZeros()).append(" nonzeros\n");
+        for (int i = 0; i < m; i++) {
+            for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                result.append(String.format("(%d, %d) % 8.2f%n", i, columnIndices[p], values[p]));
+            }
+        }
+        return result.toString();
+    }
+}
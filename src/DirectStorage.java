@@ -0,0 +1,182 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Storage backed by direct {@link ByteBuffer}s, outside of the Java heap.
+ * <p>
+ * A single buffer addresses at most 2 GB, so storage larger than {@link #REGION_SIZE} floats
+ * is split into several regions of that size, the last one possibly shorter.
+ * The region of an index is found with a shift, so every index of an int can be reached.
+ * <p>
+ * The memory is released as soon as {@link #close()} is called instead of
+ * waiting for the garbage collector to notice that the buffers are unreachable.
+ * Any access after closing throws an {@link IllegalStateException}.
+ * Closing must not race with other threads still reading or writing the storage.
+ */
+public final class DirectStorage implements FloatStorage, AutoCloseable {
+    /** Largest number of floats the storage can address, the largest int index */
+    public static final int MAX_SIZE = Integer.MAX_VALUE;
+    private static final int REGION_SHIFT = 28;
+    /** Floats per region, 1 GB */
+    public static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+
+    /** sun.misc.Unsafe::invokeCleaner bound to the unsafe instance, or null if it isn't accessible */
+    private static final MethodHandle CLEANER = findCleaner();
+
+    /** Buffers owned by the storage, released on close */
+    private ByteBuffer[] buffers;
+    /** Region i holds indices [i * REGION_SIZE, (i + 1) * REGION_SIZE) */
+    private FloatBuffer[] regions;
+    private final int size;
+
+    /**
+     * Wraps direct buffers, reading floats in each buffer's byte order
+     * starting at its current position. The buffers are addressed one after the other,
+     * each one but the last has to hold a multiple of {@link #REGION_SIZE} floats.
+     *
+     * @param buffers direct buffers, owned by the storage from now on
+     */
+    public DirectStorage(ByteBuffer... buffers) {
+        long total = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuffer bytes = buffers[i];
+            if (!bytes.isDirect()) {
+                throw new IllegalArgumentException("Buffer provided to the storage has to be direct.");
+            }
+            long floats = bytes.remaining() / Float.BYTES;
+            if (i < buffers.length - 1 && floats % REGION_SIZE != 0) {
+                throw new IllegalArgumentException("Every buffer but the last has to hold a multiple of " +
+                        REGION_SIZE + " floats. Provided: " + floats);
+            }
+            total += floats;
+        }
+        if (total > MAX_SIZE) {
+            throw new IllegalArgumentException("Off-heap storage size has to be between 0 and " + MAX_SIZE +
+                    ". Provided: " + total);
+        }
+        this.buffers = buffers.clone();
+        this.size = (int) total;
+        this.regions = new FloatBuffer[(size + REGION_MASK) >>> REGION_SHIFT];
+        int region = 0;
+        for (ByteBuffer bytes : buffers) {
+            FloatBuffer floats = bytes.asFloatBuffer();
+            for (int start = 0; start < floats.capacity(); start += REGION_SIZE) {
+                regions[region++] = floats.slice(start, Math.min(REGION_SIZE, floats.capacity() - start));
+            }
+        }
+    }
+
+    /**
+     * Allocates zeroed off-heap storage in native byte order, one buffer per region.
+     *
+     * @param size number of floats
+     * @return new storage
+     */
+    public static DirectStorage allocate(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Off-heap storage size has to be between 0 and " + MAX_SIZE +
+                    ". Provided: " + size);
+        }
+        ByteBuffer[] buffers = new ByteBuffer[Math.max(1, (size + REGION_MASK) >>> REGION_SHIFT)];
+        for (int i = 0; i < buffers.length; i++) {
+            int floats = Math.min(REGION_SIZE, size - i * REGION_SIZE);
+            buffers[i] = ByteBuffer.allocateDirect(floats * Float.BYTES).order(ByteOrder.nativeOrder());
+        }
+        return new DirectStorage(buffers);
+    }
+
+    public float get(int index) { return regions()[index >>> REGION_SHIFT].get(index & REGION_MASK); }
+
+    public void set(int index, float value) { regions()[index >>> REGION_SHIFT].put(index & REGION_MASK, value); }
+
+    public int size() { return size; }
+
+    public float[] array() { return null; }
+
+    /**
+     * Copies a run of floats out of the storage, across regions if needed.
+     *
+     * @param index  first index to copy
+     * @param dst    destination array
+     * @param offset position in the destination
+     * @param length number of floats
+     */
+    public void get(int index, float[] dst, int offset, int length) {
+        FloatBuffer[] r = regions();
+        while (length > 0) {
+            int start = index & REGION_MASK, run = Math.min(length, REGION_SIZE - start);
+            r[index >>> REGION_SHIFT].get(start, dst, offset, run);
+            index += run;
+            offset += run;
+            length -= run;
+        }
+    }
+
+    /**
+     * Copies a run of floats into the storage, across regions if needed.
+     *
+     * @param index  first index to write
+     * @param src    source array
+     * @param offset position in the source
+     * @param length number of floats
+     */
+    public void set(int index, float[] src, int offset, int length) {
+        FloatBuffer[] r = regions();
+        while (length > 0) {
+            int start = index & REGION_MASK, run = Math.min(length, REGION_SIZE - start);
+            r[index >>> REGION_SHIFT].put(start, src, offset, run);
+            index += run;
+            offset += run;
+            length -= run;
+        }
+    }
+
+    public boolean isOpen() { return regions != null; }
+
+    /**
+     * Releases the memory right away. Closing twice does nothing.
+     */
+    public void close() {
+        ByteBuffer[] released = buffers;
+        buffers = null;
+        regions = null;
+        if (released == null || CLEANER == null) return;
+        for (ByteBuffer bytes : released) {
+            try {
+                CLEANER.invokeExact(bytes);
+            } catch (IllegalArgumentException e) {
+                // a slice or duplicate, its memory belongs to someone else and is freed with them
+            } catch (Throwable e) {
+                throw new IllegalStateException("Couldn't release off-heap storage", e);
+            }
+        }
+    }
+
+    private FloatBuffer[] regions() {
+        FloatBuffer[] r = regions;
+        if (r == null) {
+            throw new IllegalStateException("Off-heap storage has already been closed.");
+        }
+        return r;
+    }
+
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // fall back to letting the garbage collector free the buffer
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.InputMismatchException;
+
+/**
+ * LU decomposition with partial pivoting, PA = LU, in double precision.
+ * <p>
+ * Same layout as {@link LU}: both factors in one column-major array, the row exchanges
+ * in an index array. The elimination is column by column with the update of the
+ * remaining columns split across threads; the blocked float factorization is the fast one.
+ */
+public final class DoubleLU {
+    private final int n;
+    /** L below the diagonal, U on and above it, column-major */
+    private final double[] lu;
+    /** Row i of PA is row perm[i] of A */
+    private final int[] perm;
+    private final int permutationSign;
+    private final boolean singular;
+
+    private DoubleLU(int n, double[] lu, int[] perm, int permutationSign, boolean singular) {
+        this.n = n;
+        this.lu = lu;
+        this.perm = perm;
+        this.permutationSign = permutationSign;
+        this.singular = singular;
+    }
+
+    /**
+     * Factors a square matrix. The matrix itself is left untouched.
+     *
+     * @param a square matrix
+     * @return factorization of a
+     */
+    public static DoubleLU of(RealMatrix a) {
+        if (a.getNumberOfRows() != a.getNumberOfColumns()) {
+            throw new InputMismatchException("LU decomposition requires a square matrix. Provided: " +
+                    a.getNumberOfRows() + " by " + a.getNumberOfColumns());
+        }
+        final int n = a.getNumberOfRows();
+        final double[] lu = new DoubleMatrix(a).values;
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) perm[i] = i;
+        int sign = 1;
+        boolean singular = false;
+
+        double largest = 0;
+        for (double value : lu) largest = Math.max(largest, Math.abs(value));
+        final double tolerance = Math.ulp(1d) * n * largest;
+
+        for (int k = 0; k < n; k++) {
+            final int kk = k * n + k;
+            int p = k;
+            for (int i = k + 1; i < n; i++) {
+                if (Math.abs(lu[k * n + i]) > Math.abs(lu[k * n + p])) p = i;
+            }
+            if (p != k) {
+                for (int c = 0; c < n; c++) {
+                    double t = lu[c * n + k]; lu[c * n + k] = lu[c * n + p]; lu[c * n + p] = t;
+                }
+                int t = perm[k]; perm[k] = perm[p]; perm[p] = t;
+                sign = -sign;
+            }
+            if (Math.abs(lu[kk]) <= tolerance) {
+                singular = true;
+                continue;
+            }
+            double inverse = 1 / lu[kk];
+            for (int i = kk + 1; i < k * n + n; i++) lu[i] *= inverse;
+            final int column = k;
+            Parallel.forColumns(n - k - 1, n - k - 1, (from, to) -> {
+                for (int c = column + 1 + from; c < column + 1 + to; c++) {
+                    double factor = lu[c * n + column];
+                    for (int i = column + 1; i < n; i++) {
+                        lu[c * n + i] -= factor * lu[column * n + i];
+                    }
+                }
+            });
+        }
+        return new DoubleLU(n, lu, perm, sign, singular);
+    }
+
+    /**
+     * Solves Ax = b.
+     *
+     * @param b right-hand side
+     * @return x
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public DoubleVector solve(RealVector b) {
+        if (b.getLength() != n) {
+            throw new InputMismatchException("Dimension mismatch. Expected a right-hand side of length " + n +
+                    ". Provided: " + b.getLength());
+        }
+        if (singular) {
+            throw new ArithmeticException("Matrix is singular.");
+        }
+        DoubleVector x = new DoubleVector(n);
+        double[] v = x.entries;
+        for (int i = 0; i < n; i++) {
+            v[i] = b.getDouble(perm[i]);
+        }
+        for (int j = 0; j < n; j++) {
+            for (int i = j + 1; i < n; i++) v[i] -= v[j] * lu[j * n + i];
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            v[j] /= lu[j * n + j];
+            for (int i = 0; i < j; i++) v[i] -= v[j] * lu[j * n + i];
+        }
+        return x;
+    }
+
+    /**
+     * @return determinant of the factored matrix, the signed product of the pivots
+     */
+    public double determinant() {
+        double result = permutationSign;
+        for (int j = 0; j < n; j++) {
+            result *= lu[j * n + j];
+        }
+        return result;
+    }
+
+    public boolean isSingular() { return singular; }
+
+    public int getSize() { return n; }
+}
@@ -0,0 +1,963 @@
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Double precision counterpart of {@link Matrix}, entries stored in column-major order.
+ * <p>
+ * Entry (row, col) is found at <code>offset + col * ld + row * rowStride</code>
+ * of a double array, so transposes, submatrices and strided slices are zero-copy views
+ * like those of a float matrix.
+ * <p>
+ * Slower and twice the memory of a float matrix, but good to about 16 significant
+ * digits instead of 7. For solving systems, {@link MixedPrecisionSolver} gets most
+ * of the accuracy at float speed.
+ */
+public class DoubleMatrix implements RealMatrix {
+    protected final int m;
+    protected final int n;
+    /** Backing array, possibly shared with other views */
+    protected final double[] values;
+    /** Index of entry (0, 0) in the array */
+    protected final int offset;
+    /** Leading dimension: distance in the array between the starts of adjacent columns */
+    protected final int ld;
+    /** Distance in the array between adjacent entries of a column, 1 unless this is a strided view */
+    protected final int rowStride;
+    protected static final double epsilon = 1e-12;
+
+
+    // ================== CONSTRUCTORS BEGIN ==================
+    /**
+     * Constructor for an empty generic matrix.
+     *
+     * @param m number of rows
+     * @param n number of columns
+     */
+    public DoubleMatrix(int m, int n) {
+        this(m, n, new double[Matrix.checkedSize(m, n)], 0, 1, m);
+    }
+
+    /**
+     * Constructor for a view of an existing array.
+     * Entry (row, col) is at <code>offset + col * ld + row * rowStride</code>.
+     *
+     * @param m         number of rows
+     * @param n         number of columns
+     * @param values    backing array
+     * @param offset    index of entry (0, 0) in the array
+     * @param rowStride distance between adjacent entries of a column
+     * @param ld        distance between adjacent entries of a row
+     */
+    protected DoubleMatrix(int m, int n, double[] values, int offset, int rowStride, int ld) {
+        Matrix.checkedSize(m, n);
+        if (rowStride <= 0 || ld <= 0) {
+            throw new IllegalArgumentException("Strides have to be positive. Provided: " + rowStride + " and " + ld);
+        }
+        if (offset < 0 || offset + (long) (n - 1) * ld + (long) (m - 1) * rowStride >= values.length) {
+            throw new IndexOutOfBoundsException("A " + m + " by " + n + " matrix at offset " + offset +
+                    " with strides " + rowStride + " and " + ld + " doesn't fit in an array of length " + values.length);
+        }
+        this.m = m;
+        this.n = n;
+        this.values = values;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.ld = ld;
+    }
+
+    /**
+     * Constructor for a matrix from a list of values
+     *
+     * @param m                           number of rows
+     * @param n                           number of columns
+     * @param valuesPassedInRowMajorOrder whether values are listed in row-major order
+     * @param entries                     comma separated values for the matrix
+     */
+    public DoubleMatrix(int m, int n, boolean valuesPassedInRowMajorOrder, double... entries) {
+        this(m, n);
+        if (m * n != entries.length) {
+            throw new InputMismatchException("Number of entries provided doesn't match the expected number based on size. " +
+                    "Expected: " + m * n + "  Provided: " + entries.length);
+        }
+        if (valuesPassedInRowMajorOrder) {
+            for (int row = 0, i = 0; row < m; row++) {
+                for (int col = 0; col < n; col++, i++) {
+                    values[col * m + row] = entries[i];
+                }
+            }
+        } else {
+            System.arraycopy(entries, 0, values, 0, m * n);
+        }
+    }
+
+    /**
+     * Converts a matrix of any precision.
+     * The copy is always packed, even if the original is a view.
+     *
+     * @param mat matrix to be copied from
+     */
+    public DoubleMatrix(RealMatrix mat) {
+        this(mat.getNumberOfRows(), mat.getNumberOfColumns());
+        if (mat instanceof DoubleMatrix) {
+            DoubleMatrix d = (DoubleMatrix) mat;
+            for (int col = 0; col < n; col++) {
+                if (d.rowStride == 1) {
+                    System.arraycopy(d.values, d.index(0, col), values, col * m, m);
+                } else {
+                    for (int row = 0, i = d.index(0, col); row < m; row++, i += d.rowStride) {
+                        values[col * m + row] = d.values[i];
+                    }
+                }
+            }
+        } else if (mat instanceof Matrix && ((Matrix) mat).values != null) {
+            Matrix f = (Matrix) mat;
+            for (int col = 0; col < n; col++) {
+                for (int row = 0, i = f.index(0, col); row < m; row++, i++) {
+                    values[col * m + row] = f.values[i];
+                }
+            }
+        } else {
+            for (int col = 0; col < n; col++) {
+                for (int row = 0; row < m; row++) {
+                    values[col * m + row] = mat.getDouble(row, col);
+                }
+            }
+        }
+    }
+
+    // ================== CONSTRUCTORS END ==================
+
+
+    // ================== SPECIAL MATRICES BEGIN ==================
+
+    /**
+     * @param m number of rows
+     * @param n number of columns
+     * @return an m by n matrix filled with random values between 0 and 1
+     */
+    public static DoubleMatrix randomMatrix(int m, int n) {
+        DoubleMatrix result = new DoubleMatrix(m, n);
+        Parallel.forColumns(n, m, (from, to) -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = from * m; i < to * m; i++) {
+                result.values[i] = random.nextDouble();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @param n number of rows and columns
+     * @return n by n identity matrix
+     */
+    public static DoubleMatrix identityMatrix(int n) {
+        DoubleMatrix result = new DoubleMatrix(n, n);
+        for (int i = 0; i < n; i++) {
+            result.values[i * n + i] = 1;
+        }
+        return result;
+    }
+
+    // ================== SPECIAL MATRICES END ==================
+
+
+    // ================== ARITHMETIC BEGIN ==================
+
+    /**
+     * Adds a matrix to this matrix
+     *
+     * @param a matrix to be added
+     */
+    public void add(DoubleMatrix a) {
+        checkSameSize(a, "add");
+        checkElementwiseAlias(a, this);
+        combine(this, a, this, 1);
+    }
+
+    /**
+     * @return componentwise sum of the two parameters
+     */
+    public static DoubleMatrix add(DoubleMatrix a, DoubleMatrix b) {
+        a.checkSameSize(b, "add");
+        DoubleMatrix result = new DoubleMatrix(a.m, a.n);
+        combine(a, b, result, 1);
+        return result;
+    }
+
+    /**
+     * Subtracts a matrix from this matrix
+     *
+     * @param a matrix to be subtracted
+     */
+    public void subtract(DoubleMatrix a) {
+        checkSameSize(a, "subtract");
+        checkElementwiseAlias(a, this);
+        combine(this, a, this, -1);
+    }
+
+    /**
+     * @return componentwise difference of the two parameters
+     */
+    public static DoubleMatrix subtract(DoubleMatrix a, DoubleMatrix b) {
+        a.checkSameSize(b, "subtract");
+        DoubleMatrix result = new DoubleMatrix(a.m, a.n);
+        combine(a, b, result, -1);
+        return result;
+    }
+
+    /**
+     * Matrix addition into an existing matrix, without allocating.
+     *
+     * @param a   first summand
+     * @param b   second summand
+     * @param dst destination, which may be a or b itself but not overlap them otherwise
+     * @return dst, holding a + b
+     */
+    public static DoubleMatrix addInto(DoubleMatrix a, DoubleMatrix b, DoubleMatrix dst) {
+        a.checkSameSize(b, "add");
+        a.checkSameSize(dst, "add");
+        checkElementwiseAlias(a, dst);
+        checkElementwiseAlias(b, dst);
+        combine(a, b, dst, 1);
+        return dst;
+    }
+
+    /**
+     * Matrix subtraction into an existing matrix, without allocating.
+     *
+     * @param a   minuend
+     * @param b   subtrahend
+     * @param dst destination, which may be a or b itself but not overlap them otherwise
+     * @return dst, holding a - b
+     */
+    public static DoubleMatrix subtractInto(DoubleMatrix a, DoubleMatrix b, DoubleMatrix dst) {
+        a.checkSameSize(b, "subtract");
+        a.checkSameSize(dst, "subtract");
+        checkElementwiseAlias(a, dst);
+        checkElementwiseAlias(b, dst);
+        combine(a, b, dst, -1);
+        return dst;
+    }
+
+    /**
+     * Adds a multiple of another matrix to this matrix in one pass, A = A + alpha * X
+     *
+     * @param alpha scalar to multiply x by
+     * @param x     matrix to be added
+     */
+    public void axpy(double alpha, DoubleMatrix x) {
+        checkSameSize(x, "add");
+        checkElementwiseAlias(x, this);
+        combine(this, x, this, alpha);
+    }
+
+    /**
+     * Writes a + factor * b into result, column by column.
+     * Sizes are expected to have been checked by the caller.
+     */
+    private static void combine(DoubleMatrix a, DoubleMatrix b, DoubleMatrix result, double factor) {
+        Parallel.forColumns(a.n, a.m, (from, to) -> {
+            for (int col = from; col < to; col++) {
+                int xi = a.index(0, col), yi = b.index(0, col), ri = result.index(0, col);
+                for (int row = 0; row < a.m; row++, xi += a.rowStride, yi += b.rowStride, ri += result.rowStride) {
+                    result.values[ri] = a.values[xi] + factor * b.values[yi];
+                }
+            }
+        });
+    }
+
+    private void checkSameSize(DoubleMatrix a, String operation) {
+        if (a.m != m || a.n != n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to " + operation + " matrices of different sizes.");
+        }
+    }
+
+    /**
+     * Product of two matrices, computed a column of the result at a time
+     * as a combination of the columns of a. Large products are split across threads.
+     *
+     * @param a multiplier
+     * @param b multiplicand
+     * @return product ab
+     */
+    public static DoubleMatrix product(DoubleMatrix a, DoubleMatrix b) {
+        if (a.n != b.m) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of improper size.");
+        }
+        return productInto(a, b, new DoubleMatrix(a.m, b.n));
+    }
+
+    /**
+     * Product of two matrices into an existing matrix, without allocating.
+     *
+     * @param a   multiplier
+     * @param b   multiplicand
+     * @param dst destination, which can't share entries with a or b
+     * @return dst, holding ab
+     */
+    public static DoubleMatrix productInto(DoubleMatrix a, DoubleMatrix b, DoubleMatrix dst) {
+        if (a.n != b.m || dst.m != a.m || dst.n != b.n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of improper size.");
+        }
+        if (overlaps(a, dst) || overlaps(b, dst)) {
+            throw new IllegalArgumentException("Destination of a product can't share entries with its factors.");
+        }
+        final int m = a.m, k = a.n;
+        Parallel.forColumns(b.n, (long) m * k, (from, to) -> {
+            for (int col = from; col < to; col++) {
+                int c = dst.index(0, col);
+                for (int row = 0, i = c; row < m; row++, i += dst.rowStride) {
+                    dst.values[i] = 0;
+                }
+                for (int l = 0; l < k; l++) {
+                    double factor = b.values[b.index(l, col)];
+                    for (int row = 0, i = a.index(0, l), r = c; row < m; row++, i += a.rowStride, r += dst.rowStride) {
+                        dst.values[r] += a.values[i] * factor;
+                    }
+                }
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Computes the product of this matrix and a vector
+     *
+     * @param x vector to be multiplied by
+     * @return this matrix times x
+     */
+    public DoubleVector times(DoubleVector x) {
+        return timesInto(x, new DoubleVector(m));
+    }
+
+    /**
+     * Computes the product of this matrix and a vector into an existing vector, without allocating.
+     *
+     * @param x   vector to be multiplied by
+     * @param dst destination, which can't be x
+     * @return dst, holding this matrix times x
+     */
+    public DoubleVector timesInto(DoubleVector x, DoubleVector dst) {
+        if (x.length != n || dst.length != m) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrix by a vector of improper length.");
+        }
+        if (x.entries == dst.entries) {
+            throw new IllegalArgumentException("Destination of a product can't share entries with its factors.");
+        }
+        double[] r = dst.entries;
+        Arrays.fill(r, 0, m, 0);
+        for (int col = 0; col < n; col++) {
+            double k = x.entries[col];
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) {
+                r[row] += values[i] * k;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Whether two matrices may share entries: same array and overlapping spans.
+     * Interleaved views, such as the even and odd columns, are conservatively reported as overlapping.
+     */
+    static boolean overlaps(DoubleMatrix a, DoubleMatrix b) {
+        if (a.values != b.values) return false;
+        return a.offset <= b.index(b.m - 1, b.n - 1) && b.offset <= a.index(a.m - 1, a.n - 1);
+    }
+
+    /**
+     * Elementwise operations can write into an operand as long as every entry
+     * of the destination is the matching entry of the operand.
+     */
+    static void checkElementwiseAlias(DoubleMatrix operand, DoubleMatrix dst) {
+        boolean sameLayout = operand.values == dst.values && operand.offset == dst.offset
+                && operand.ld == dst.ld && operand.rowStride == dst.rowStride;
+        if (!sameLayout && overlaps(operand, dst)) {
+            throw new IllegalArgumentException("Destination partially overlaps an operand.");
+        }
+    }
+
+    // ================== ARITHMETIC END ==================
+
+
+    // ================== RREF BEGIN ==================
+
+    /**
+     * Brings the matrix to an echelon form in place, by Gaussian elimination with partial pivoting.
+     */
+    public void to_echelon() {
+        int h = 0; // row
+        int k = 0; // col
+        while (h < m && k < n) {
+            int i_max = partial_pivot(h, m - 1, k);
+
+            if (Math.abs(getEntry(i_max, k)) < epsilon) {
+                ++k;
+            }
+            else {
+                swap_rows(h, i_max);
+
+                for (int i = h + 1; i < m; i++) {
+                    double f = getEntry(i, k) / getEntry(h, k);
+                    setEntry(i, k, 0);
+                    for (int j = k + 1; j < n; j++) {
+                        setEntry(i, j, getEntry(i, j) - getEntry(h, j) * f);
+                    }
+                }
+                ++h; ++k;
+            }
+        }
+    }
+
+    /**
+     * Row reduces the matrix, replacing the old values.
+     * Same elimination as {@link Matrix#reduce()}, carried out in double precision.
+     */
+    public void reduce() {
+        to_echelon();
+
+        int h = m - 1; // row
+        while (h >= 0) {
+            int k = rightmost_pivot_column(h);
+
+            // a row of zeroes has no pivot at all
+            if (k == n || Math.abs(getEntry(h, k)) < epsilon) {
+                --h;
+            }
+            else {
+                // create zeroes above this pivot
+                for (int i = h - 1; i >= 0; i--) {
+                    double f = getEntry(i, k) / getEntry(h, k);
+                    setEntry(i, k, 0);
+                    for (int j = k + 1; j < n; j++) {
+                        setEntry(i, j, getEntry(i, j) - getEntry(h, j) * f);
+                    }
+                }
+
+                // if a pivot is not 1, make it 1 by a scaling operation
+                if (Math.abs(1 - getEntry(h, k)) > epsilon) {
+                    double f = getEntry(h, k);
+                    setEntry(h, k, 1);
+                    for (int j = k + 1; j < n; j++) {
+                        setEntry(h, j, getEntry(h, j) / f);
+                    }
+                }
+
+                --h;
+            }
+        }
+    }
+
+    /**
+     * Create the reduced echelon form of the argument matrix
+     * @param m original matrix
+     * @return row reduced matrix
+     */
+    public static DoubleMatrix rref(DoubleMatrix m) {
+        DoubleMatrix result = new DoubleMatrix(m);
+        result.reduce();
+        return result;
+    }
+
+    private int partial_pivot(int start_row, int end_row, int column) {
+        int max = start_row;
+        for (int i = start_row; i <= end_row; i++) {
+            if (Math.abs(getEntry(i, column)) > Math.abs(getEntry(max, column))) { max = i; }
+        }
+        return max;
+    }
+
+    private void swap_rows(int a, int b) {
+        if (a == b) return;
+        for (int i = index(a, 0), j = index(b, 0), col = 0; col < n; col++, i += ld, j += ld) {
+            double temp = values[j];
+            values[j] = values[i];
+            values[i] = temp;
+        }
+    }
+
+    private int rightmost_pivot_column(int row) {
+        int col = 0;
+        while (col < n && Math.abs(getEntry(row, col)) < epsilon) ++col;
+        return col;
+    }
+
+    // ================== RREF END ==================
+
+
+    // ================== DECOMPOSITION BEGIN ==================
+
+    /**
+     * @return LU factorization of this square matrix in double precision
+     */
+    public DoubleLU lu() {
+        return DoubleLU.of(this);
+    }
+
+    /**
+     * Solver that factors in single precision and refines the solutions in double,
+     * reaching double accuracy at about the cost of a float factorization.
+     *
+     * @return mixed-precision solver for this square matrix
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public MixedPrecisionSolver solver() {
+        return MixedPrecisionSolver.of(this);
+    }
+
+    // ================== DECOMPOSITION END ==================
+
+
+    // ================== VECTORIZER BEGIN ==================
+
+    /**
+     * Function applied to all of the entries in the matrix.
+     * As with {@link Matrix.Vectorizer}, it is called on the calling thread in column-major order
+     * unless the caller passes <code>parallel</code>, in which case it has to be thread safe.
+     */
+    public interface Vectorizer {
+        double function(double value);
+    }
+
+    /**
+     * Interface for combining the entries of two matrices pairwise.
+     */
+    public interface BinaryVectorizer {
+        double function(double value, double other);
+    }
+
+    /**
+     * Interface for a function that also depends on the position of the entry.
+     */
+    public interface IndexedVectorizer {
+        double function(int row, int column, double value);
+    }
+
+    /**
+     * Applies a certain operation to all the elements in the matrix, in order on the calling thread.
+     *
+     * @param vectorizer <code>value -> operation(value)</code>
+     */
+    public void vectorize(Vectorizer vectorizer) {
+        vectorize(vectorizer, false);
+    }
+
+    /**
+     * Applies a certain operation to all the elements in the matrix.
+     *
+     * @param vectorizer <code>value -> operation(value)</code>
+     * @param parallel   whether the operation may run on several threads at once, see {@link Vectorizer}
+     */
+    public void vectorize(Vectorizer vectorizer, boolean parallel) {
+        Parallel.ColumnRange body = (from, to) -> {
+            for (int col = from; col < to; col++) {
+                for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) {
+                    values[i] = vectorizer.function(values[i]);
+                }
+            }
+        };
+        if (parallel) {
+            Parallel.forColumns(n, m, body);
+        } else {
+            body.apply(0, n);
+        }
+    }
+
+    /**
+     * Replaces every entry with a function of it and the matching entry of another matrix,
+     * in order on the calling thread.
+     *
+     * @param that       matrix of the same size, which may be this matrix itself
+     * @param vectorizer <code>(value, other) -> operation(value, other)</code>
+     */
+    public void vectorize(DoubleMatrix that, BinaryVectorizer vectorizer) {
+        vectorize(that, vectorizer, false);
+    }
+
+    /**
+     * Replaces every entry with a function of it and the matching entry of another matrix.
+     *
+     * @param that       matrix of the same size, which may be this matrix itself
+     * @param vectorizer <code>(value, other) -> operation(value, other)</code>
+     * @param parallel   whether the function may run on several threads at once, see {@link Vectorizer}
+     */
+    public void vectorize(DoubleMatrix that, BinaryVectorizer vectorizer, boolean parallel) {
+        if (that.m != m || that.n != n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to combine matrices of different sizes.");
+        }
+        checkElementwiseAlias(that, this);
+        Parallel.ColumnRange body = (from, to) -> {
+            for (int col = from; col < to; col++) {
+                int xi = index(0, col), yi = that.index(0, col);
+                for (int row = 0; row < m; row++, xi += rowStride, yi += that.rowStride) {
+                    values[xi] = vectorizer.function(values[xi], that.values[yi]);
+                }
+            }
+        };
+        if (parallel) {
+            Parallel.forColumns(n, m, body);
+        } else {
+            body.apply(0, n);
+        }
+    }
+
+    /**
+     * Replaces every entry with a function of it and its position, in order on the calling thread.
+     *
+     * @param vectorizer <code>(row, column, value) -> operation(row, column, value)</code>
+     */
+    public void vectorizeIndexed(IndexedVectorizer vectorizer) {
+        vectorizeIndexed(vectorizer, false);
+    }
+
+    /**
+     * Replaces every entry with a function of it and its position.
+     *
+     * @param vectorizer <code>(row, column, value) -> operation(row, column, value)</code>
+     * @param parallel   whether the function may run on several threads at once, see {@link Vectorizer}
+     */
+    public void vectorizeIndexed(IndexedVectorizer vectorizer, boolean parallel) {
+        Parallel.ColumnRange body = (from, to) -> {
+            for (int col = from; col < to; col++) {
+                for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) {
+                    values[i] = vectorizer.function(row, col, values[i]);
+                }
+            }
+        };
+        if (parallel) {
+            Parallel.forColumns(n, m, body);
+        } else {
+            body.apply(0, n);
+        }
+    }
+
+    /**
+     * Replaces every entry with its absolute value.
+     */
+    public void abs() {
+        vectorize(Math::abs, true);
+    }
+
+    /**
+     * Limits every entry to a range.
+     *
+     * @param min smallest value allowed
+     * @param max largest value allowed
+     */
+    public void clamp(double min, double max) {
+        if (!(min <= max)) {
+            throw new IllegalArgumentException("Lower bound of the range can't be above the upper bound: " + min + " > " + max);
+        }
+        vectorize(value -> Math.max(min, Math.min(max, value)), true);
+    }
+
+    /**
+     * Multiplies every entry by a scalar.
+     *
+     * @param k the scalar to be multiplied by
+     */
+    public void scale(double k) {
+        vectorize(value -> value * k, true);
+    }
+
+    /**
+     * Replaces every entry x with e<sup>x</sup>.
+     */
+    public void exp() {
+        vectorize(Math::exp, true);
+    }
+
+    /**
+     * Multiplies every entry by the matching entry of another matrix (Hadamard product).
+     *
+     * @param that matrix of the same size
+     */
+    public void multiplyEntries(DoubleMatrix that) {
+        if (that.m != m || that.n != n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of different sizes entry by entry.");
+        }
+        vectorize(that, (value, other) -> value * other, true);
+    }
+
+    // ================== VECTORIZER END ==================
+
+
+    // ================== REDUCTIONS BEGIN ==================
+
+    /**
+     * @return sum of all the entries
+     */
+    public double sum() {
+        double result = 0;
+        for (int col = 0; col < n; col++) {
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) result += values[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return smallest entry
+     */
+    public double min() {
+        double result = Double.POSITIVE_INFINITY;
+        for (int col = 0; col < n; col++) {
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) result = Math.min(result, values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return largest entry
+     */
+    public double max() {
+        double result = Double.NEGATIVE_INFINITY;
+        for (int col = 0; col < n; col++) {
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) result = Math.max(result, values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return square root of the sum of the squares of the entries
+     */
+    public double normFrobenius() {
+        double result = 0;
+        for (int col = 0; col < n; col++) {
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) result += values[i] * values[i];
+        }
+        return Math.sqrt(result);
+    }
+
+    /**
+     * @return largest absolute value of an entry
+     */
+    public double normMax() {
+        double result = 0;
+        for (int col = 0; col < n; col++) {
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) result = Math.max(result, Math.abs(values[i]));
+        }
+        return result;
+    }
+
+    /**
+     * @return largest absolute column sum
+     */
+    public double norm1() {
+        double result = 0;
+        for (int col = 0; col < n; col++) {
+            double sum = 0;
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) sum += Math.abs(values[i]);
+            result = Math.max(result, sum);
+        }
+        return result;
+    }
+
+    /**
+     * @return largest absolute row sum
+     */
+    public double normInf() {
+        double[] sums = new double[m];
+        for (int col = 0; col < n; col++) {
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) sums[row] += Math.abs(values[i]);
+        }
+        double result = 0;
+        for (double sum : sums) {
+            result = Math.max(result, sum);
+        }
+        return result;
+    }
+
+    // ================== REDUCTIONS END ==================
+
+
+    // ================== GET/SET BEGIN ==================
+
+    public double getEntry(int row, int column) {
+        checkEntry(row, column);
+        return values[index(row, column)];
+    }
+
+    public void setEntry(int row, int column, double value) {
+        checkEntry(row, column);
+        values[index(row, column)] = value;
+    }
+
+    public double getDouble(int row, int column) { return getEntry(row, column); }
+
+    public void setDouble(int row, int column, double value) { setEntry(row, column, value); }
+
+    public int getNumberOfRows() { return m; }
+
+    public int getNumberOfColumns() { return n; }
+
+    public static double getEpsilon() { return epsilon; }
+
+    /**
+     * @param index index of the column
+     * @return copy of the column
+     */
+    public DoubleVector getColumn(int index) {
+        DoubleVector result = new DoubleVector(m);
+        for (int row = 0, i = index(0, index); row < m; row++, i += rowStride) {
+            result.entries[row] = values[i];
+        }
+        return result;
+    }
+
+    public void setColumn(int index, DoubleVector c) {
+        if (c.length != m) {
+            throw new InputMismatchException("Dimension mismatch. Expected a column of length " + m + ". Provided: " + c.length);
+        }
+        for (int row = 0, i = index(0, index); row < m; row++, i += rowStride) {
+            values[i] = c.entries[row];
+        }
+    }
+
+    /**
+     * @param index index of the row
+     * @return copy of the row
+     */
+    public double[] getRow(int index) {
+        double[] result = new double[n];
+        for (int col = 0, i = index(index, 0); col < n; col++, i += ld) {
+            result[col] = values[i];
+        }
+        return result;
+    }
+
+    public void setRow(int index, double[] row) {
+        for (int col = 0, i = index(index, 0); col < n; col++, i += ld) {
+            values[i] = row[col];
+        }
+    }
+
+    /**
+     * Position of an entry in the array.
+     *
+     * @param row    row of the entry
+     * @param column column of the entry
+     * @return index into the array
+     */
+    protected int index(int row, int column) {
+        return offset + column * ld + row * rowStride;
+    }
+
+    /**
+     * Rejects a position outside of the matrix, which the flat storage would otherwise
+     * resolve to an entry of a neighbouring column, or of the parent of a view.
+     */
+    private void checkEntry(int row, int column) {
+        if (row < 0 || row >= m || column < 0 || column >= n) {
+            throw new IndexOutOfBoundsException("Entry (" + row + ", " + column + ") is outside of a "
+                    + m + " by " + n + " matrix.");
+        }
+    }
+
+    /**
+     * @return copy of this matrix rounded to single precision
+     */
+    public Matrix toMatrix() {
+        Matrix result = new Matrix(m, n);
+        for (int col = 0; col < n; col++) {
+            for (int row = 0, i = index(0, col); row < m; row++, i += rowStride) {
+                result.values[col * m + row] = (float) values[i];
+            }
+        }
+        return result;
+    }
+
+    // ================== GET/SET END ==================
+
+
+    // ================== VIEWS BEGIN ==================
+
+    /**
+     * Transpose without copying: rows and columns swap strides.
+     * Writes to the view change this matrix.
+     *
+     * @return n by m view of this matrix
+     */
+    public DoubleMatrix transpose() {
+        return new DoubleMatrix(n, m, values, offset, ld, rowStride);
+    }
+
+    /**
+     * Block of this matrix, without copying.
+     *
+     * @param row     first row of the block
+     * @param column  first column of the block
+     * @param rows    number of rows in the block
+     * @param columns number of columns in the block
+     * @return view of the block; writes to it change this matrix
+     */
+    public DoubleMatrix subMatrix(int row, int column, int rows, int columns) {
+        return slice(row, rows, 1, column, columns, 1);
+    }
+
+    /**
+     * @param from first column
+     * @param to   column after the last one
+     * @return view of columns [from, to)
+     */
+    public DoubleMatrix columns(int from, int to) {
+        return subMatrix(0, from, m, to - from);
+    }
+
+    /**
+     * @param from first row
+     * @param to   row after the last one
+     * @return view of rows [from, to)
+     */
+    public DoubleMatrix rows(int from, int to) {
+        return subMatrix(from, 0, to - from, n);
+    }
+
+    /**
+     * Every rowStep-th row and columnStep-th column of this matrix, without copying.
+     *
+     * @param row        first row of the slice
+     * @param rows       number of rows in the slice
+     * @param rowStep    distance between the rows taken, at least 1
+     * @param column     first column of the slice
+     * @param columns    number of columns in the slice
+     * @param columnStep distance between the columns taken, at least 1
+     * @return view of the slice; writes to it change this matrix
+     */
+    public DoubleMatrix slice(int row, int rows, int rowStep, int column, int columns, int columnStep) {
+        if (rowStep <= 0 || columnStep <= 0) {
+            throw new IllegalArgumentException("Slice steps have to be positive. Provided: " + rowStep + " and " + columnStep);
+        }
+        if (rows <= 0 || columns <= 0) {
+            throw new InputMismatchException("Matrix has to have a positive number of rows and columns. " +
+                    "Provided: " + rows + " by " + columns);
+        }
+        if (row < 0 || row + (long) (rows - 1) * rowStep >= m || column < 0 || column + (long) (columns - 1) * columnStep >= n) {
+            throw new IndexOutOfBoundsException("Slice of " + rows + " by " + columns + " from (" + row + ", " + column +
+                    ") with steps " + rowStep + " and " + columnStep + " is outside of a " + m + " by " + n + " matrix.");
+        }
+        return new DoubleMatrix(rows, columns, values, index(row, column), rowStride * rowStep, ld * columnStep);
+    }
+
+    // ================== VIEWS END ==================
+
+
+    // ================== TO STRING BEGIN ==================
+
+    /**
+     * Prints the matrix in the terminal.
+     *
+     * @return text version of the matrix
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int row = 0; row < m; row++) {
+            for (int col = 0; col < n; col++) {
+                result.append(String.format("% 8.2f ", getEntry(row, col)));
+            }
+            result.append("\n");
+        }
+        return result.toString();
+    }
+
+    // ================== TO STRING END ==================
+}
@@ -0,0 +1,184 @@
+import java.util.InputMismatchException;
+
+/**
+ * Double precision counterpart of {@link Vector}, for results that need more
+ * than the 7 significant digits of a float.
+ */
+public class DoubleVector implements RealVector {
+    protected final double[] entries;
+    protected final int length;
+
+    /**
+     * Constructs an empty vector of specific length
+     *
+     * @param length number of entries in the vector
+     */
+    public DoubleVector(int length) {
+        if (length < 0)
+            throw new InputMismatchException("Length of a vector has to be a non-negative number.");
+        entries = new double[length];
+        this.length = length;
+    }
+
+    /**
+     * Constructs a vector from a double array
+     *
+     * @param values array of values
+     */
+    public DoubleVector(double... values) {
+        length = values.length;
+        entries = values.clone();
+    }
+
+    /**
+     * Converts a vector of any precision.
+     *
+     * @param v vector to copy from
+     */
+    public DoubleVector(RealVector v) {
+        length = v.getLength();
+        entries = new double[length];
+        for (int i = 0; i < length; i++) {
+            entries[i] = v.getDouble(i);
+        }
+    }
+
+    /**
+     * Componentwise vector addition
+     *
+     * @param that vector to be added
+     */
+    public void add(DoubleVector that) {
+        axpy(1, that);
+    }
+
+    /**
+     * Adds a multiple of another vector to this vector, y = y + alpha * x
+     *
+     * @param alpha scalar to multiply x by
+     * @param x     vector to be added
+     */
+    public void axpy(double alpha, DoubleVector x) {
+        checkLength(x);
+        for (int i = 0; i < length; i++) {
+            entries[i] += alpha * x.entries[i];
+        }
+    }
+
+    /**
+     * Adds a multiple of a single precision vector, y = y + alpha * x,
+     * without converting it first.
+     *
+     * @param alpha scalar to multiply x by
+     * @param x     vector to be added
+     */
+    public void axpy(double alpha, Vector x) {
+        if (length != x.length) {
+            throw new IllegalArgumentException("Dimension mismatch. Attempted to combine vectors of different lengths:\n"
+                    + length + " and " + x.length);
+        }
+        for (int i = 0, xi = x.offset; i < length; i++, xi += x.stride) {
+            entries[i] += alpha * x.entries[xi];
+        }
+    }
+
+    /**
+     * @param k the scalar to be multiplied by
+     * @return this vector scaled by k
+     */
+    public DoubleVector scale(double k) {
+        DoubleVector result = new DoubleVector(length);
+        for (int i = 0; i < length; i++) {
+            result.entries[i] = k * entries[i];
+        }
+        return result;
+    }
+
+    /**
+     * @param that second vector in the product
+     * @return dot product of this vector and the argument
+     */
+    public double dot(DoubleVector that) {
+        checkLength(that);
+        double result = 0;
+        for (int i = 0; i < length; i++) {
+            result += entries[i] * that.entries[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return largest absolute value of the entries
+     */
+    public double normInf() {
+        double result = 0;
+        for (double value : entries) {
+            result = Math.max(result, Math.abs(value));
+        }
+        return result;
+    }
+
+    private void checkLength(DoubleVector that) {
+        if (length != that.length)
+            throw new IllegalArgumentException("Dimension mismatch. Attempted to combine vectors of different lengths:\n"
+                    + length + " and " + that.length);
+    }
+
+    public double getEntry(int index) {
+        return entries[index];
+    }
+
+    public void setEntry(int index, double value) {
+        entries[index] = value;
+    }
+
+    public double getDouble(int index) { return entries[index]; }
+
+    public void setDouble(int index, double value) { entries[index] = value; }
+
+    public int getLength() { return length; }
+
+    /**
+     * @return copy of the entries, rounded to single precision
+     */
+    public Vector toVector() {
+        return toVector(new Vector(length));
+    }
+
+    /**
+     * Rounds the entries into an existing vector, without allocating.
+     *
+     * @param dst destination of the same length
+     * @return dst
+     */
+    public Vector toVector(Vector dst) {
+        if (length != dst.length) {
+            throw new IllegalArgumentException("Dimension mismatch. Attempted to combine vectors of different lengths:\n"
+                    + length + " and " + dst.length);
+        }
+        for (int i = 0, ri = dst.offset; i < length; i++, ri += dst.stride) {
+            dst.entries[ri] = (float) entries[i];
+        }
+        return dst;
+    }
+
+    /**
+     * @return entries of this vector in an array form
+     */
+    public double[] toDoubleArray() {
+        return entries;
+    }
+
+    /**
+     * Prints the vector in the terminal as a column of numbers.
+     *
+     * @return text version of a vector
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            result.append(entries[i]).append("\n");
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Loops behind the bulk element-wise operations of {@link Matrix}.
+ * <p>
+ * Every operation hands the entries to a kernel as runs of a heap array: all the
+ * columns of a range at once when the matrix is packed, otherwise one column at a time,
+ * copied through a buffer for off-heap and strided matrices. The built-in functions
+ * and reductions have a loop of their own each, picked once per run, so their
+ * per-entry code doesn't go through an interface call whose profile is shared
+ * with every other lambda passed to {@link Matrix#vectorize}.
+ */
+final class ElementWise {
+    /** Entries per reduction chunk, which also fixes the summation order regardless of threads */
+    private static final int CHUNK = 1 << 14;
+
+    /**
+     * Built-in unary functions, applied in place.
+     */
+    enum Function { ABS, CLAMP, SCALE, EXP }
+
+    /**
+     * Built-in reductions. The value of each run is combined with the others
+     * by addition or by maximum.
+     */
+    enum Reduction { SUM, MIN, MAX, SUM_OF_SQUARES, MAX_ABS, MAX_COLUMN_ABS_SUM }
+
+    /**
+     * Kernel over matching runs of one or two matrices.
+     */
+    interface Run {
+        /**
+         * @param x      entries of the first matrix
+         * @param y      entries of the second matrix, null for unary operations
+         * @param column column of the run if runs are single columns, first column of the run otherwise
+         */
+        void apply(float[] x, int xOffset, float[] y, int yOffset, int count, int column);
+    }
+
+    private ElementWise() {
+    }
+
+    // ================== DRIVERS BEGIN ==================
+
+    /**
+     * Runs the kernel over all of a, writing the runs back, split across threads by columns.
+     *
+     * @param b        second operand, read only, or null
+     * @param byColumn whether every run has to be a single column
+     * @param cost     estimated cost of one entry, in scalar operations
+     */
+    static void update(Matrix a, Matrix b, boolean byColumn, int cost, Run run) {
+        update(a, b, byColumn, true, cost, run);
+    }
+
+    /**
+     * Same as above, on the calling thread and in column order unless parallel is set,
+     * for kernels that call a function supplied by the caller.
+     *
+     * @param parallel whether the kernel may run on several threads at once
+     */
+    static void update(Matrix a, Matrix b, boolean byColumn, boolean parallel, int cost, Run run) {
+        if (parallel) {
+            Parallel.forColumns(a.n, (long) a.m * cost, (from, to) -> runs(a, b, byColumn, true, from, to, run));
+        } else {
+            runs(a, b, byColumn, true, 0, a.n, run);
+        }
+    }
+
+    /**
+     * Reduces all of a to a single value. Partial results are kept per fixed chunk of
+     * columns, so the result doesn't depend on the number of threads.
+     */
+    static double reduce(Matrix a, Reduction reduction) {
+        int columnsPerChunk = Math.max(1, CHUNK / a.m);
+        int chunks = (a.n + columnsPerChunk - 1) / columnsPerChunk;
+        double[] partial = new double[chunks];
+        boolean byColumn = reduction == Reduction.MAX_COLUMN_ABS_SUM;
+        Parallel.forColumns(chunks, (long) columnsPerChunk * a.m, (from, to) -> {
+            for (int chunk = from; chunk < to; chunk++) {
+                double[] value = {identity(reduction)};
+                runs(a, null, byColumn, false, chunk * columnsPerChunk, Math.min(a.n, (chunk + 1) * columnsPerChunk),
+                        (x, xi, y, yi, count, column) -> value[0] = combine(reduction, value[0], reduce(reduction, x, xi, count)));
+                partial[chunk] = value[0];
+            }
+        });
+        // pairwise, so that rounding errors of sums grow with log(chunks) instead of chunks
+        for (int step = 1; step < chunks; step *= 2) {
+            for (int i = 0; i + step < chunks; i += 2 * step) {
+                partial[i] = combine(reduction, partial[i], partial[i + step]);
+            }
+        }
+        return partial[0];
+    }
+
+    /**
+     * Hands columns [from, to) of a, and the matching ones of b, to the kernel.
+     */
+    private static void runs(Matrix a, Matrix b, boolean byColumn, boolean write, int from, int to, Run run) {
+        if (!byColumn && isPacked(a) && (b == null || isPacked(b))) {
+            run.apply(a.values, a.index(0, from), b == null ? null : b.values, b == null ? 0 : b.index(0, from),
+                    (to - from) * a.m, from);
+            return;
+        }
+        float[] bufferA = a.values == null ? new float[a.m] : null;
+        float[] bufferB = b != null && b.values == null ? new float[b.m] : null;
+        for (int col = from; col < to; col++) {
+            float[] x = a.values, y = null;
+            int xi = 0, yi = 0;
+            if (x != null) {
+                xi = a.index(0, col);
+            } else {
+                read(a, col, x = bufferA);
+            }
+            if (b != null) {
+                if ((y = b.values) != null) {
+                    yi = b.index(0, col);
+                } else {
+                    read(b, col, y = bufferB);
+                }
+            }
+            run.apply(x, xi, y, yi, a.m, col);
+            if (write && x == bufferA) {
+                for (int row = 0, i = a.index(0, col); row < a.m; row++, i += a.rowStride) {
+                    a.storage.set(i, bufferA[row]);
+                }
+            }
+        }
+    }
+
+    private static boolean isPacked(Matrix a) {
+        return a.values != null && a.ld == a.m;
+    }
+
+    private static void read(Matrix a, int col, float[] buffer) {
+        for (int row = 0, i = a.index(0, col); row < a.m; row++, i += a.rowStride) {
+            buffer[row] = a.storage.get(i);
+        }
+    }
+
+    // ================== DRIVERS END ==================
+
+
+    // ================== KERNELS BEGIN ==================
+
+    /**
+     * Applies a built-in function to a run in place.
+     *
+     * @param p parameter of the function: the factor for SCALE, the lower bound for CLAMP
+     * @param q second parameter: the upper bound for CLAMP
+     */
+    static void apply(Function function, float p, float q, float[] x, int offset, int count) {
+        int end = offset + count;
+        switch (function) {
+            case ABS:
+                for (int i = offset; i < end; i++) x[i] = Math.abs(x[i]);
+                break;
+            case CLAMP:
+                for (int i = offset; i < end; i++) x[i] = Math.min(q, Math.max(p, x[i]));
+                break;
+            case SCALE:
+                Kernels.get().scale(p, x, offset, x, offset, count);
+                break;
+            case EXP:
+                for (int i = offset; i < end; i++) x[i] = (float) Math.exp(x[i]);
+                break;
+        }
+    }
+
+    private static double reduce(Reduction reduction, float[] x, int offset, int count) {
+        int end = offset + count;
+        switch (reduction) {
+            case SUM: {
+                double sum = 0;
+                for (int i = offset; i < end; i++) sum += x[i];
+                return sum;
+            }
+            case MIN: {
+                float min = Float.POSITIVE_INFINITY;
+                for (int i = offset; i < end; i++) min = Math.min(min, x[i]);
+                return min;
+            }
+            case MAX: {
+                float max = Float.NEGATIVE_INFINITY;
+                for (int i = offset; i < end; i++) max = Math.max(max, x[i]);
+                return max;
+            }
+            case SUM_OF_SQUARES: {
+                double sum = 0;
+                for (int i = offset; i < end; i++) sum += (double) x[i] * x[i];
+                return sum;
+            }
+            case MAX_ABS: {
+                float max = 0;
+                for (int i = offset; i < end; i++) max = Math.max(max, Math.abs(x[i]));
+                return max;
+            }
+            default: {
+                double sum = 0;
+                for (int i = offset; i < end; i++) sum += Math.abs(x[i]);
+                return sum;
+            }
+        }
+    }
+
+    private static double identity(Reduction reduction) {
+        switch (reduction) {
+            case MIN: return Double.POSITIVE_INFINITY;
+            case MAX: return Double.NEGATIVE_INFINITY;
+            default: return 0;
+        }
+    }
+
+    private static double combine(Reduction reduction, double a, double b) {
+        switch (reduction) {
+            case SUM:
+            case SUM_OF_SQUARES: return a + b;
+            case MIN: return Math.min(a, b);
+            default: return Math.max(a, b);
+        }
+    }
+
+    // ================== KERNELS END ==================
+}
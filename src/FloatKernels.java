@@ -0,0 +1,38 @@
+/**
+ * Bulk operations on runs of floats, the inner loops behind
+ * {@link Vector} and {@link Matrix} arithmetic.
+ * <p>
+ * Every run starts at an offset in its array and has unit stride.
+ * Implementations are picked at runtime through {@link Kernels}.
+ */
+public interface FloatKernels {
+    /**
+     * @return sum of x[i] * y[i]
+     */
+    float dot(float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    /**
+     * y[i] += alpha * x[i]
+     */
+    void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    /**
+     * r[i] = x[i] + y[i]
+     */
+    void add(float[] x, int xOffset, float[] y, int yOffset, float[] r, int rOffset, int length);
+
+    /**
+     * r[i] = x[i] - y[i]
+     */
+    void subtract(float[] x, int xOffset, float[] y, int yOffset, float[] r, int rOffset, int length);
+
+    /**
+     * r[i] = k * x[i]
+     */
+    void scale(float k, float[] x, int xOffset, float[] r, int rOffset, int length);
+
+    /**
+     * @return name used to select this implementation
+     */
+    String name();
+}
@@ -0,0 +1,24 @@
+/**
+ * Backing memory of a {@link Matrix}, addressed by a linear index.
+ * <p>
+ * A matrix maps its (row, column) positions onto a storage through an offset
+ * and a leading dimension, so several matrices and vectors can share one
+ * storage as zero-copy views.
+ */
+public interface FloatStorage {
+    float get(int index);
+
+    void set(int index, float value);
+
+    /**
+     * @return number of floats the storage can hold
+     */
+    int size();
+
+    /**
+     * Gives kernels direct access to heap storage.
+     *
+     * @return the backing array, or <code>null</code> if the storage doesn't live on the heap
+     */
+    float[] array();
+}
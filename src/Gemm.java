@@ -0,0 +1,300 @@
+import java.util.Arrays;
+
+/**
+ * General matrix multiply engine used behind {@link Matrix#product(Matrix, Matrix)}.
+ * <p>
+ * Computes C = AB for column-major matrices using the classic three-level
+ * blocking scheme: B is cut into column panels that fit in the last level cache,
+ * the shared dimension is cut into slices that fit in L2, and A is cut into
+ * row blocks that fit in L1. Each block is packed into a contiguous buffer
+ * and fed to a register-tiled MR x NR micro-kernel.
+ * <p>
+ * Packing buffers are kept per thread, so after the first call
+ * a product does no allocation besides the result matrix itself.
+ * Operands that don't live on the heap are read and written through
+ * their {@link FloatStorage}; once packed, they run the same kernel.
+ */
+final class Gemm {
+    /** Rows of the register tile */
+    static final int MR = 4;
+    /** Columns of the register tile */
+    static final int NR = 4;
+    /** Rows of A packed at a time (L1 sized) */
+    static final int MC = 128;
+    /** Depth of the shared dimension packed at a time (L2 sized) */
+    static final int KC = 256;
+    /** Columns of B packed at a time (L3 sized) */
+    static final int NC = 4096;
+
+    /**
+     * Products whose left factor is at most this size on each side
+     * skip packing, since the 3x3 homogeneous transforms would spend
+     * more time copying than multiplying.
+     */
+    static final int SMALL = 8;
+
+    /**
+     * Packing buffers of each thread: A panel, B panel and register tile. The panels start
+     * empty and grow to the largest blocks the thread has packed, so threads that only see
+     * small products don't hold the full KC by NC panel.
+     */
+    private static final ThreadLocal<float[][]> workspace =
+            ThreadLocal.withInitial(() -> new float[][]{new float[0], new float[0], new float[MR * NR]});
+
+    private Gemm() {
+    }
+
+    /**
+     * Overwrites c with the product ab.
+     * Dimensions are expected to have been checked by the caller.
+     *
+     * @param a multiplier, m by k
+     * @param b multiplicand, k by n
+     * @param c destination, m by n
+     */
+    static void multiply(Matrix a, Matrix b, Matrix c) {
+        multiply(a, b, c, 0, b.n);
+    }
+
+    /**
+     * Overwrites columns [from, to) of c with the matching columns of the product ab.
+     *
+     * @param a    multiplier, m by k
+     * @param b    multiplicand, k by n
+     * @param c    destination, m by n
+     * @param from first column of c to compute
+     * @param to   column after the last column of c to compute
+     */
+    static void multiply(Matrix a, Matrix b, Matrix c, int from, int to) {
+        final int m = a.m, k = a.n;
+
+        if (m <= SMALL && k <= SMALL) {
+            if (a.values != null && b.values != null && c.values != null) {
+                multiplySmall(a.values, a.offset, a.ld, b.values, b.offset, b.ld,
+                        c.values, c.offset, c.ld, m, k, from, to);
+            } else {
+                multiplySmall(a, b, c, from, to);
+            }
+            return;
+        }
+
+        for (int j = from; j < to; j++) {
+            int cj = c.index(0, j);
+            if (c.values != null) {
+                Arrays.fill(c.values, cj, cj + m, 0f);
+            } else {
+                for (int i = 0; i < m; i++) c.storage.set(c.index(i, j), 0f);
+            }
+        }
+        accumulate(a, b, c, 1f, from, to);
+    }
+
+    /**
+     * Subtracts columns [from, to) of the product ab from the matching columns of c,
+     * the trailing update of a blocked factorization.
+     * Dimensions are expected to have been checked by the caller.
+     *
+     * @param a    multiplier, m by k
+     * @param b    multiplicand, k by n
+     * @param c    destination, m by n
+     * @param from first column of c to update
+     * @param to   column after the last column of c to update
+     */
+    static void multiplySubtract(Matrix a, Matrix b, Matrix c, int from, int to) {
+        accumulate(a, b, c, -1f, from, to);
+    }
+
+    /**
+     * Adds alpha times columns [from, to) of ab to c through the packed kernel.
+     */
+    private static void accumulate(Matrix a, Matrix b, Matrix c, float alpha, int from, int to) {
+        final int m = a.m, k = a.n;
+        float[][] buffers = workspace.get();
+        int depth = Math.min(KC, k);
+        int sizeA = roundUp(Math.min(MC, m), MR) * depth, sizeB = roundUp(Math.min(NC, to - from), NR) * depth;
+        if (buffers[0].length < sizeA) buffers[0] = new float[sizeA];
+        if (buffers[1].length < sizeB) buffers[1] = new float[sizeB];
+        float[] packedA = buffers[0], packedB = buffers[1], tile = buffers[2];
+
+        for (int jc = from; jc < to; jc += NC) {
+            int nc = Math.min(NC, to - jc);
+            for (int pc = 0; pc < k; pc += KC) {
+                int kc = Math.min(KC, k - pc);
+                packB(b, pc, kc, jc, nc, packedB);
+                for (int ic = 0; ic < m; ic += MC) {
+                    int mc = Math.min(MC, m - ic);
+                    packA(a, alpha, ic, mc, pc, kc, packedA);
+                    macroKernel(packedA, packedB, tile, c, ic, mc, jc, nc, kc);
+                }
+            }
+        }
+    }
+
+    private static int roundUp(int x, int multiple) {
+        return (x + multiple - 1) / multiple * multiple;
+    }
+
+    /**
+     * Straight column-by-column product for tiny left factors.
+     */
+    private static void multiplySmall(float[] av, int aOffset, int lda, float[] bv, int bOffset, int ldb,
+                                      float[] cv, int cOffset, int ldc, int m, int k, int from, int to) {
+        for (int j = from; j < to; j++) {
+            int bj = bOffset + j * ldb, cj = cOffset + j * ldc;
+            for (int i = 0; i < m; i++) {
+                float sum = 0;
+                for (int l = 0; l < k; l++) {
+                    sum += av[aOffset + l * lda + i] * bv[bj + l];
+                }
+                cv[cj + i] = sum;
+            }
+        }
+    }
+
+    /**
+     * Same as above for operands that don't live on the heap or are strided views.
+     */
+    private static void multiplySmall(Matrix a, Matrix b, Matrix c, int from, int to) {
+        for (int j = from; j < to; j++) {
+            for (int i = 0; i < a.m; i++) {
+                float sum = 0;
+                for (int l = 0; l < a.n; l++) {
+                    sum += a.storage.get(a.index(i, l)) * b.storage.get(b.index(l, j));
+                }
+                c.storage.set(c.index(i, j), sum);
+            }
+        }
+    }
+
+    /**
+     * Packs an mc by kc block of A into row panels of height MR.
+     * Panel p holds rows [p*MR, p*MR + MR) with the MR entries of each column stored together.
+     * Rows past the end of the block are padded with zeroes.
+     * Entries are multiplied by alpha on the way, which is free next to the copy.
+     * Strided views, such as transposes, are read straight from their heap array,
+     * so packing is the only place they cost anything.
+     */
+    private static void packA(Matrix a, float alpha, int ic, int mc, int pc, int kc, float[] packed) {
+        float[] av = a.storage.array();
+        FloatStorage storage = a.storage;
+        int rs = a.rowStride;
+        int dst = 0;
+        for (int ir = 0; ir < mc; ir += MR) {
+            int mr = Math.min(MR, mc - ir);
+            for (int l = 0; l < kc; l++) {
+                int src = a.index(ic + ir, pc + l);
+                int i = 0;
+                if (av != null) {
+                    for (; i < mr; i++) packed[dst++] = alpha * av[src + i * rs];
+                } else {
+                    for (; i < mr; i++) packed[dst++] = alpha * storage.get(src + i * rs);
+                }
+                for (; i < MR; i++) packed[dst++] = 0f;
+            }
+        }
+    }
+
+    /**
+     * Packs a kc by nc block of B into column panels of width NR.
+     * Panel q holds columns [q*NR, q*NR + NR) with the NR entries of each row stored together.
+     * Columns past the end of the block are padded with zeroes.
+     */
+    private static void packB(Matrix b, int pc, int kc, int jc, int nc, float[] packed) {
+        float[] bv = b.storage.array();
+        FloatStorage storage = b.storage;
+        int rs = b.rowStride;
+        int dst = 0;
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            for (int j = 0; j < NR; j++) {
+                if (j < nr) {
+                    int src = b.index(pc, jc + jr + j);
+                    if (bv != null) {
+                        for (int l = 0; l < kc; l++) packed[dst + l * NR + j] = bv[src + l * rs];
+                    } else {
+                        for (int l = 0; l < kc; l++) packed[dst + l * NR + j] = storage.get(src + l * rs);
+                    }
+                } else {
+                    for (int l = 0; l < kc; l++) packed[dst + l * NR + j] = 0f;
+                }
+            }
+            dst += kc * NR;
+        }
+    }
+
+    /**
+     * Multiplies a packed block of A by a packed block of B, accumulating into C.
+     */
+    private static void macroKernel(float[] packedA, float[] packedB, float[] tile, Matrix c,
+                                    int ic, int mc, int jc, int nc, int kc) {
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            int bOffset = (jr / NR) * kc * NR;
+            for (int ir = 0; ir < mc; ir += MR) {
+                int mr = Math.min(MR, mc - ir);
+                int aOffset = (ir / MR) * kc * MR;
+                int ci = c.index(ic + ir, jc + jr);
+                if (c.values != null) {
+                    microKernel(packedA, aOffset, packedB, bOffset, kc, c.values, ci, c.ld, mr, nr);
+                } else {
+                    // off-heap or strided destination: compute the tile on the heap, then add it in
+                    Arrays.fill(tile, 0f);
+                    microKernel(packedA, aOffset, packedB, bOffset, kc, tile, 0, MR, mr, nr);
+                    for (int j = 0; j < nr; j++) {
+                        for (int i = 0; i < mr; i++) {
+                            int index = c.index(ic + ir + i, jc + jr + j);
+                            c.storage.set(index, c.storage.get(index) + tile[j * MR + i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes one MR by NR tile of C with the accumulators held in locals,
+     * so the JIT can keep the whole tile in registers across the kc loop.
+     */
+    private static void microKernel(float[] a, int aOffset, float[] b, int bOffset, int kc,
+                                    float[] cv, int c, int ldc, int mr, int nr) {
+        float c00 = 0, c10 = 0, c20 = 0, c30 = 0;
+        float c01 = 0, c11 = 0, c21 = 0, c31 = 0;
+        float c02 = 0, c12 = 0, c22 = 0, c32 = 0;
+        float c03 = 0, c13 = 0, c23 = 0, c33 = 0;
+
+        int ai = aOffset, bi = bOffset;
+        for (int l = 0; l < kc; l++, ai += MR, bi += NR) {
+            float a0 = a[ai], a1 = a[ai + 1], a2 = a[ai + 2], a3 = a[ai + 3];
+            float b0 = b[bi], b1 = b[bi + 1], b2 = b[bi + 2], b3 = b[bi + 3];
+            c00 += a0 * b0; c10 += a1 * b0; c20 += a2 * b0; c30 += a3 * b0;
+            c01 += a0 * b1; c11 += a1 * b1; c21 += a2 * b1; c31 += a3 * b1;
+            c02 += a0 * b2; c12 += a1 * b2; c22 += a2 * b2; c32 += a3 * b2;
+            c03 += a0 * b3; c13 += a1 * b3; c23 += a2 * b3; c33 += a3 * b3;
+        }
+
+        if (mr == MR && nr == NR) {
+            int c0 = c, c1 = c0 + ldc, c2 = c1 + ldc, c3 = c2 + ldc;
+            cv[c0] += c00; cv[c0 + 1] += c10; cv[c0 + 2] += c20; cv[c0 + 3] += c30;
+            cv[c1] += c01; cv[c1 + 1] += c11; cv[c1 + 2] += c21; cv[c1 + 3] += c31;
+            cv[c2] += c02; cv[c2 + 1] += c12; cv[c2 + 2] += c22; cv[c2 + 3] += c32;
+            cv[c3] += c03; cv[c3 + 1] += c13; cv[c3 + 2] += c23; cv[c3 + 3] += c33;
+        } else {
+            // partial tile on the bottom or right edge
+            store(cv, c, ldc, mr, nr, 0, 0, c00); store(cv, c, ldc, mr, nr, 1, 0, c10);
+            store(cv, c, ldc, mr, nr, 2, 0, c20); store(cv, c, ldc, mr, nr, 3, 0, c30);
+            store(cv, c, ldc, mr, nr, 0, 1, c01); store(cv, c, ldc, mr, nr, 1, 1, c11);
+            store(cv, c, ldc, mr, nr, 2, 1, c21); store(cv, c, ldc, mr, nr, 3, 1, c31);
+            store(cv, c, ldc, mr, nr, 0, 2, c02); store(cv, c, ldc, mr, nr, 1, 2, c12);
+            store(cv, c, ldc, mr, nr, 2, 2, c22); store(cv, c, ldc, mr, nr, 3, 2, c32);
+            store(cv, c, ldc, mr, nr, 0, 3, c03); store(cv, c, ldc, mr, nr, 1, 3, c13);
+            store(cv, c, ldc, mr, nr, 2, 3, c23); store(cv, c, ldc, mr, nr, 3, 3, c33);
+        }
+    }
+
+    /**
+     * Accumulates one entry of an edge tile, skipping the zero padding.
+     */
+    private static void store(float[] cv, int c, int ldc, int mr, int nr, int i, int j, float value) {
+        if (i < mr && j < nr) cv[c + j * ldc + i] += value;
+    }
+}
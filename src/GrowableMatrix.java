@@ -0,0 +1,244 @@
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * This class represents a matrix with a fixed number of rows that can grow
+ * by columns, such as a buffer of points where each column is one point.
+ * <p>
+ * Entries are stored in column-major order in an array with spare capacity
+ * that doubles whenever it runs out, so appending a column is amortized O(1)
+ * instead of the O(n) copy done by {@link Matrix#addColumn(float[])}.
+ */
+public class GrowableMatrix {
+    private static final int DEFAULT_CAPACITY = 16;
+    /** Some VMs can't allocate arrays right up to Integer.MAX_VALUE */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    protected final int m;
+    protected int n;
+    protected float[] values;
+
+    /**
+     * Constructor for an empty growable matrix.
+     *
+     * @param m number of rows
+     */
+    public GrowableMatrix(int m) {
+        this(m, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for an empty growable matrix with room for some columns.
+     *
+     * @param m               number of rows
+     * @param initialCapacity number of columns that fit before the first growth
+     */
+    public GrowableMatrix(int m, int initialCapacity) {
+        if (m <= 0) {
+            throw new InputMismatchException("Matrix has to have a positive number of rows. Provided number of rows: " + m);
+        }
+        if (initialCapacity < 0 || (long) m * initialCapacity > MAX_ARRAY_SIZE) {
+            throw new InputMismatchException("Initial capacity has to be between 0 and " + MAX_ARRAY_SIZE / m +
+                    " columns. Provided: " + initialCapacity);
+        }
+        this.m = m;
+        values = new float[m * initialCapacity];
+    }
+
+    // ================== GROW BEGIN ==================
+
+    /**
+     * Adds a column after the last one.
+     *
+     * @param column entries of the new column
+     */
+    public void append(float... column) {
+        if (column.length != m) {
+            throw new InputMismatchException("Column length doesn't match the number of rows. " +
+                    "Expected: " + m + "  Provided: " + column.length);
+        }
+        ensureCapacity(n + 1);
+        System.arraycopy(column, 0, values, n * m, m);
+        n++;
+    }
+
+    /**
+     * Adds a column after the last one.
+     *
+     * @param column the new column in vector form
+     */
+    public void append(Vector column) {
+        if (column.length != m) {
+            throw new InputMismatchException("Column length doesn't match the number of rows. " +
+                    "Expected: " + m + "  Provided: " + column.length);
+        }
+        ensureCapacity(n + 1);
+        for (int row = 0, i = n * m; row < m; row++, i++) {
+            values[i] = column.getEntry(row);
+        }
+        n++;
+    }
+
+    /**
+     * Adds all the columns of a matrix after the last column, growing at most once.
+     *
+     * @param columns matrix whose columns are appended
+     */
+    public void appendColumns(Matrix columns) {
+        if (columns.m != m) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to append columns of length " + columns.m +
+                    " to a matrix with " + m + " rows.");
+        }
+        ensureCapacity(n + columns.n);
+        if (columns.values != null && columns.ld == m) {
+            System.arraycopy(columns.values, columns.offset, values, n * m, m * columns.n);
+        } else {
+            for (int col = 0; col < columns.n; col++) {
+                for (int row = 0; row < m; row++) {
+                    values[(n + col) * m + row] = columns.getEntry(row, col);
+                }
+            }
+        }
+        n += columns.n;
+    }
+
+    /**
+     * Adds many columns at once from entries packed in column-major order.
+     *
+     * @param entries array holding the new columns one after another
+     * @param offset  index of the first entry of the first column
+     * @param count   number of columns to append
+     */
+    public void appendColumns(float[] entries, int offset, int count) {
+        if (count < 0 || offset < 0 || offset + (long) count * m > entries.length) {
+            throw new IndexOutOfBoundsException(count + " columns of length " + m + " at offset " + offset +
+                    " don't fit in an array of length " + entries.length);
+        }
+        ensureCapacity(n + count);
+        System.arraycopy(entries, offset, values, n * m, count * m);
+        n += count;
+    }
+
+    /**
+     * Makes sure that a number of columns fit without growing again.
+     * Grows to at least double the current capacity so that repeated appends stay cheap.
+     *
+     * @param columns number of columns that should fit
+     */
+    public void ensureCapacity(int columns) {
+        if ((long) columns * m <= values.length) {
+            return;
+        }
+        if (columns < 0 || (long) columns * m > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("Growable matrix can't hold more than " + MAX_ARRAY_SIZE / m + " columns.");
+        }
+        long doubled = Math.max(2L * values.length, DEFAULT_CAPACITY * m);
+        int size = (int) Math.min(Math.max(doubled, (long) columns * m), MAX_ARRAY_SIZE / m * m);
+        values = Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Keeps only every step-th column, starting with the first, moved to the front in order.
+     * Thins out a buffer that has grown too large while keeping a uniform sample of it.
+     *
+     * @param step distance between kept columns, 1 to keep all of them
+     */
+    public void keepEvery(int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step has to be positive. Provided: " + step);
+        }
+        int kept = (n + step - 1) / step;
+        for (int col = 1; col < kept; col++) {
+            System.arraycopy(values, col * step * m, values, col * m, m);
+        }
+        n = kept;
+    }
+
+    /**
+     * Removes all the columns, keeping the capacity.
+     */
+    public void clear() {
+        n = 0;
+    }
+
+    // ================== GROW END ==================
+
+
+    // ================== ARITHMETIC BEGIN ==================
+
+    /**
+     * Replaces every column x with tx, in place.
+     *
+     * @param t square matrix with as many rows as this matrix
+     */
+    public void leftMultiply(Matrix t) {
+        if (t.m != m || t.n != m) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply by a " + t.m + " by " + t.n +
+                    " matrix in place. Expected a " + m + " by " + m + " matrix.");
+        }
+        float[] a = new Matrix(t).values;
+        Parallel.forColumns(n, (long) m * m, (from, to) -> {
+            float[] column = new float[m];
+            for (int col = from; col < to; col++) {
+                int c = col * m;
+                System.arraycopy(values, c, column, 0, m);
+                for (int row = 0; row < m; row++) {
+                    float sum = 0;
+                    for (int k = 0; k < m; k++) {
+                        sum += a[k * m + row] * column[k];
+                    }
+                    values[c + row] = sum;
+                }
+            }
+        });
+    }
+
+    // ================== ARITHMETIC END ==================
+
+
+    // ================== GET/SET BEGIN ==================
+
+    public float getEntry(int row, int column) {
+        checkEntry(row, column);
+        return values[column * m + row];
+    }
+
+    public void setEntry(int row, int column, float value) {
+        checkEntry(row, column);
+        values[column * m + row] = value;
+    }
+
+    public int getNumberOfRows() { return m; }
+
+    public int getNumberOfColumns() { return n; }
+
+    /**
+     * @return number of columns that fit before the next growth
+     */
+    public int getCapacity() { return values.length / m; }
+
+    /**
+     * Zero-copy view of the current columns. The view keeps seeing the old array
+     * once an append has to grow, so it should be taken again after appending.
+     *
+     * @return matrix sharing the entries of this one
+     * @throws IllegalStateException if there are no columns yet
+     */
+    public Matrix asMatrix() {
+        if (n == 0) {
+            throw new IllegalStateException("Growable matrix has no columns to view yet.");
+        }
+        return new Matrix(m, n, new ArrayStorage(values), 0, m);
+    }
+
+    private void checkEntry(int row, int column) {
+        if (row < 0 || row >= m) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of range. Number of rows: " + m);
+        }
+        if (column < 0 || column >= n) {
+            throw new IndexOutOfBoundsException("Column " + column + " is out of range. Number of columns: " + n);
+        }
+    }
+
+    // ================== GET/SET END ==================
+}
@@ -0,0 +1,71 @@
+/**
+ * Picks the {@link FloatKernels} implementation used by {@link Vector} and {@link Matrix}.
+ * <p>
+ * Two implementations exist: <code>"simd"</code>, written with the JDK Vector API,
+ * and <code>"scalar"</code>, plain loops that run anywhere. The SIMD one is used
+ * whenever the JVM was started with <code>--add-modules jdk.incubator.vector</code>.
+ * The choice can be forced with the <code>matrix.kernels</code> system property,
+ * or changed at any time with {@link #use(String)} so that both can be benchmarked.
+ */
+public final class Kernels {
+    public static final String SCALAR = "scalar";
+    public static final String SIMD = "simd";
+
+    private static final FloatKernels scalar = new ScalarKernels();
+    private static final FloatKernels simd = loadSimd();
+
+    private static volatile FloatKernels current = initial();
+
+    private Kernels() {
+    }
+
+    /**
+     * @return the implementation in use
+     */
+    public static FloatKernels get() {
+        return current;
+    }
+
+    /**
+     * Switches implementation.
+     *
+     * @param name <code>"simd"</code> or <code>"scalar"</code>
+     * @throws IllegalArgumentException if the name is unknown or the implementation isn't available
+     */
+    public static void use(String name) {
+        if (SCALAR.equals(name)) {
+            current = scalar;
+        } else if (SIMD.equals(name)) {
+            if (simd == null) {
+                throw new IllegalArgumentException("SIMD kernels are not available. " +
+                        "Start the JVM with --add-modules jdk.incubator.vector to enable them.");
+            }
+            current = simd;
+        } else {
+            throw new IllegalArgumentException("Unknown kernels: " + name + ". Expected: " + SIMD + " or " + SCALAR);
+        }
+    }
+
+    /**
+     * @return whether the Vector API is available to this JVM
+     */
+    public static boolean isSimdAvailable() {
+        return simd != null;
+    }
+
+    private static FloatKernels initial() {
+        if (SCALAR.equals(System.getProperty("matrix.kernels")) || simd == null) {
+            return scalar;
+        }
+        return simd;
+    }
+
+    private static FloatKernels loadSimd() {
+        try {
+            // loaded by name so that a JVM without the incubator module never links it
+            return (FloatKernels) Class.forName("SimdKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * LU decomposition with partial pivoting, PA = LU, of a square matrix.
+ * <p>
+ * L (unit lower triangular) and U (upper triangular) share one column-major array,
+ * and the row exchanges are kept as an index array instead of being copied around.
+ * The factorization is right-looking and blocked: a panel of {@link #BLOCK} columns
+ * is eliminated at a time, then the rest of the matrix is updated with one
+ * matrix product through {@link Gemm}, split across threads by columns.
+ * <p>
+ * Factor once, then solve as many right-hand sides as needed for O(n^2) each.
+ */
+public final class LU {
+    /** Columns eliminated per panel */
+    static final int BLOCK = 64;
+
+    private final int n;
+    /** L below the diagonal, U on and above it, column-major */
+    private final float[] lu;
+    /** Row i of PA is row perm[i] of A */
+    private final int[] perm;
+    /** +1 or -1 depending on the number of row exchanges */
+    private final int permutationSign;
+    private final boolean singular;
+    /** 1-norm of the factored matrix, for the condition estimate */
+    private final float norm;
+
+    private LU(int n, float[] lu, int[] perm, int permutationSign, boolean singular, float norm) {
+        this.n = n;
+        this.lu = lu;
+        this.perm = perm;
+        this.permutationSign = permutationSign;
+        this.singular = singular;
+        this.norm = norm;
+    }
+
+    /**
+     * Factors a square matrix. The matrix itself is left untouched.
+     *
+     * @param a square matrix
+     * @return factorization of a
+     */
+    public static LU of(Matrix a) {
+        if (a.m != a.n) {
+            throw new InputMismatchException("LU decomposition requires a square matrix. Provided: " + a.m + " by " + a.n);
+        }
+        final int n = a.n;
+        final float[] lu = new Matrix(a).values;
+        final ArrayStorage storage = new ArrayStorage(lu);
+        final FloatKernels kernels = Kernels.get();
+
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) perm[i] = i;
+        int[] pivots = new int[BLOCK];
+        int sign = 1;
+        boolean singular = false;
+
+        // pivots smaller than this, relative to the largest entry, count as zero
+        float largest = 0, norm = 0;
+        for (int col = 0; col < n; col++) {
+            float sum = 0;
+            for (int i = col * n; i < col * n + n; i++) {
+                float value = Math.abs(lu[i]);
+                largest = Math.max(largest, value);
+                sum += value;
+            }
+            norm = Math.max(norm, sum);
+        }
+        final float tolerance = Math.ulp(1f) * n * largest;
+
+        for (int j0 = 0; j0 < n; j0 += BLOCK) {
+            final int jb = Math.min(BLOCK, n - j0), j1 = j0 + jb;
+
+            // eliminate the panel of columns [j0, j1), all rows from j0 down
+            for (int k = j0; k < j1; k++) {
+                int kk = k * n + k;
+                int p = k;
+                float max = Math.abs(lu[kk]);
+                for (int i = k + 1; i < n; i++) {
+                    float value = Math.abs(lu[k * n + i]);
+                    if (value > max) {
+                        max = value;
+                        p = i;
+                    }
+                }
+                pivots[k - j0] = p;
+                if (p != k) {
+                    swapRows(lu, n, k, p, j0, j1);
+                    int t = perm[k]; perm[k] = perm[p]; perm[p] = t;
+                    sign = -sign;
+                }
+                if (max <= tolerance) {
+                    singular = true;
+                    continue;
+                }
+                kernels.scale(1 / lu[kk], lu, kk + 1, lu, kk + 1, n - k - 1);
+                for (int c = k + 1; c < j1; c++) {
+                    kernels.axpy(-lu[c * n + k], lu, kk + 1, lu, c * n + k + 1, n - k - 1);
+                }
+            }
+
+            // the same row exchanges in the columns left of the panel
+            for (int k = j0; k < j1; k++) {
+                if (pivots[k - j0] != k) swapRows(lu, n, k, pivots[k - j0], 0, j0);
+            }
+
+            if (j1 == n) {
+                break;
+            }
+
+            // right of the panel: exchange rows, solve for the U block, then update the trailing matrix
+            final int rest = n - j1;
+            final Matrix l21 = new Matrix(rest, jb, storage, j0 * n + j1, n);
+            final Matrix u12 = new Matrix(jb, rest, storage, j1 * n + j0, n);
+            final Matrix a22 = new Matrix(rest, rest, storage, j1 * n + j1, n);
+            final int first = j0;
+            Parallel.forColumns(rest, (long) rest * jb, (from, to) -> {
+                for (int c = j1 + from; c < j1 + to; c++) {
+                    int col = c * n;
+                    for (int k = first; k < j1; k++) {
+                        int p = pivots[k - first];
+                        if (p != k) {
+                            float t = lu[col + k]; lu[col + k] = lu[col + p]; lu[col + p] = t;
+                        }
+                    }
+                    for (int k = first; k < j1 - 1; k++) {
+                        kernels.axpy(-lu[col + k], lu, k * n + k + 1, lu, col + k + 1, j1 - k - 1);
+                    }
+                }
+                Gemm.multiplySubtract(l21, u12, a22, from, to);
+            });
+        }
+        return new LU(n, lu, perm, sign, singular, norm);
+    }
+
+    private static void swapRows(float[] lu, int n, int r1, int r2, int fromColumn, int toColumn) {
+        for (int c = fromColumn; c < toColumn; c++) {
+            float t = lu[c * n + r1];
+            lu[c * n + r1] = lu[c * n + r2];
+            lu[c * n + r2] = t;
+        }
+    }
+
+    // ================== SOLVE BEGIN ==================
+
+    /**
+     * Solves Ax = b.
+     *
+     * @param b right-hand side
+     * @return x
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public Vector solve(Vector b) {
+        return solveInto(b, new Vector(n));
+    }
+
+    /**
+     * Solves Ax = b into an existing vector, without allocating.
+     *
+     * @param b right-hand side
+     * @param x destination, which may be b itself
+     * @return x
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public Vector solveInto(Vector b, Vector x) {
+        if (b.length != n || x.length != n) {
+            throw new InputMismatchException("Dimension mismatch. Expected a right-hand side and a solution of length " + n +
+                    ". Provided: " + b.length + " and " + x.length);
+        }
+        checkNonsingular();
+        if (x.stride == 1 && !Vector.overlaps(b, x)) {
+            for (int i = 0; i < n; i++) {
+                x.entries[x.offset + i] = b.getEntry(perm[i]);
+            }
+            substitute(x.entries, x.offset);
+            return x;
+        }
+        // the permutation can't be applied in place, and substitution needs contiguous entries
+        try (Workspace w = Workspace.open()) {
+            Vector t = solveInto(b, w.vector(n));
+            for (int i = 0; i < n; i++) {
+                x.setEntry(i, t.getEntry(i));
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Solves AX = B for every column of B at once, splitting the columns across threads.
+     *
+     * @param b right-hand sides, one per column
+     * @return X
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public Matrix solve(Matrix b) {
+        if (b.m != n) {
+            throw new InputMismatchException("Dimension mismatch. Expected right-hand sides with " + n +
+                    " rows. Provided: " + b.m);
+        }
+        checkNonsingular();
+        Matrix x = new Matrix(n, b.n);
+        Parallel.forColumns(b.n, (long) n * n, (from, to) -> {
+            for (int col = from; col < to; col++) {
+                int c = col * n;
+                for (int i = 0; i < n; i++) {
+                    x.values[c + i] = b.getEntry(perm[i], col);
+                }
+                substitute(x.values, c);
+            }
+        });
+        return x;
+    }
+
+    /**
+     * Overwrites Pb, stored at an offset, with the solution:
+     * forward substitution with L, then back substitution with U, both column by column.
+     */
+    private void substitute(float[] x, int offset) {
+        FloatKernels kernels = Kernels.get();
+        for (int j = 0; j < n - 1; j++) {
+            kernels.axpy(-x[offset + j], lu, j * n + j + 1, x, offset + j + 1, n - j - 1);
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            x[offset + j] /= lu[j * n + j];
+            kernels.axpy(-x[offset + j], lu, j * n, x, offset, j);
+        }
+    }
+
+    /**
+     * Overwrites b with the solution of A<sup>T</sup>x = b. Since A<sup>T</sup> = U<sup>T</sup>L<sup>T</sup>P,
+     * this is forward substitution with U<sup>T</sup>, back substitution with L<sup>T</sup>, then undoing P.
+     * Both substitutions read columns of the factors, so they run as dot products.
+     */
+    private void substituteTransposed(float[] b) {
+        FloatKernels kernels = Kernels.get();
+        for (int j = 0; j < n; j++) {
+            b[j] = (b[j] - kernels.dot(lu, j * n, b, 0, j)) / lu[j * n + j];
+        }
+        for (int j = n - 2; j >= 0; j--) {
+            b[j] -= kernels.dot(lu, j * n + j + 1, b, j + 1, n - j - 1);
+        }
+        float[] y = b.clone();
+        for (int i = 0; i < n; i++) {
+            b[perm[i]] = y[i];
+        }
+    }
+
+    private void checkNonsingular() {
+        if (singular) {
+            throw new ArithmeticException("Matrix is singular.");
+        }
+    }
+
+    // ================== SOLVE END ==================
+
+
+    /**
+     * @return determinant of the factored matrix, the signed product of the pivots
+     */
+    public float determinant() {
+        double result = permutationSign;
+        for (int j = 0; j < n; j++) {
+            result *= lu[j * n + j];
+        }
+        return (float) result;
+    }
+
+    /**
+     * Estimates the reciprocal of the condition number of the factored matrix in the 1-norm,
+     * 1 / (||A|| ||A<sup>-1</sup>||), without forming the inverse. ||A<sup>-1</sup>|| is estimated
+     * with Hager's method, a handful of solves with A and A<sup>T</sup> at O(n^2) each.
+     * <p>
+     * Close to 1 for a well-conditioned matrix, close to 0 for a nearly singular one.
+     * Roughly, a solve loses log10(1 / rcond) of the 7 significant digits of a float.
+     *
+     * @return estimate of 1 / cond(A), 0 if the matrix is singular
+     */
+    public float reciprocalCondition() {
+        if (singular) {
+            return 0;
+        }
+        if (norm == 0) {
+            return 0;
+        }
+        float[] x = new float[n], y = new float[n];
+        Arrays.fill(x, 1f / n);
+        float estimate = 0;
+        for (int iteration = 0; iteration < 5; iteration++) {
+            // y = inverse(A) x
+            for (int i = 0; i < n; i++) y[i] = x[perm[i]];
+            substitute(y, 0);
+            float sum = 0;
+            for (float value : y) sum += Math.abs(value);
+            if (iteration > 0 && sum <= estimate) {
+                break;
+            }
+            estimate = sum;
+            // z = inverse(A^T) sign(y), whose largest entry points at the column to try next
+            for (int i = 0; i < n; i++) y[i] = y[i] >= 0 ? 1 : -1;
+            substituteTransposed(y);
+            int j = 0;
+            float zx = 0;
+            for (int i = 0; i < n; i++) {
+                if (Math.abs(y[i]) > Math.abs(y[j])) j = i;
+                zx += y[i] * x[i];
+            }
+            if (iteration > 0 && Math.abs(y[j]) <= zx) {
+                break;
+            }
+            Arrays.fill(x, 0);
+            x[j] = 1;
+        }
+        if (!Float.isFinite(estimate) || estimate == 0) {
+            return 0;
+        }
+        return 1 / norm / estimate;
+    }
+
+    /**
+     * @return inverse of the factored matrix
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public Matrix inverse() {
+        return solve(Matrix.identityMatrix(n));
+    }
+
+    /**
+     * @return whether a pivot vanished, relative to the largest entry of the matrix
+     */
+    public boolean isSingular() { return singular; }
+
+    public int getSize() { return n; }
+
+    /**
+     * @return unit lower triangular factor
+     */
+    public Matrix getL() {
+        Matrix result = new Matrix(n, n);
+        for (int col = 0; col < n; col++) {
+            result.values[col * n + col] = 1;
+            System.arraycopy(lu, col * n + col + 1, result.values, col * n + col + 1, n - col - 1);
+        }
+        return result;
+    }
+
+    /**
+     * @return upper triangular factor
+     */
+    public Matrix getU() {
+        Matrix result = new Matrix(n, n);
+        for (int col = 0; col < n; col++) {
+            System.arraycopy(lu, col * n, result.values, col * n, col + 1);
+        }
+        return result;
+    }
+
+    /**
+     * @return row i of PA is row <code>getPivot()[i]</code> of A
+     */
+    public int[] getPivot() {
+        return perm.clone();
+    }
+}
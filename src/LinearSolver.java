@@ -0,0 +1,155 @@
+import java.util.InputMismatchException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Solves Ax = b for a fixed A and any number of right-hand sides.
+ * <p>
+ * A is factored once with {@link LU} when the solver is made, which is also when
+ * singular and ill-conditioned systems are reported, instead of being silently
+ * absorbed by a pivot threshold the way {@link Matrix#rref(Matrix)} does.
+ * Every solve after that is two triangular substitutions. Right-hand sides given
+ * as a matrix or a stream are solved in batches whose columns are split across threads.
+ */
+public final class LinearSolver {
+    /** Right-hand sides taken from a stream per batch */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final LU lu;
+    private final float reciprocalCondition;
+    private final int batchSize;
+
+    private LinearSolver(LU lu, float reciprocalCondition, int batchSize) {
+        this.lu = lu;
+        this.reciprocalCondition = reciprocalCondition;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Makes a solver that refuses systems whose solutions would have no correct
+     * digits in single precision, that is with a reciprocal condition number below
+     * the float machine epsilon.
+     *
+     * @param a square matrix of the system
+     * @return solver for a
+     * @throws ArithmeticException if a is singular or too ill-conditioned
+     */
+    public static LinearSolver of(Matrix a) {
+        return of(a, Math.ulp(1f), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Makes a solver with a custom conditioning requirement and batch size.
+     *
+     * @param a                      square matrix of the system
+     * @param minReciprocalCondition smallest acceptable estimate of 1 / cond(A), 0 to only refuse singular systems
+     * @param batchSize              right-hand sides taken from a stream per batch
+     * @return solver for a
+     * @throws ArithmeticException if a is singular or its reciprocal condition number is below the minimum
+     */
+    public static LinearSolver of(Matrix a, float minReciprocalCondition, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size has to be positive. Provided: " + batchSize);
+        }
+        LU lu = LU.of(a);
+        if (lu.isSingular()) {
+            throw new ArithmeticException("Matrix of the system is singular.");
+        }
+        float rcond = lu.reciprocalCondition();
+        if (rcond < minReciprocalCondition) {
+            throw new ArithmeticException("Matrix of the system is ill-conditioned. Estimated reciprocal condition number: "
+                    + rcond + "  Required: >=" + minReciprocalCondition);
+        }
+        return new LinearSolver(lu, rcond, batchSize);
+    }
+
+    // ================== SOLVE BEGIN ==================
+
+    /**
+     * @param b right-hand side
+     * @return x such that Ax = b
+     */
+    public Vector solve(Vector b) {
+        return lu.solve(b);
+    }
+
+    /**
+     * Solves for every column of B at once.
+     *
+     * @param b right-hand sides, one per column
+     * @return X such that AX = B
+     */
+    public Matrix solve(Matrix b) {
+        return lu.solve(b);
+    }
+
+    /**
+     * Solves a stream of right-hand sides lazily and in order. The stream is consumed
+     * a batch at a time; each batch is packed into a matrix and solved in parallel.
+     * The solutions are views of their batch's result matrix.
+     *
+     * @param rhs right-hand sides
+     * @return solutions, in the order of the right-hand sides
+     */
+    public Stream<Vector> solve(Stream<Vector> rhs) {
+        Iterator<Vector> source = rhs.iterator();
+        int n = lu.getSize();
+        Iterator<Vector> solutions = new Iterator<Vector>() {
+            private Matrix batch;
+            private int next, count;
+
+            public boolean hasNext() {
+                if (next < count) {
+                    return true;
+                }
+                if (!source.hasNext()) {
+                    return false;
+                }
+                Matrix b = new Matrix(n, batchSize);
+                count = 0;
+                while (count < batchSize && source.hasNext()) {
+                    Vector v = source.next();
+                    if (v.length != n) {
+                        throw new InputMismatchException("Dimension mismatch. Expected a right-hand side of length "
+                                + n + ". Provided: " + v.length);
+                    }
+                    for (int i = 0; i < n; i++) {
+                        b.values[count * n + i] = v.getEntry(i);
+                    }
+                    count++;
+                }
+                batch = lu.solve(count == batchSize ? b : new Matrix(n, count, b.storage, 0, n));
+                next = 0;
+                return true;
+            }
+
+            public Vector next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.getColumnView(next++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(solutions, Spliterator.ORDERED), false)
+                .onClose(rhs::close);
+    }
+
+    // ================== SOLVE END ==================
+
+
+    /**
+     * @return the factorization the solver works with
+     */
+    public LU getFactorization() { return lu; }
+
+    /**
+     * @return estimate of 1 / cond(A) in the 1-norm, see {@link LU#reciprocalCondition()}
+     */
+    public float getReciprocalCondition() { return reciprocalCondition; }
+
+    public int getBatchSize() { return batchSize; }
+}
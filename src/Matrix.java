@@ -1,15 +1,35 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.InputMismatchException;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
  * This class represents a matrix whose
- * entries are stored in column-major order
+ * entries are stored in column-major order.
+ * <p>
+ * Entries live in a single contiguous {@link FloatStorage}: entry (row, col)
+ * is found at <code>offset + col * ld + row * rowStride</code>, where <code>ld</code> is
+ * the leading dimension and <code>rowStride</code> is 1 for ordinary matrices.
+ * Columns and rows can therefore be handed out as zero-copy {@link Vector} views,
+ * and transposes, submatrices and strided slices as zero-copy matrix views.
  */
-public class Matrix {
+public class Matrix implements RealMatrix {
     protected final int m;
     protected final int n;
-    protected final float[][] values;
+    /** Backing memory, possibly shared with other matrices and vectors */
+    protected final FloatStorage storage;
+    /**
+     * Backing array of the storage for the heap fast paths, which assume contiguous columns.
+     * Null if the storage is off-heap or the rows are strided.
+     */
+    protected final float[] values;
+    /** Index of entry (0, 0) in the storage */
+    protected final int offset;
+    /** Leading dimension: distance in the storage between the starts of adjacent columns */
+    protected final int ld;
+    /** Distance in the storage between adjacent entries of a column, 1 unless this is a strided view */
+    protected final int rowStride;
     protected static final float epsilon = 0.00001f;
 
 
@@ -21,15 +41,58 @@ public class Matrix {
      * @param n number of columns
      */
     public Matrix(int m, int n) {
-        if (m > 0 && n > 0) {
-            values = new float[n][m];
-            this.m = m;
-            this.n = n;
-        } else {
-            throw new InputMismatchException("Matrix has to have a positive number of rows and columns. " +
-                    "Expected number of rows: >0  Provided number of rows: " + m + ".  Expected number of columns: >0  " +
-                    "Provided number of columns: " + n);
+        this(m, n, new ArrayStorage(checkedSize(m, n)), 0, m);
+    }
+
+    /**
+     * Constructor for a matrix over existing storage. No data is copied,
+     * so the new matrix is a view of whatever else shares the storage.
+     *
+     * @param m       number of rows
+     * @param n       number of columns
+     * @param storage backing memory
+     * @param offset  index of entry (0, 0) in the storage
+     * @param ld      leading dimension, at least m
+     */
+    protected Matrix(int m, int n, FloatStorage storage, int offset, int ld) {
+        this(m, n, storage, offset, 1, checkedLeadingDimension(m, ld));
+    }
+
+    /**
+     * Constructor for a view with arbitrary positive strides, such as a transpose.
+     * Entry (row, col) is at <code>offset + col * ld + row * rowStride</code>.
+     *
+     * @param m         number of rows
+     * @param n         number of columns
+     * @param storage   backing memory
+     * @param offset    index of entry (0, 0) in the storage
+     * @param rowStride distance between adjacent entries of a column
+     * @param ld        distance between adjacent entries of a row
+     */
+    protected Matrix(int m, int n, FloatStorage storage, int offset, int rowStride, int ld) {
+        checkedSize(m, n);
+        if (rowStride <= 0 || ld <= 0) {
+            throw new IllegalArgumentException("Strides have to be positive. Provided: " + rowStride + " and " + ld);
+        }
+        if (offset < 0 || offset + (long) (n - 1) * ld + (long) (m - 1) * rowStride >= storage.size()) {
+            throw new IndexOutOfBoundsException("A " + m + " by " + n + " matrix at offset " + offset +
+                    " with strides " + rowStride + " and " + ld + " doesn't fit in a storage of size " + storage.size());
+        }
+        this.m = m;
+        this.n = n;
+        this.storage = storage;
+        this.values = rowStride == 1 ? storage.array() : null;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.ld = ld;
+    }
+
+    private static int checkedLeadingDimension(int m, int ld) {
+        if (ld < m) {
+            throw new InputMismatchException("Leading dimension can't be smaller than the number of rows. " +
+                    "Expected: >=" + m + "  Provided: " + ld);
         }
+        return ld;
     }
 
     /**
@@ -41,36 +104,22 @@ public class Matrix {
      * @param entries                     comma separated values for the matrix
      */
     public Matrix(int m, int n, boolean valuesPassedInRowMajorOrder, float... entries) {
-        if (m > 0 && n > 0) {
-            if (m * n == entries.length) {
-                values = new float[n][m];
-                this.m = m;
-                this.n = n;
-                if (valuesPassedInRowMajorOrder) {
-                    int i = 0;
-                    for (int row = 0; row < m; row++) {
-                        for (int col = 0; col < n; col++) {
-                            values[col][row] = entries[i];
-                            i++;
-                        }
-                    }
-                } else {
-                    int i = 0;
+        this(m, n);
+        if (m * n == entries.length) {
+            if (valuesPassedInRowMajorOrder) {
+                int i = 0;
+                for (int row = 0; row < m; row++) {
                     for (int col = 0; col < n; col++) {
-                        for (int row = 0; row < m; row++) {
-                            values[col][row] = entries[i];
-                            i++;
-                        }
+                        values[col * m + row] = entries[i];
+                        i++;
                     }
                 }
             } else {
-                throw new InputMismatchException("Number of entries provided doesn't match the expected number based on size. " +
-                        "Expected: " + m * n + "  Provided: " + entries.length);
+                System.arraycopy(entries, 0, values, 0, m * n);
             }
         } else {
-            throw new InputMismatchException("Matrix has to have a positive number of rows and columns. " +
-                    "Expected number of rows: >0  Provided number of rows: " + m + ".  Expected number of columns: >0  " +
-                    "Provided number of columns: " + n);
+            throw new InputMismatchException("Number of entries provided doesn't match the expected number based on size. " +
+                    "Expected: " + m * n + "  Provided: " + entries.length);
         }
     }
 
@@ -80,18 +129,7 @@ public class Matrix {
      * @param columns columns in array form, separated by commas, that will become columns of the matrix
      */
     public Matrix(float[]... columns) {
-        m = columns[0].length;
-        n = columns.length;
-
-        values = new float[n][m];
-        float[] column;
-        for (int col = 0; col < n; col++) {
-            if (((column = columns[col]).length) == m) {
-                values[col] = column;
-            } else {
-                throw new InputMismatchException("Columns provided to the constructor are not of uniform length.");
-            }
-        }
+        this(false, columns);
     }
 
     /**
@@ -103,30 +141,24 @@ public class Matrix {
      * @param rows                rows in array form, separated by commas, that will become rows of the matrix
      */
     public Matrix(boolean arraysPassedAreRows, float[]... rows) {
+        this(arraysPassedAreRows ? rows.length : rows[0].length,
+                arraysPassedAreRows ? rows[0].length : rows.length);
         if (arraysPassedAreRows) {
-            m = rows.length;
-            n = rows[0].length;
-
-            values = new float[n][m];
             float[] r;
             for (int row = 0; row < m; row++) {
                 if (((r = rows[row]).length) == n) {
                     for (int col = 0; col < n; col++) {
-                        values[col][row] = r[col];
+                        values[col * m + row] = r[col];
                     }
                 } else {
                     throw new InputMismatchException("Rows provided to the constructor are not of uniform length.");
                 }
             }
         } else {
-            m = rows[0].length; //number of rows
-            n = rows.length;    // number of rows
-
-            values = new float[n][m];
             float[] column;
             for (int col = 0; col < n; col++) {
                 if (((column = rows[col]).length) == m) {
-                    values[col] = column;
+                    System.arraycopy(column, 0, values, col * m, m);
                 } else {
                     throw new InputMismatchException("Columns provided to the constructor are not of uniform length.");
                 }
@@ -137,13 +169,19 @@ public class Matrix {
     /**
      * Makes a matrix from another matrix.
      * (Copy constructor-ish)
+     * The copy is always packed, even if the original is a view.
      * @param mat matrix to be copied from
      */
     public Matrix(Matrix mat) {
-        m = mat.m; n = mat.n;
-        values = new float[n][m];
+        this(mat.m, mat.n);
         for (int col = 0; col < n; col++) {
-            if (m >= 0) System.arraycopy(mat.values[col], 0, values[col], 0, m);
+            if (mat.values != null) {
+                System.arraycopy(mat.values, mat.index(0, col), values, col * m, m);
+            } else {
+                for (int row = 0, i = mat.index(0, col); row < m; row++, i += mat.rowStride) {
+                    values[col * m + row] = mat.storage.get(i);
+                }
+            }
         }
     }
 
@@ -153,19 +191,34 @@ public class Matrix {
      * @param columns columns in vector form, separated by commas, that will become columns of the matrix
      */
     public Matrix(Vector... columns) {
-        m = columns[0].length; //number of rows
-        n = columns.length;    // number of columns
-
-        values = new float[n][m];
+        this(columns[0].length, columns.length);
         for (int i = 0; i < n; i++) {
             if (columns[i].length == m) {
-                values[i] = columns[i].entries;
+                setColumn(i, columns[i]);
             } else {
                 throw new InputMismatchException("Vectors provided to the constructor are not of uniform length.");
             }
         }
     }
 
+    /**
+     * Checks the dimensions of a new matrix.
+     *
+     * @return number of entries of an m by n matrix
+     */
+    protected static int checkedSize(int m, int n) {
+        if (m <= 0 || n <= 0) {
+            throw new InputMismatchException("Matrix has to have a positive number of rows and columns. " +
+                    "Expected number of rows: >0  Provided number of rows: " + m + ".  Expected number of columns: >0  " +
+                    "Provided number of columns: " + n);
+        }
+        if ((long) m * n > Integer.MAX_VALUE) {
+            throw new InputMismatchException("Matrix is too large to be stored contiguously. " +
+                    "Expected number of entries: <=" + Integer.MAX_VALUE + "  Provided: " + (long) m * n);
+        }
+        return m * n;
+    }
+
     // ================== CONSTRUCTORS END ==================
 
 
@@ -180,12 +233,27 @@ public class Matrix {
      * @return a random m by n matrix
      */
     public static Matrix randomMatrix(int m, int n) {
-        Random random = new Random();
         Matrix result = new Matrix(m, n);
-        for (int row = 0; row < m; row++) {
-            for (int col = 0; col < n; col++) {
-                result.values[col][row] = random.nextFloat();
+        Parallel.forColumns(n, m, (from, to) -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            float[] v = result.values;
+            for (int i = from * m; i < to * m; i++) {
+                v[i] = random.nextFloat();
             }
+        });
+        return result;
+    }
+
+    /**
+     * Creates an n by n identity matrix
+     *
+     * @param n number of rows and columns
+     * @return identity matrix
+     */
+    public static Matrix identityMatrix(int n) {
+        Matrix result = new Matrix(n, n);
+        for (int i = 0; i < n; i++) {
+            result.values[i * n + i] = 1;
         }
         return result;
     }
@@ -240,11 +308,8 @@ public class Matrix {
      */
     public void add(Matrix a) {
         if ((a.m == m) && (a.n == n)) {
-            for (int col = 0; col < n; col++) {
-                for (int row = 0; row < m; row++) {
-                    values[col][row] += a.values[col][row];
-                }
-            }
+            checkElementwiseAlias(a, this);
+            combine(this, a, this, 1);
         } else {
             throw new InputMismatchException("Dimension mismatch. Attempted to add matrices of different sizes.");
         }
@@ -261,8 +326,7 @@ public class Matrix {
     public static Matrix add(Matrix a, Matrix b) {
         if ((a.m == b.m) && (a.n == b.n)) {
             Matrix result = new Matrix(a.m, a.n);
-            result.add(a);
-            result.add(b);
+            combine(a, b, result, 1);
             return result;
         } else {
             throw new InputMismatchException("Dimension mismatch. Attempted to add matrices of different sizes.");
@@ -276,11 +340,8 @@ public class Matrix {
      */
     public void subtract(Matrix a) {
         if ((a.m == m) && (a.n == n)) {
-            for (int col = 0; col < n; col++) {
-                for (int row = 0; row < m; row++) {
-                    values[col][row] -= a.values[col][row];
-                }
-            }
+            checkElementwiseAlias(a, this);
+            combine(this, a, this, -1);
         } else {
             throw new InputMismatchException("Dimension mismatch. Attempted to subtract matrices of different sizes.");
         }
@@ -297,8 +358,7 @@ public class Matrix {
     public static Matrix subtract(Matrix a, Matrix b) {
         if ((a.m == b.m) && (a.n == b.n)) {
             Matrix result = new Matrix(a.m, a.n);
-            result.add(a);
-            result.subtract(b);
+            combine(a, b, result, -1);
             return result;
         } else {
             throw new InputMismatchException("Dimension mismatch. Attempted to subtract matrices of different sizes.");
@@ -306,8 +366,114 @@ public class Matrix {
     }
 
     /**
-     * Product of two matrices implemented as
+     * Matrix addition into an existing matrix, without allocating.
+     *
+     * @param a   first summand
+     * @param b   second summand
+     * @param dst destination, which may be a or b itself but not overlap them otherwise
+     * @return dst, holding a + b
+     */
+    public static Matrix addInto(Matrix a, Matrix b, Matrix dst) {
+        if (a.m == b.m && a.n == b.n && a.m == dst.m && a.n == dst.n) {
+            checkElementwiseAlias(a, dst);
+            checkElementwiseAlias(b, dst);
+            combine(a, b, dst, 1);
+            return dst;
+        } else {
+            throw new InputMismatchException("Dimension mismatch. Attempted to add matrices of different sizes.");
+        }
+    }
+
+    /**
+     * Matrix subtraction into an existing matrix, without allocating.
+     *
+     * @param a   minuend
+     * @param b   subtrahend
+     * @param dst destination, which may be a or b itself but not overlap them otherwise
+     * @return dst, holding a - b
+     */
+    public static Matrix subtractInto(Matrix a, Matrix b, Matrix dst) {
+        if (a.m == b.m && a.n == b.n && a.m == dst.m && a.n == dst.n) {
+            checkElementwiseAlias(a, dst);
+            checkElementwiseAlias(b, dst);
+            combine(a, b, dst, -1);
+            return dst;
+        } else {
+            throw new InputMismatchException("Dimension mismatch. Attempted to subtract matrices of different sizes.");
+        }
+    }
+
+    /**
+     * Adds a multiple of another matrix to this matrix in one pass, A = A + alpha * X
+     *
+     * @param alpha scalar to multiply x by
+     * @param x     matrix to be added
+     */
+    public void axpy(float alpha, Matrix x) {
+        if (x.m != m || x.n != n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to add matrices of different sizes.");
+        }
+        checkElementwiseAlias(x, this);
+        Parallel.forColumns(n, m, (from, to) -> {
+            float[] xv = x.values;
+            FloatKernels kernels = Kernels.get();
+            for (int col = from; col < to; col++) {
+                int xi = x.index(0, col), yi = index(0, col);
+                if (xv != null && values != null) {
+                    kernels.axpy(alpha, xv, xi, values, yi, m);
+                } else {
+                    for (int row = 0; row < m; row++, xi += x.rowStride, yi += rowStride) {
+                        storage.set(yi, storage.get(yi) + alpha * x.storage.get(xi));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts a lazy element-wise expression, so that chains of add, subtract,
+     * scale and vectorize run as a single pass over memory.
+     * For example <code>a.lazy().subtract(b).scale(0.5f).evaluate()</code>.
+     *
+     * @return expression whose value is this matrix
+     */
+    public MatrixExpression lazy() {
+        return MatrixExpression.of(this);
+    }
+
+    /**
+     * Writes a + sign * b into result, column by column.
+     * Sizes are expected to have been checked by the caller.
+     *
+     * @param sign 1 to add, -1 to subtract
+     */
+    private static void combine(Matrix a, Matrix b, Matrix result, float sign) {
+        Parallel.forColumns(a.n, a.m, (from, to) -> {
+            float[] x = a.values, y = b.values, r = result.values;
+            FloatKernels kernels = Kernels.get();
+            for (int col = from; col < to; col++) {
+                int xi = a.index(0, col), yi = b.index(0, col), ri = result.index(0, col);
+                if (x != null && y != null && r != null) {
+                    if (sign > 0) {
+                        kernels.add(x, xi, y, yi, r, ri, a.m);
+                    } else {
+                        kernels.subtract(x, xi, y, yi, r, ri, a.m);
+                    }
+                } else {
+                    for (int row = 0; row < a.m; row++) {
+                        result.storage.set(ri + row * result.rowStride,
+                                a.storage.get(xi + row * a.rowStride) + sign * b.storage.get(yi + row * b.rowStride));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Product of two matrices
      * AB = [ Ab1  Ab2  ...  Abn ]
+     * computed by the blocked kernel in {@link Gemm}.
+     * Large products are split across threads by column blocks of the result.
      *
      * @param a multiplier
      * @param b multiplicand
@@ -315,33 +481,53 @@ public class Matrix {
      */
     public static Matrix product(Matrix a, Matrix b) {
         if (a.n == b.m) {
-            Matrix result = new Matrix(a.m, b.n);
-            //going through columns of b
-            for (int i = 0; i < b.n; i++) {
-                //and multiplying each one by A
-                result.setColumn(i, a.times(b.getColumn(i)));
-            }
-            return result;
+            return productInto(a, b, new Matrix(a.m, b.n));
         } else {
             throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of improper size.");
         }
     }
 
     /**
-     * Product of any number of matrices implemented as
-     * ABCD...WXYZ = ABCD...WX(YZ) = ABCD...W(X(YZ))
+     * Product of two matrices into an existing matrix, without allocating.
+     *
+     * @param a   multiplier
+     * @param b   multiplicand
+     * @param dst destination, which can't share entries with a or b
+     * @return dst, holding ab
+     */
+    public static Matrix productInto(Matrix a, Matrix b, Matrix dst) {
+        if (a.n != b.m || dst.m != a.m || dst.n != b.n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of improper size.");
+        }
+        if (overlaps(a, dst) || overlaps(b, dst)) {
+            throw new IllegalArgumentException("Destination of a product can't share entries with its factors.");
+        }
+        Parallel.forColumns(b.n, (long) a.m * a.n, (from, to) -> Gemm.multiply(a, b, dst, from, to));
+        return dst;
+    }
+
+    /**
+     * Product of any number of matrices, multiplied in the cheapest order
+     * for their dimensions. For example, with 3x3 transforms and 3 by N data,
+     * ABCD = ((AB)C)D, composing the transforms before touching the data.
      *
      * @param matrices matrices to be multiplied, separated by commas
      * @return product ABC...Z
+     * @see ProductPlan
      */
     public static Matrix product(Matrix... matrices) {
-        // multiply the last two matrices first
-        Matrix result = Matrix.product(matrices[matrices.length - 2], matrices[matrices.length - 1]);
-        // multiply the result of that product by the next(preceding) matrix
-        for (int i = matrices.length - 3; i >= 0; i--) {
-            result = product(matrices[i], result);
-        }
-        return result;
+        return ProductPlan.of(matrices).execute(matrices);
+    }
+
+    /**
+     * Plans the product of a chain of matrices without computing it,
+     * to inspect the chosen order and its estimated cost.
+     *
+     * @param matrices matrices to be multiplied, separated by commas
+     * @return cheapest order of multiplication
+     */
+    public static ProductPlan planProduct(Matrix... matrices) {
+        return ProductPlan.of(matrices);
     }
 
     /**
@@ -352,20 +538,81 @@ public class Matrix {
      * @return this matrix times x
      */
     public Vector times(Vector x) {
-        if (x.length == n) {
-            Vector result = new Vector(m);
+        return timesInto(x, new Vector(m));
+    }
+
+    /**
+     * Computes the product of this matrix and a vector into an existing vector, without allocating.
+     *
+     * @param x   vector to be multiplied by
+     * @param dst destination, which can't share entries with x or this matrix
+     * @return dst, holding this matrix times x
+     */
+    public Vector timesInto(Vector x, Vector dst) {
+        if (x.length == n && dst.length == m) {
+            if (Vector.overlaps(x, dst) || overlaps(dst)) {
+                throw new IllegalArgumentException("Destination of a product can't share entries with its factors.");
+            }
+            float[] r = dst.entries;
+            int ri = dst.offset, rs = dst.stride;
+            for (int row = 0, i = ri; row < m; row++, i += rs) {
+                r[i] = 0;
+            }
+            FloatKernels kernels = Kernels.get();
             //going through entries of x
-            for (int i = 0; i < x.length; i++) {
+            for (int col = 0; col < n; col++) {
                 //multiplying each entry by corresponding column of the matrix
                 //and adding the results into a single vector
-                result.add(this.getColumn(i).scale(x.getEntry(i)));
+                float k = x.getEntry(col);
+                int c = index(0, col);
+                if (values != null && rs == 1) {
+                    kernels.axpy(k, values, c, r, ri, m);
+                } else {
+                    for (int row = 0, i = ri; row < m; row++, i += rs) {
+                        r[i] += storage.get(c + row * rowStride) * k;
+                    }
+                }
             }
-            return result;
+            return dst;
         } else {
             throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrix by a vector of improper length.");
         }
     }
 
+    /**
+     * Whether two matrices may share entries: same backing memory and overlapping spans.
+     * Interleaved views, such as the even and odd columns, are conservatively reported as overlapping.
+     */
+    static boolean overlaps(Matrix a, Matrix b) {
+        if (!sameMemory(a, b)) return false;
+        return a.offset <= b.index(b.m - 1, b.n - 1) && b.offset <= a.index(a.m - 1, a.n - 1);
+    }
+
+    /**
+     * Whether a vector may share entries with this matrix.
+     */
+    boolean overlaps(Vector v) {
+        if (storage.array() != v.entries || v.length == 0) return false;
+        return offset <= v.offset + (v.length - 1) * v.stride && v.offset <= index(m - 1, n - 1);
+    }
+
+    private static boolean sameMemory(Matrix a, Matrix b) {
+        float[] array = a.storage.array();
+        return array != null ? array == b.storage.array() : a.storage == b.storage;
+    }
+
+    /**
+     * Elementwise operations can write into an operand as long as every entry
+     * of the destination is the matching entry of the operand.
+     */
+    static void checkElementwiseAlias(Matrix operand, Matrix dst) {
+        boolean sameLayout = sameMemory(operand, dst) && operand.offset == dst.offset
+                && operand.ld == dst.ld && operand.rowStride == dst.rowStride;
+        if (!sameLayout && overlaps(operand, dst)) {
+            throw new IllegalArgumentException("Destination partially overlaps an operand.");
+        }
+    }
+
     // ================== ARITHMETIC END ==================
 
 
@@ -379,17 +626,17 @@ public class Matrix {
         while (h < m && k < n) {
             i_max = partial_pivot(h,m-1,k);
 
-            if (Math.abs(values[k][i_max]) < epsilon ) {
+            if (Math.abs(getEntry(i_max, k)) < epsilon ) {
                 ++k;
             }
             else {
                 swap_rows(h,i_max);
 
                 for (int i = h + 1; i < m; i++) {
-                    f = values[k][i] / values[k][h];
-                    values[k][i] = 0;
+                    f = getEntry(i, k) / getEntry(h, k);
+                    setEntry(i, k, 0);
                     for (int j = k + 1; j < n; j++) {
-                        values[j][i] = values[j][i] - values[j][h] * f;
+                        setEntry(i, j, getEntry(i, j) - getEntry(h, j) * f);
                     }
                 }
                 ++h; ++k;
@@ -412,29 +659,29 @@ public class Matrix {
         float f;
         while (h >= 0) {
             k = rightmost_pivot_column(h);
-            // maybe make the above return -1 if no non-zeroes found?
 
-            if (Math.abs(values[k][h]) < epsilon) {
+            // a row of zeroes has no pivot at all
+            if (k == n || Math.abs(getEntry(h, k)) < epsilon) {
                 --h;
             }
             else {
                 if (h > 0) { // if this is not the first row
                     // create zeroes above this pivot
                     for (int i = h - 1; i >= 0; i--) {
-                        f = values[k][i] / values[k][h];
-                        values[k][i] = 0;
+                        f = getEntry(i, k) / getEntry(h, k);
+                        setEntry(i, k, 0);
                         for (int j = k + 1; j < n; j++) {
-                            values[j][i] = values[j][i] - values[j][h] * f;
+                            setEntry(i, j, getEntry(i, j) - getEntry(h, j) * f);
                         }
                     }
                 }
 
                 // if a pivot is not 1, make it 1 by a scaling operation
-                if (Math.abs(1 - values[k][h]) > epsilon) {
-                    f = values[k][h];
-                    values[k][h] = 1;
+                if (Math.abs(1 - getEntry(h, k)) > epsilon) {
+                    f = getEntry(h, k);
+                    setEntry(h, k, 1);
                     for (int j = k+1; j < n; j++) {
-                        values[j][h]/=f;
+                        setEntry(h, j, getEntry(h, j) / f);
                     }
                 }
 
@@ -457,6 +704,32 @@ public class Matrix {
     // ================== RREF END ==================
 
 
+    // ================== DECOMPOSITION BEGIN ==================
+
+    /**
+     * LU decomposition with partial pivoting, to solve systems, take the
+     * determinant or invert without eliminating again for every use.
+     *
+     * @return factorization of this square matrix
+     */
+    public LU lu() {
+        return LU.of(this);
+    }
+
+    /**
+     * Solver for systems with this matrix on the left, to be reused for every right-hand side.
+     * Cheaper than augmenting the matrix and calling {@link #rref(Matrix)} for each one.
+     *
+     * @return solver for this square matrix
+     * @throws ArithmeticException if the matrix is singular or too ill-conditioned
+     */
+    public LinearSolver solver() {
+        return LinearSolver.of(this);
+    }
+
+    // ================== DECOMPOSITION END ==================
+
+
     // ================== VECTORIZER BEGIN ==================
 
     /**
@@ -465,66 +738,410 @@ public class Matrix {
      * <p>
      * Implement the <code>function</code> method to perform the
      * desired operation.
+     * <p>
+     * The function is called on the calling thread, entry after entry in column-major order,
+     * so it may keep state. Passing <code>parallel</code> to the vectorize methods lets large
+     * matrices be split across the threads of {@link Parallel}: the function is then called
+     * concurrently and in any order of the entries, and has to be thread safe.
+     * The same holds for the other vectorizers.
      */
     public interface Vectorizer {
         float function(float value);
     }
 
     /**
-     * Applies a certain operation to all the elements in the matrix.
+     * Interface for combining the entries of two matrices pairwise.
+     */
+    public interface BinaryVectorizer {
+        float function(float value, float other);
+    }
+
+    /**
+     * Interface for a function that also depends on the position of the entry.
+     */
+    public interface IndexedVectorizer {
+        float function(int row, int column, float value);
+    }
+
+    /**
+     * Applies a certain operation to all the elements in the matrix, in order on the calling thread.
      *
      * @param vectorizer implemetation of Vectorizer interface that
      *                   can be easily made with a lambda expression:
      *                   <code>vectorize(value -> operation(value))</code>
      */
     public void vectorize(Vectorizer vectorizer) {
-        for (int col = 0; col < n; col++) {
-            for (int row = 0; row < m; row++) {
-                values[col][row] = vectorizer.function(values[col][row]);
+        vectorize(vectorizer, false);
+    }
+
+    /**
+     * Applies a certain operation to all the elements in the matrix.
+     *
+     * @param vectorizer <code>value -> operation(value)</code>
+     * @param parallel   whether the operation may run on several threads at once, see {@link Vectorizer}
+     */
+    public void vectorize(Vectorizer vectorizer, boolean parallel) {
+        ElementWise.update(this, null, false, parallel, 1, (x, xi, y, yi, count, column) -> {
+            for (int i = xi; i < xi + count; i++) {
+                x[i] = vectorizer.function(x[i]);
             }
+        });
+    }
+
+    /**
+     * Replaces every entry with a function of it and the matching entry of another matrix,
+     * in order on the calling thread.
+     *
+     * @param that       matrix of the same size, which may be this matrix itself
+     * @param vectorizer <code>(value, other) -> operation(value, other)</code>
+     */
+    public void vectorize(Matrix that, BinaryVectorizer vectorizer) {
+        vectorize(that, vectorizer, false);
+    }
+
+    /**
+     * Replaces every entry with a function of it and the matching entry of another matrix.
+     *
+     * @param that       matrix of the same size, which may be this matrix itself
+     * @param vectorizer <code>(value, other) -> operation(value, other)</code>
+     * @param parallel   whether the function may run on several threads at once, see {@link Vectorizer}
+     */
+    public void vectorize(Matrix that, BinaryVectorizer vectorizer, boolean parallel) {
+        if (that.m != m || that.n != n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to combine matrices of different sizes.");
         }
+        checkElementwiseAlias(that, this);
+        ElementWise.update(this, that, false, parallel, 1, (x, xi, y, yi, count, column) -> {
+            for (int i = 0; i < count; i++) {
+                x[xi + i] = vectorizer.function(x[xi + i], y[yi + i]);
+            }
+        });
+    }
+
+    /**
+     * Replaces every entry with a function of it and its position, in order on the calling thread.
+     *
+     * @param vectorizer <code>(row, column, value) -> operation(row, column, value)</code>
+     */
+    public void vectorizeIndexed(IndexedVectorizer vectorizer) {
+        vectorizeIndexed(vectorizer, false);
+    }
+
+    /**
+     * Replaces every entry with a function of it and its position.
+     *
+     * @param vectorizer <code>(row, column, value) -> operation(row, column, value)</code>
+     * @param parallel   whether the function may run on several threads at once, see {@link Vectorizer}
+     */
+    public void vectorizeIndexed(IndexedVectorizer vectorizer, boolean parallel) {
+        ElementWise.update(this, null, true, parallel, 1, (x, xi, y, yi, count, column) -> {
+            for (int row = 0; row < count; row++) {
+                x[xi + row] = vectorizer.function(row, column, x[xi + row]);
+            }
+        });
+    }
+
+    /**
+     * Replaces every entry with its absolute value.
+     */
+    public void abs() {
+        apply(ElementWise.Function.ABS, 0, 0);
+    }
+
+    /**
+     * Limits every entry to a range.
+     *
+     * @param min smallest value allowed
+     * @param max largest value allowed
+     */
+    public void clamp(float min, float max) {
+        if (!(min <= max)) {
+            throw new IllegalArgumentException("Lower bound of the range can't be above the upper bound: " + min + " > " + max);
+        }
+        apply(ElementWise.Function.CLAMP, min, max);
+    }
+
+    /**
+     * Multiplies every entry by a scalar.
+     *
+     * @param k the scalar to be multiplied by
+     */
+    public void scale(float k) {
+        apply(ElementWise.Function.SCALE, k, 0);
+    }
+
+    /**
+     * Multiplies every entry by a scalar, rounded to single precision first.
+     *
+     * @param k the scalar to be multiplied by
+     */
+    public void scale(double k) {
+        scale((float) k);
+    }
+
+    /**
+     * Replaces every entry x with e<sup>x</sup>.
+     */
+    public void exp() {
+        apply(ElementWise.Function.EXP, 0, 0);
+    }
+
+    private void apply(ElementWise.Function function, float p, float q) {
+        int cost = function == ElementWise.Function.EXP ? 20 : 1;
+        ElementWise.update(this, null, false, cost, (x, xi, y, yi, count, column) -> ElementWise.apply(function, p, q, x, xi, count));
+    }
+
+    /**
+     * Multiplies every entry by the matching entry of another matrix (Hadamard product).
+     *
+     * @param that matrix of the same size
+     */
+    public void multiplyEntries(Matrix that) {
+        if (that.m != m || that.n != n) {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of different sizes entry by entry.");
+        }
+        checkElementwiseAlias(that, this);
+        ElementWise.update(this, that, false, 1, (x, xi, y, yi, count, column) -> {
+            for (int i = 0; i < count; i++) {
+                x[xi + i] *= y[yi + i];
+            }
+        });
     }
 
     // ================== VECTORIZER END ==================
 
 
+    // ================== REDUCTIONS BEGIN ==================
+
+    /**
+     * @return sum of all the entries, accumulated in double precision
+     */
+    public double sum() {
+        return ElementWise.reduce(this, ElementWise.Reduction.SUM);
+    }
+
+    /**
+     * @return smallest entry
+     */
+    public float min() {
+        return (float) ElementWise.reduce(this, ElementWise.Reduction.MIN);
+    }
+
+    /**
+     * @return largest entry
+     */
+    public float max() {
+        return (float) ElementWise.reduce(this, ElementWise.Reduction.MAX);
+    }
+
+    /**
+     * @return square root of the sum of the squares of the entries
+     */
+    public double normFrobenius() {
+        return Math.sqrt(ElementWise.reduce(this, ElementWise.Reduction.SUM_OF_SQUARES));
+    }
+
+    /**
+     * @return largest absolute value of an entry
+     */
+    public float normMax() {
+        return (float) ElementWise.reduce(this, ElementWise.Reduction.MAX_ABS);
+    }
+
+    /**
+     * @return largest absolute column sum
+     */
+    public double norm1() {
+        return ElementWise.reduce(this, ElementWise.Reduction.MAX_COLUMN_ABS_SUM);
+    }
+
+    /**
+     * @return largest absolute row sum
+     */
+    public double normInf() {
+        double[] sums = new double[m];
+        // split by rows, so that every thread owns its sums and still reads down the columns
+        Parallel.forColumns(m, n, (from, to) -> {
+            for (int col = 0; col < n; col++) {
+                int c = index(from, col);
+                if (values != null) {
+                    for (int row = from; row < to; row++, c++) sums[row] += Math.abs(values[c]);
+                } else {
+                    for (int row = from; row < to; row++, c += rowStride) sums[row] += Math.abs(storage.get(c));
+                }
+            }
+        });
+        double result = 0;
+        for (double sum : sums) {
+            result = Math.max(result, sum);
+        }
+        return result;
+    }
+
+    /**
+     * @return mean, variance, minimum and maximum of every row, e.g. the
+     *         centroid and bounding box of a 3 by N matrix of points
+     */
+    public Statistics rowStatistics() {
+        return Statistics.ofRows(this);
+    }
+
+    /**
+     * @return mean, variance, minimum and maximum of every column
+     */
+    public Statistics columnStatistics() {
+        return Statistics.ofColumns(this);
+    }
+
+    /**
+     * @return Gram matrix A<sup>T</sup>A, computed on and above the diagonal only
+     */
+    public Matrix gram() {
+        return Statistics.gram(this);
+    }
+
+    /**
+     * @return sample covariance of the columns, with every row one observation
+     */
+    public Matrix covariance() {
+        return Statistics.covariance(this);
+    }
+
+    // ================== REDUCTIONS END ==================
+
+
     // ================== GET/SET BEGIN ==================
 
+    /**
+     * @param index index of the column
+     * @return copy of the column
+     */
     public Vector getColumn(int index) {
-        return new Vector(values[index]);
+        checkEntry(0, index);
+        Vector result = new Vector(m);
+        if (values != null) {
+            System.arraycopy(values, index(0, index), result.entries, 0, m);
+        } else {
+            for (int row = 0, i = index(0, index); row < m; row++, i += rowStride) {
+                result.entries[row] = storage.get(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param index index of the column
+     * @return zero-copy view of the column; writes to it change this matrix
+     * @throws UnsupportedOperationException if the entries are not in a heap array,
+     *                                       as for off-heap and memory-mapped matrices
+     */
+    public Vector getColumnView(int index) {
+        checkEntry(0, index);
+        return new Vector(heapArray(), index(0, index), rowStride, m);
     }
 
     public void setColumn(int index, Vector c) {
-        values[index] = c.entries;
+        for (int row = 0; row < m; row++) {
+            setEntry(row, index, c.getEntry(row));
+        }
     }
 
     public void setColumn(int index, float[] column) {
-        values[index] = column;
+        checkEntry(0, index);
+        if (column.length < m) {
+            throw new InputMismatchException("Dimension mismatch. Expected a column of length " + m +
+                    ". Provided: " + column.length);
+        }
+        if (values != null) {
+            System.arraycopy(column, 0, values, index(0, index), m);
+        } else {
+            for (int row = 0; row < m; row++) {
+                setEntry(row, index, column[row]);
+            }
+        }
     }
 
 
     public float[] getRow(int index) {
         float[] result = new float[n];
         for (int i = 0; i < n; i++) {
-            result[i] = values[i][index];
+            result[i] = getEntry(index, i);
         }
         return result;
     }
 
+    /**
+     * @param index index of the row
+     * @return zero-copy view of the row, strided by the leading dimension;
+     *         writes to it change this matrix
+     * @throws UnsupportedOperationException if the entries are not in a heap array,
+     *                                       as for off-heap and memory-mapped matrices
+     */
+    public Vector getRowView(int index) {
+        checkEntry(index, 0);
+        return new Vector(heapArray(), index(index, 0), ld, n);
+    }
+
+    /**
+     * A {@link Vector} can only view a heap array; a copy would silently drop the writes.
+     */
+    private float[] heapArray() {
+        float[] array = storage.array();
+        if (array == null) {
+            throw new UnsupportedOperationException("Views need entries in a heap array. " +
+                    "Use getColumn or getRow to copy entries of an off-heap matrix.");
+        }
+        return array;
+    }
+
     public void setRow(int index, float [] row) {
         for (int i = 0; i < n; i++) {
-            values[i][index] = row[i];
+            setEntry(index, i, row[i]);
         }
     }
 
     public float getEntry(int row, int column) {
-        return values[column][row];
+        checkEntry(row, column);
+        return storage.get(index(row, column));
+    }
+
+    public void setEntry(int row, int column, float value) {
+        checkEntry(row, column);
+        storage.set(index(row, column), value);
     }
 
-    public void setEntry(int row, int column, float value) { values[column][row] = value; }
+    public double getDouble(int row, int column) { return getEntry(row, column); }
+
+    public void setDouble(int row, int column, double value) { setEntry(row, column, (float) value); }
+
+    public int getNumberOfRows() { return m; }
+
+    public int getNumberOfColumns() { return n; }
 
     public static float getEpsilon() { return epsilon; }
 
+    /**
+     * Position of an entry in the storage.
+     *
+     * @param row    row of the entry
+     * @param column column of the entry
+     * @return index into the storage
+     */
+    protected int index(int row, int column) {
+        return offset + column * ld + row * rowStride;
+    }
+
+    /**
+     * Rejects a position outside of the matrix, which the flat storage would otherwise
+     * resolve to an entry of a neighbouring column, or of the parent of a view.
+     */
+    private void checkEntry(int row, int column) {
+        if (row < 0 || row >= m || column < 0 || column >= n) {
+            throw new IndexOutOfBoundsException("Entry (" + row + ", " + column + ") is outside of a "
+                    + m + " by " + n + " matrix.");
+        }
+    }
+
     /**
      * Finds the largest pivot position for the given column.
      * Largest is used to minimize roundoff errors, in a process called partial pivoting.
@@ -536,24 +1153,26 @@ public class Matrix {
     private int partial_pivot(int start_row, int end_row, int column) {
         int max = start_row;
         for (int i = start_row; i <= end_row; i++) {
-            if (Math.abs(values[column][i]) > Math.abs(values[column][max])) { max = i; }
+            if (Math.abs(getEntry(i, column)) > Math.abs(getEntry(max, column))) { max = i; }
         }
         return max;
     }
 
     /**
-     * Swaps two rows
+     * Swaps two rows in place
      * @param a index 1
      * @param b index 2
      */
     private void swap_rows(int a, int b) {
         if (a < 0 || b < 0) { throw new IllegalArgumentException("One of the rows to be swapped has a negative index"); }
         if (a >= m || b >= m) { throw new IllegalArgumentException("One of the rows to be swapped has a too high index"); }
+        if (a == b) return;
 
-        float [] temp = getRow(b);
-
-        setRow(b,getRow(a));
-        setRow(a,temp);
+        for (int i = index(a, 0), j = index(b, 0), col = 0; col < n; col++, i += ld, j += ld) {
+            float temp = storage.get(j);
+            storage.set(j, storage.get(i));
+            storage.set(i, temp);
+        }
     }
 
     /**
@@ -563,13 +1182,86 @@ public class Matrix {
      */
     private int rightmost_pivot_column(int row) {
         int col = 0;
-        while (col < n && Math.abs(values[col][row]) < epsilon) ++col;
+        while (col < n && Math.abs(getEntry(row, col)) < epsilon) ++col;
         return col;
     }
 
     // ================== GET/SET END ==================
 
 
+    // ================== VIEWS BEGIN ==================
+
+    /**
+     * Transpose without copying: rows and columns swap strides.
+     * Writes to the view change this matrix, and every operation accepts it as is.
+     *
+     * @return n by m view of this matrix
+     */
+    public Matrix transpose() {
+        return new Matrix(n, m, storage, offset, ld, rowStride);
+    }
+
+    /**
+     * Block of this matrix, without copying.
+     *
+     * @param row     first row of the block
+     * @param column  first column of the block
+     * @param rows    number of rows in the block
+     * @param columns number of columns in the block
+     * @return view of the block; writes to it change this matrix
+     */
+    public Matrix subMatrix(int row, int column, int rows, int columns) {
+        return slice(row, rows, 1, column, columns, 1);
+    }
+
+    /**
+     * @param from first column
+     * @param to   column after the last one
+     * @return view of columns [from, to)
+     */
+    public Matrix columns(int from, int to) {
+        return subMatrix(0, from, m, to - from);
+    }
+
+    /**
+     * @param from first row
+     * @param to   row after the last one
+     * @return view of rows [from, to)
+     */
+    public Matrix rows(int from, int to) {
+        return subMatrix(from, 0, to - from, n);
+    }
+
+    /**
+     * Every rowStep-th row and columnStep-th column of this matrix, without copying.
+     * For example <code>slice(0, m / 2, 2, 0, n, 1)</code> is the even rows.
+     *
+     * @param row        first row of the slice
+     * @param rows       number of rows in the slice
+     * @param rowStep    distance between the rows taken, at least 1
+     * @param column     first column of the slice
+     * @param columns    number of columns in the slice
+     * @param columnStep distance between the columns taken, at least 1
+     * @return view of the slice; writes to it change this matrix
+     */
+    public Matrix slice(int row, int rows, int rowStep, int column, int columns, int columnStep) {
+        if (rowStep <= 0 || columnStep <= 0) {
+            throw new IllegalArgumentException("Slice steps have to be positive. Provided: " + rowStep + " and " + columnStep);
+        }
+        if (rows <= 0 || columns <= 0) {
+            throw new InputMismatchException("Matrix has to have a positive number of rows and columns. " +
+                    "Provided: " + rows + " by " + columns);
+        }
+        if (row < 0 || row + (long) (rows - 1) * rowStep >= m || column < 0 || column + (long) (columns - 1) * columnStep >= n) {
+            throw new IndexOutOfBoundsException("Slice of " + rows + " by " + columns + " from (" + row + ", " + column +
+                    ") with steps " + rowStep + " and " + columnStep + " is outside of a " + m + " by " + n + " matrix.");
+        }
+        return new Matrix(rows, columns, storage, index(row, column), rowStride * rowStep, ld * columnStep);
+    }
+
+    // ================== VIEWS END ==================
+
+
     // ================== GROW BEGIN ==================
 
     /**
@@ -583,8 +1275,12 @@ public class Matrix {
         Matrix result = new Matrix(m, n + 1);
 
         // copies all existing entries
-        for (int col = 0; col < n; col++) {
-            result.setColumn(col, this.getColumn(col));
+        if (values != null && ld == m) {
+            System.arraycopy(values, offset, result.values, 0, m * n);
+        } else {
+            for (int col = 0; col < n; col++) {
+                result.setColumn(col, getColumn(col));
+            }
         }
 
         // adds the last (new) column
@@ -600,6 +1296,48 @@ public class Matrix {
     // ================== GROW END ==================
 
 
+    // ================== FILE I/O BEGIN ==================
+
+    /**
+     * Saves the matrix in the binary format described in {@link MatrixFile}.
+     *
+     * @param path file to save to
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path path) throws IOException {
+        MatrixFile.save(this, path);
+    }
+
+    /**
+     * Memory-maps a matrix saved with {@link #save(Path)}, read-only.
+     * Nothing is read until entries are accessed. Files over 2 GB are mapped in several regions,
+     * up to 2<sup>31</sup> - 1 entries.
+     *
+     * @param path file to load
+     * @return matrix backed by the file; writing an entry throws a {@link java.nio.ReadOnlyBufferException}.
+     *         Close it to unmap the file
+     * @throws IOException if the file can't be read or is not a matrix file
+     */
+    public static OffHeapMatrix load(Path path) throws IOException {
+        return load(path, false);
+    }
+
+    /**
+     * Memory-maps a matrix saved with {@link #save(Path)}.
+     *
+     * @param path     file to load
+     * @param writable whether writes to the matrix, including in-place operations, go through to the file.
+     *                 The file has to be writable then
+     * @return matrix backed by the file; close it to unmap the file
+     * @throws IOException if the file can't be opened or is not a matrix file
+     */
+    public static OffHeapMatrix load(Path path, boolean writable) throws IOException {
+        return MatrixFile.load(path, writable);
+    }
+
+    // ================== FILE I/O END ==================
+
+
     // ================== TO STRING BEGIN ==================
 
     /**
@@ -610,9 +1348,9 @@ public class Matrix {
      */
     public String toString() {
         StringBuilder result = new StringBuilder();
-        for (int row = 0; row < values[0].length; row++) {
-            for (int col = 0; col < values.length; col++) {
-                result.append(String.format("% 8.2f ",values[col][row]));
+        for (int row = 0; row < m; row++) {
+            for (int col = 0; col < n; col++) {
+                result.append(String.format("% 8.2f ", getEntry(row, col)));
             }
             result.append("\n");
         }
@@ -0,0 +1,329 @@
+import java.util.InputMismatchException;
+
+/**
+ * Lazy element-wise expression over matrices of the same size, evaluated in a single pass.
+ * <p>
+ * <code>Matrix.add(Matrix.subtract(a, b), c)</code> followed by a <code>vectorize</code>
+ * reads and writes every entry three times and allocates two intermediate matrices.
+ * The same computation as an expression,
+ * <pre>
+ * a.lazy().subtract(b).add(c).vectorize(v -&gt; v * v).evaluate();
+ * </pre>
+ * builds a tree and only touches memory when evaluated: the entries are streamed in blocks
+ * small enough to stay in L1, every node of the tree is applied to a block before moving on,
+ * and only the result is written out. Large expressions are split across threads by columns,
+ * unless they apply a {@link #vectorize vectorizer} that wasn't declared thread safe.
+ * <p>
+ * Expressions are immutable and can be evaluated any number of times,
+ * seeing the current entries of their matrices each time.
+ */
+public abstract class MatrixExpression {
+    /** Entries per block, small enough for a few blocks to fit in L1 */
+    private static final int BLOCK = 1024;
+
+    protected final int m;
+    protected final int n;
+
+    private MatrixExpression(int m, int n) {
+        this.m = m;
+        this.n = n;
+    }
+
+    /**
+     * @param a matrix to start from
+     * @return expression whose value is a
+     */
+    public static MatrixExpression of(Matrix a) {
+        return new Leaf(a);
+    }
+
+    // ================== BUILDING BEGIN ==================
+
+    public MatrixExpression add(Matrix a) {
+        return add(of(a));
+    }
+
+    /**
+     * @param that expression to be added
+     * @return componentwise sum of the two expressions
+     */
+    public MatrixExpression add(MatrixExpression that) {
+        return new Combination(this, that, 1);
+    }
+
+    public MatrixExpression subtract(Matrix a) {
+        return subtract(of(a));
+    }
+
+    /**
+     * @param that expression to be subtracted
+     * @return componentwise difference of the two expressions
+     */
+    public MatrixExpression subtract(MatrixExpression that) {
+        return new Combination(this, that, -1);
+    }
+
+    /**
+     * @param k the scalar to be multiplied by
+     * @return this expression scaled by k
+     */
+    public MatrixExpression scale(float k) {
+        return new Scale(this, k);
+    }
+
+    /**
+     * Applies an operation that is called on the evaluating thread, entry after entry in
+     * column-major order, so the whole expression is then evaluated on that thread.
+     *
+     * @param vectorizer operation applied to every entry, as in {@link Matrix#vectorize(Matrix.Vectorizer)}
+     * @return this expression with the operation applied
+     */
+    public MatrixExpression vectorize(Matrix.Vectorizer vectorizer) {
+        return vectorize(vectorizer, false);
+    }
+
+    /**
+     * @param vectorizer operation applied to every entry
+     * @param parallel   whether the operation may run on several threads at once,
+     *                   see {@link Matrix.Vectorizer}
+     * @return this expression with the operation applied
+     */
+    public MatrixExpression vectorize(Matrix.Vectorizer vectorizer, boolean parallel) {
+        return new Map(this, vectorizer, parallel);
+    }
+
+    // ================== BUILDING END ==================
+
+
+    // ================== EVALUATION BEGIN ==================
+
+    /**
+     * @return new matrix holding the value of the expression
+     */
+    public Matrix evaluate() {
+        return evaluateInto(new Matrix(m, n));
+    }
+
+    /**
+     * Evaluates the expression into an existing matrix, without allocating it.
+     *
+     * @param dst destination, which may be one of the matrices in the expression
+     *            but not overlap them otherwise
+     * @return dst
+     */
+    public Matrix evaluateInto(Matrix dst) {
+        if (dst.m != m || dst.n != n) {
+            throw new InputMismatchException("Dimension mismatch. Expression is " + m + " by " + n +
+                    ", destination is " + dst.m + " by " + dst.n);
+        }
+        checkAlias(dst);
+        int registers = registers();
+        Parallel.ColumnRange body = (from, to) -> {
+            float[][] buffers = new float[registers][BLOCK];
+            for (int p = from * m, end = to * m; p < end; p += BLOCK) {
+                int count = Math.min(BLOCK, end - p);
+                fill(p, count, buffers, 0);
+                write(dst, p, count, buffers[0]);
+            }
+        };
+        if (isParallel()) {
+            Parallel.forColumns(n, (long) m * nodes(), body);
+        } else {
+            body.apply(0, n);
+        }
+        return dst;
+    }
+
+    public int getNumberOfRows() { return m; }
+
+    public int getNumberOfColumns() { return n; }
+
+    /**
+     * Computes the entries at column-major positions [p, p + count) into buffers[level].
+     * Buffers above level are free for scratch, buffers below hold values of pending nodes.
+     */
+    abstract void fill(int p, int count, float[][] buffers, int level);
+
+    /**
+     * Buffers needed to evaluate this node, counted as for register allocation:
+     * the right operand of a combination is evaluated into the buffer after the left one.
+     */
+    abstract int registers();
+
+    /**
+     * Number of nodes, a rough cost per entry.
+     */
+    abstract int nodes();
+
+    /**
+     * Whether every function supplied by the caller may run on several threads at once.
+     */
+    abstract boolean isParallel();
+
+    abstract void checkAlias(Matrix dst);
+
+    // ================== EVALUATION END ==================
+
+
+    /**
+     * Copies the entries at column-major positions [p, p + count) of a into a buffer,
+     * one run per column unless the matrix is packed.
+     */
+    private static void read(Matrix a, int p, int count, float[] buffer) {
+        if (a.values != null && a.ld == a.m) {
+            System.arraycopy(a.values, a.offset + p, buffer, 0, count);
+            return;
+        }
+        for (int i = 0, col = p / a.m, row = p % a.m; i < count; col++, row = 0) {
+            int run = Math.min(count - i, a.m - row);
+            int src = a.index(row, col);
+            if (a.values != null) {
+                System.arraycopy(a.values, src, buffer, i, run);
+            } else {
+                for (int r = 0; r < run; r++, src += a.rowStride) buffer[i + r] = a.storage.get(src);
+            }
+            i += run;
+        }
+    }
+
+    /**
+     * Reverse of {@link #read}.
+     */
+    private static void write(Matrix a, int p, int count, float[] buffer) {
+        if (a.values != null && a.ld == a.m) {
+            System.arraycopy(buffer, 0, a.values, a.offset + p, count);
+            return;
+        }
+        for (int i = 0, col = p / a.m, row = p % a.m; i < count; col++, row = 0) {
+            int run = Math.min(count - i, a.m - row);
+            int dst = a.index(row, col);
+            if (a.values != null) {
+                System.arraycopy(buffer, i, a.values, dst, run);
+            } else {
+                for (int r = 0; r < run; r++, dst += a.rowStride) a.storage.set(dst, buffer[i + r]);
+            }
+            i += run;
+        }
+    }
+
+
+    private static final class Leaf extends MatrixExpression {
+        private final Matrix a;
+
+        Leaf(Matrix a) {
+            super(a.m, a.n);
+            this.a = a;
+        }
+
+        void fill(int p, int count, float[][] buffers, int level) {
+            read(a, p, count, buffers[level]);
+        }
+
+        int registers() { return 1; }
+
+        int nodes() { return 1; }
+
+        boolean isParallel() { return true; }
+
+        void checkAlias(Matrix dst) {
+            Matrix.checkElementwiseAlias(a, dst);
+        }
+    }
+
+    private static final class Combination extends MatrixExpression {
+        private final MatrixExpression left, right;
+        /** 1 to add, -1 to subtract */
+        private final int sign;
+
+        Combination(MatrixExpression left, MatrixExpression right, int sign) {
+            super(left.m, left.n);
+            if (left.m != right.m || left.n != right.n) {
+                throw new InputMismatchException("Dimension mismatch. Attempted to " + (sign > 0 ? "add" : "subtract") +
+                        " matrices of different sizes.");
+            }
+            this.left = left;
+            this.right = right;
+            this.sign = sign;
+        }
+
+        void fill(int p, int count, float[][] buffers, int level) {
+            left.fill(p, count, buffers, level);
+            right.fill(p, count, buffers, level + 1);
+            float[] x = buffers[level], y = buffers[level + 1];
+            if (sign > 0) {
+                Kernels.get().add(x, 0, y, 0, x, 0, count);
+            } else {
+                Kernels.get().subtract(x, 0, y, 0, x, 0, count);
+            }
+        }
+
+        int registers() { return Math.max(left.registers(), 1 + right.registers()); }
+
+        int nodes() { return 1 + left.nodes() + right.nodes(); }
+
+        boolean isParallel() { return left.isParallel() && right.isParallel(); }
+
+        void checkAlias(Matrix dst) {
+            left.checkAlias(dst);
+            right.checkAlias(dst);
+        }
+    }
+
+    private static final class Scale extends MatrixExpression {
+        private final MatrixExpression operand;
+        private final float k;
+
+        Scale(MatrixExpression operand, float k) {
+            super(operand.m, operand.n);
+            this.operand = operand;
+            this.k = k;
+        }
+
+        void fill(int p, int count, float[][] buffers, int level) {
+            operand.fill(p, count, buffers, level);
+            float[] x = buffers[level];
+            Kernels.get().scale(k, x, 0, x, 0, count);
+        }
+
+        int registers() { return operand.registers(); }
+
+        int nodes() { return 1 + operand.nodes(); }
+
+        boolean isParallel() { return operand.isParallel(); }
+
+        void checkAlias(Matrix dst) {
+            operand.checkAlias(dst);
+        }
+    }
+
+    private static final class Map extends MatrixExpression {
+        private final MatrixExpression operand;
+        private final Matrix.Vectorizer vectorizer;
+        private final boolean parallel;
+
+        Map(MatrixExpression operand, Matrix.Vectorizer vectorizer, boolean parallel) {
+            super(operand.m, operand.n);
+            this.operand = operand;
+            this.vectorizer = vectorizer;
+            this.parallel = parallel;
+        }
+
+        void fill(int p, int count, float[][] buffers, int level) {
+            operand.fill(p, count, buffers, level);
+            float[] x = buffers[level];
+            for (int i = 0; i < count; i++) {
+                x[i] = vectorizer.function(x[i]);
+            }
+        }
+
+        int registers() { return operand.registers(); }
+
+        int nodes() { return 1 + operand.nodes(); }
+
+        boolean isParallel() { return parallel && operand.isParallel(); }
+
+        void checkAlias(Matrix dst) {
+            operand.checkAlias(dst);
+        }
+    }
+}
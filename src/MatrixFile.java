@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary format for matrices, read and written through memory mapping.
+ * <p>
+ * A file is a 32 byte little-endian header followed by the raw entries:
+ * <pre>
+ * offset  size  field
+ *      0     4  magic, the ASCII bytes "MTRX"
+ *      4     2  format version, currently 1
+ *      6     1  data type, 1 for 32-bit floats
+ *      7     1  layout, 0 for column-major
+ *      8     4  number of rows
+ *     12     4  number of columns
+ *     16    16  reserved, zero
+ *     32     -  rows * columns little-endian floats, column after column
+ * </pre>
+ * Loading maps the entries straight into an {@link OffHeapMatrix}, so opening
+ * a file of any size is instant and pages are read in lazily as they are touched.
+ * Files over 2 GB are mapped in several regions, up to the 2<sup>31</sup> - 1 entries
+ * a matrix can index, about 8 GB.
+ */
+public final class MatrixFile {
+    public static final int MAGIC = 'M' | 'T' << 8 | 'R' << 16 | 'X' << 24;
+    public static final short VERSION = 1;
+    public static final byte FLOAT32 = 1;
+    public static final byte COLUMN_MAJOR = 0;
+    public static final int HEADER_SIZE = 32;
+
+    private MatrixFile() {
+    }
+
+    /**
+     * Dimensions read from the header of a matrix file.
+     */
+    public static final class Header {
+        public final int rows;
+        public final int columns;
+
+        Header(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        /**
+         * @return size in bytes of the entries that follow the header
+         */
+        public long dataSize() {
+            return (long) rows * columns * Float.BYTES;
+        }
+    }
+
+    /**
+     * Writes a matrix to a file, replacing whatever the file held before.
+     *
+     * @param mat  matrix to be saved
+     * @param path file to save to
+     * @throws IOException if the file can't be written
+     */
+    public static void save(Matrix mat, Path path) throws IOException {
+        long dataSize = (long) mat.m * mat.n * Float.BYTES;
+        checkMappable(dataSize);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(header, mat.m, mat.n);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            try (DirectStorage data = map(channel, FileChannel.MapMode.READ_WRITE, dataSize)) {
+                if (mat.values != null && mat.ld == mat.m) {
+                    data.set(0, mat.values, mat.offset, mat.m * mat.n);
+                } else {
+                    float[] column = new float[mat.m];
+                    for (int col = 0; col < mat.n; col++) {
+                        for (int row = 0; row < mat.m; row++) {
+                            column[row] = mat.getEntry(row, col);
+                        }
+                        data.set(col * mat.m, column, 0, mat.m);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps a matrix file into memory without reading it.
+     *
+     * @param path     file to load
+     * @param writable whether writes to the matrix go through to the file.
+     *                 If <code>false</code>, writing an entry throws a
+     *                 {@link java.nio.ReadOnlyBufferException}
+     * @return off-heap matrix backed by the file; closing it unmaps the file
+     * @throws IOException if the file can't be read or is not a matrix file
+     */
+    public static OffHeapMatrix load(Path path, boolean writable) throws IOException {
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            Header header = readHeader(channel, path);
+            if (channel.size() < HEADER_SIZE + header.dataSize()) {
+                throw new IOException(path + " is truncated. Expected size: " + (HEADER_SIZE + header.dataSize()) +
+                        " bytes  Actual size: " + channel.size() + " bytes");
+            }
+            checkMappable(header.dataSize());
+            // the mapping stays valid after the channel is closed
+            return new OffHeapMatrix(header.rows, header.columns, map(channel,
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, header.dataSize()),
+                    0, header.rows);
+        }
+    }
+
+    /**
+     * Reads and validates the header at the start of a channel.
+     * On return the channel is positioned at the first entry.
+     *
+     * @param channel channel to read from
+     * @param source  name of the source, used in error messages
+     * @return dimensions of the stored matrix
+     * @throws IOException if the channel doesn't start with a valid header
+     */
+    public static Header readHeader(FileChannel channel, Object source) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(0);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new IOException(source + " is too short to be a matrix file.");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException(source + " is not a matrix file.");
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported matrix file version. Expected: " + VERSION + "  Provided: " + version);
+        }
+        byte type = header.get();
+        if (type != FLOAT32) {
+            throw new IOException("Unsupported data type. Expected: " + FLOAT32 + "  Provided: " + type);
+        }
+        byte layout = header.get();
+        if (layout != COLUMN_MAJOR) {
+            throw new IOException("Unsupported layout. Expected: " + COLUMN_MAJOR + "  Provided: " + layout);
+        }
+        int rows = header.getInt();
+        int columns = header.getInt();
+        if (rows <= 0 || columns <= 0) {
+            throw new IOException("Matrix file has to have a positive number of rows and columns. " +
+                    "Provided number of rows: " + rows + ".  Provided number of columns: " + columns);
+        }
+        return new Header(rows, columns);
+    }
+
+    /**
+     * Fills a header buffer for an m by n matrix.
+     */
+    static void writeHeader(ByteBuffer header, int m, int n) {
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.put(FLOAT32);
+        header.put(COLUMN_MAJOR);
+        header.putInt(m);
+        header.putInt(n);
+        while (header.hasRemaining()) {
+            header.put((byte) 0);
+        }
+        header.flip();
+    }
+
+    /**
+     * Maps the entries that follow the header, one region of {@link DirectStorage#REGION_SIZE} floats
+     * at a time, since a single mapping can't exceed 2 GB.
+     */
+    private static DirectStorage map(FileChannel channel, FileChannel.MapMode mode, long dataSize) throws IOException {
+        long regionBytes = (long) DirectStorage.REGION_SIZE * Float.BYTES;
+        MappedByteBuffer[] regions = new MappedByteBuffer[(int) Math.max(1, (dataSize + regionBytes - 1) / regionBytes)];
+        for (int i = 0; i < regions.length; i++) {
+            long start = i * regionBytes;
+            regions[i] = channel.map(mode, HEADER_SIZE + start, Math.min(regionBytes, dataSize - start));
+            regions[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new DirectStorage(regions);
+    }
+
+    private static void checkMappable(long dataSize) throws IOException {
+        if (dataSize > (long) DirectStorage.MAX_SIZE * Float.BYTES) {
+            throw new IOException("Matrix is too large to be mapped. Expected size: <=" +
+                    (long) DirectStorage.MAX_SIZE * Float.BYTES + " bytes  Provided: " + dataSize + " bytes");
+        }
+    }
+}
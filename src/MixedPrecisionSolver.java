@@ -0,0 +1,137 @@
+import java.util.InputMismatchException;
+
+/**
+ * Solves Ax = b to double precision accuracy with a single precision factorization.
+ * <p>
+ * A is factored in float with the blocked {@link LU}, which is the O(n^3) part.
+ * Each solve then runs iterative refinement: the residual r = b - Ax is computed in
+ * double, the correction is solved for with the float factors, and x is updated in double,
+ * each step at O(n^2). For matrices with a condition number well below 10^7 every step
+ * gains about 7 digits, so a few steps reach double accuracy.
+ * <p>
+ * When refinement doesn't converge, because A is too ill-conditioned for the float
+ * factors to be of use, the solver factors A in double once and solves with that from then on.
+ */
+public final class MixedPrecisionSolver {
+    /** Refinement steps before giving up on the float factorization */
+    public static final int MAX_ITERATIONS = 30;
+
+    private final DoubleMatrix a;
+    private final double normA;
+    /** Null if A is singular in single precision */
+    private final LU lu;
+    private volatile DoubleLU fallback;
+
+    private MixedPrecisionSolver(DoubleMatrix a, LU lu) {
+        this.a = a;
+        this.normA = a.normInf();
+        this.lu = lu.isSingular() ? null : lu;
+    }
+
+    /**
+     * Factors a matrix in single precision. The matrix is copied, so later
+     * changes to it don't affect the solver.
+     *
+     * @param a square matrix of the system
+     * @return solver for a
+     * @throws ArithmeticException if a is singular even in double precision
+     */
+    public static MixedPrecisionSolver of(DoubleMatrix a) {
+        if (a.m != a.n) {
+            throw new InputMismatchException("Solving requires a square matrix. Provided: " + a.m + " by " + a.n);
+        }
+        MixedPrecisionSolver solver = new MixedPrecisionSolver(new DoubleMatrix(a), LU.of(a.toMatrix()));
+        if (solver.lu == null) {
+            solver.doublePrecision();
+        }
+        return solver;
+    }
+
+    /**
+     * @param b right-hand side
+     * @return x such that Ax = b, accurate to double precision
+     */
+    public DoubleVector solve(DoubleVector b) {
+        if (b.length != a.m) {
+            throw new InputMismatchException("Dimension mismatch. Expected a right-hand side of length " + a.m +
+                    ". Provided: " + b.length);
+        }
+        if (!isMixedPrecision()) {
+            return doublePrecision().solve(b);
+        }
+        // the loop runs on scratch vectors, so only the solution is allocated
+        try (Workspace w = Workspace.open()) {
+            Vector single = w.vector(a.n);
+            DoubleVector r = w.doubleVector(a.n);
+            DoubleVector x = new DoubleVector(a.n);
+            x.axpy(1, lu.solveInto(b.toVector(single), single));
+            // stopping criterion of LAPACK's dsgesv: ||r|| <= ||x|| ||A|| eps sqrt(n)
+            double tolerance = Math.ulp(1d) * Math.sqrt(a.n) * normA;
+            double previous = Double.POSITIVE_INFINITY;
+            for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+                a.timesInto(x, r);
+                r.axpy(-1, b);
+                double residual = r.normInf();
+                if (residual <= tolerance * x.normInf()) {
+                    return x;
+                }
+                if (!(residual < previous)) {
+                    // stalled or diverging, more steps won't help
+                    break;
+                }
+                previous = residual;
+                // r holds Ax - b, so the correction is subtracted
+                x.axpy(-1, lu.solveInto(r.toVector(single), single));
+            }
+        }
+        return doublePrecision().solve(b);
+    }
+
+    /**
+     * Solves for every column of B, splitting the columns across threads.
+     *
+     * @param b right-hand sides, one per column
+     * @return X such that AX = B
+     */
+    public DoubleMatrix solve(DoubleMatrix b) {
+        if (b.m != a.m) {
+            throw new InputMismatchException("Dimension mismatch. Expected right-hand sides with " + a.m +
+                    " rows. Provided: " + b.m);
+        }
+        DoubleMatrix x = new DoubleMatrix(b.m, b.n);
+        Parallel.forColumns(b.n, 4L * a.m * a.m, (from, to) -> {
+            for (int col = from; col < to; col++) {
+                System.arraycopy(solve(b.getColumn(col)).entries, 0, x.values, col * b.m, b.m);
+            }
+        });
+        return x;
+    }
+
+    /**
+     * @return whether solves still go through the float factorization,
+     *         false once the solver fell back to double precision
+     */
+    public boolean isMixedPrecision() {
+        return lu != null && fallback == null;
+    }
+
+    /**
+     * Double precision factorization, made on first use.
+     */
+    private DoubleLU doublePrecision() {
+        DoubleLU result = fallback;
+        if (result == null) {
+            synchronized (this) {
+                result = fallback;
+                if (result == null) {
+                    result = DoubleLU.of(a);
+                    if (result.isSingular()) {
+                        throw new ArithmeticException("Matrix of the system is singular.");
+                    }
+                    fallback = result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.InputMismatchException;
+
+/**
+ * This class represents a matrix whose entries live outside of the Java heap,
+ * so that very large data sets don't put any pressure on the garbage collector.
+ * <p>
+ * The memory is owned by the matrix and released by {@link #close()},
+ * which makes it usable in a try-with-resources block:
+ * <pre>
+ * try (OffHeapMatrix points = new OffHeapMatrix(3, 100_000_000)) {
+ *     ...
+ * }
+ * </pre>
+ * Every operation of {@link Matrix} works on an off-heap matrix,
+ * except that columns and rows are handed out as copies instead of views.
+ */
+public class OffHeapMatrix extends Matrix implements AutoCloseable {
+
+    /**
+     * Constructor for an empty off-heap matrix.
+     *
+     * @param m number of rows
+     * @param n number of columns
+     */
+    public OffHeapMatrix(int m, int n) {
+        super(m, n, DirectStorage.allocate(checkedSize(m, n)), 0, m);
+    }
+
+    /**
+     * Constructor for an off-heap matrix over existing off-heap storage.
+     *
+     * @param m       number of rows
+     * @param n       number of columns
+     * @param storage backing memory, owned by the matrix from now on
+     * @param offset  index of entry (0, 0) in the storage
+     * @param ld      leading dimension, at least m
+     */
+    protected OffHeapMatrix(int m, int n, DirectStorage storage, int offset, int ld) {
+        super(m, n, storage, offset, ld);
+    }
+
+    /**
+     * Makes an off-heap copy of a matrix.
+     *
+     * @param mat matrix to be copied from
+     * @return off-heap matrix with the same entries
+     */
+    public static OffHeapMatrix copyOf(Matrix mat) {
+        OffHeapMatrix result = new OffHeapMatrix(mat.m, mat.n);
+        DirectStorage storage = (DirectStorage) result.storage;
+        for (int col = 0; col < mat.n; col++) {
+            if (mat.values != null) {
+                storage.set(result.index(0, col), mat.values, mat.index(0, col), mat.m);
+            } else {
+                for (int row = 0; row < mat.m; row++) {
+                    storage.set(result.index(row, col), mat.getEntry(row, col));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Product of two matrices stored off the heap,
+     * for results too large to be kept on it.
+     *
+     * @param a multiplier
+     * @param b multiplicand
+     * @return product ab, off-heap
+     */
+    public static OffHeapMatrix productOf(Matrix a, Matrix b) {
+        if (a.n == b.m) {
+            OffHeapMatrix result = new OffHeapMatrix(a.m, b.n);
+            Parallel.forColumns(b.n, (long) a.m * a.n, (from, to) -> Gemm.multiply(a, b, result, from, to));
+            return result;
+        } else {
+            throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of improper size.");
+        }
+    }
+
+    /**
+     * Releases the memory of this matrix. Closing twice does nothing.
+     */
+    public void close() {
+        ((DirectStorage) storage).close();
+    }
+}
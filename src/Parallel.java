@@ -0,0 +1,132 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel execution mode for matrix operations.
+ * <p>
+ * Column-major storage splits naturally by column, so every parallel
+ * operation is expressed as a body that handles a range of columns.
+ * Work that falls below the threshold runs on the calling thread,
+ * which keeps small matrices such as the 3x3 transforms free of any
+ * fork-join overhead.
+ * <p>
+ * Only the library's own work is split implicitly. Functions supplied by the caller,
+ * such as the lambdas of {@link Matrix#vectorize}, run on the calling thread unless
+ * the caller passes <code>parallel</code> to declare them thread safe.
+ */
+public final class Parallel {
+    /**
+     * Interface for a piece of work over a range of columns.
+     */
+    public interface ColumnRange {
+        void apply(int from, int to);
+    }
+
+    private static volatile boolean enabled = true;
+    private static volatile long threshold = 1 << 16;
+    private static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private Parallel() {
+    }
+
+    /**
+     * Runs the body over columns [0, n), splitting it into column blocks
+     * on the fork-join pool if the total work is large enough.
+     *
+     * @param n             number of columns
+     * @param workPerColumn estimated cost of one column, in scalar operations
+     * @param body          work to be done over a range of columns
+     */
+    public static void forColumns(int n, long workPerColumn, ColumnRange body) {
+        long work = workPerColumn * n;
+        if (!enabled || n < 2 || work < threshold) {
+            body.apply(0, n);
+            return;
+        }
+        ForkJoinPool p = pool;
+        // aim for a few tasks per worker, but never tasks smaller than the threshold
+        long byThreshold = (threshold + workPerColumn - 1) / Math.max(1, workPerColumn);
+        long byWorkers = (n + 4L * p.getParallelism() - 1) / (4L * p.getParallelism());
+        int grain = (int) Math.max(1, Math.min(n, Math.max(byThreshold, byWorkers)));
+        if (grain >= n) {
+            body.apply(0, n);
+        } else {
+            p.invoke(new ColumnTask(body, 0, n, grain));
+        }
+    }
+
+    /**
+     * Whether an operation of this size would be split across threads.
+     *
+     * @param work estimated cost of the operation, in scalar operations
+     * @return true if the operation runs in parallel
+     */
+    public static boolean isParallel(long work) {
+        return enabled && work >= threshold;
+    }
+
+    public static boolean isEnabled() { return enabled; }
+
+    /**
+     * Turns the parallel mode on or off. When off, every operation
+     * runs sequentially on the calling thread.
+     *
+     * @param enabled whether to use the fork-join pool
+     */
+    public static void setEnabled(boolean enabled) { Parallel.enabled = enabled; }
+
+    public static long getThreshold() { return threshold; }
+
+    /**
+     * Sets the amount of work below which operations are not split.
+     *
+     * @param threshold minimum number of scalar operations worth parallelizing
+     */
+    public static void setThreshold(long threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Parallel threshold has to be a positive number. Provided: " + threshold);
+        }
+        Parallel.threshold = threshold;
+    }
+
+    public static ForkJoinPool getPool() { return pool; }
+
+    /**
+     * Sets the pool that parallel operations run on.
+     *
+     * @param pool fork-join pool to use
+     */
+    public static void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool can't be null.");
+        }
+        Parallel.pool = pool;
+    }
+
+    /**
+     * Splits a column range in halves until it is no larger than the grain.
+     */
+    private static final class ColumnTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ColumnRange body;
+        private final int from, to, grain;
+
+        ColumnTask(ColumnRange body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.apply(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ColumnTask(body, from, mid, grain), new ColumnTask(body, mid, to, grain));
+            }
+        }
+    }
+}
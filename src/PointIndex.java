@@ -0,0 +1,302 @@
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * Uniform grid over the x and y coordinates of a buffer of points, for finding the ones
+ * in a region without looking at the rest: the points on the screen, the one under the
+ * cursor, the ones in a selection box.
+ * <p>
+ * The grid is built in model space, so it stays valid under any transform the points are
+ * viewed through. A query on the screen is mapped back through the inverse transform to
+ * a box in model space, and only the cells overlapping that box are visited, which makes
+ * the cost proportional to the number of points near the region rather than to all of them.
+ * <p>
+ * Cells are kept sorted row by row in one array, like a counting sort, so a row of cells
+ * is a single contiguous run of point indices. Columns appended after the grid was built are
+ * scanned linearly until there are enough of them to rebuild it, and so are points with an
+ * infinite or NaN coordinate, which have no cell. The index has to be
+ * {@link #invalidate() invalidated} whenever existing points change or are removed.
+ * It isn't thread safe.
+ */
+public final class PointIndex {
+    /** Average number of points per cell */
+    private static final int POINTS_PER_CELL = 4;
+    private static final int MAX_CELLS_PER_SIDE = 4096;
+
+    private final GrowableMatrix points;
+
+    /** Columns [0, indexed) are in the grid, -1 if it has to be built again */
+    private int indexed = -1;
+    private float minX, minY, maxX, maxY, cellsPerX, cellsPerY;
+    private int columns, rows;
+    /** Cell c holds cellPoints[cellStart[c] .. cellStart[c + 1]), cells numbered row by row */
+    private int[] cellStart = new int[0], cellPoints = new int[0];
+    /** Number of points in the grid, the ones of [0, indexed) with finite coordinates */
+    private int gridded;
+    /** Points of [0, indexed) with a non-finite coordinate, scanned linearly */
+    private int[] outside = new int[0];
+    private int outsideCount;
+    /** Candidates of the queries that filter them further */
+    private int[] scratch = new int[0];
+
+    /** Model space box of the last query */
+    private float boxMinX, boxMinY, boxMaxX, boxMaxY;
+
+    /**
+     * @param points buffer whose first two rows are the x and y coordinates of the points
+     */
+    public PointIndex(GrowableMatrix points) {
+        if (points.m < 2) {
+            throw new InputMismatchException("Points need at least 2 coordinates. Provided: " + points.m);
+        }
+        this.points = points;
+    }
+
+    /**
+     * Makes the next query rebuild the grid, after points were moved or removed.
+     */
+    public void invalidate() {
+        indexed = -1;
+    }
+
+    // ================== QUERIES BEGIN ==================
+
+    /**
+     * Upper bound on the number of points {@link #candidates} would return, in time
+     * proportional to the number of rows of cells visited, without gathering them.
+     */
+    public int countCandidates(Affine2D view, float x0, float y0, float x1, float y1) {
+        update();
+        int count = points.n - indexed + outsideCount;
+        if (toModel(view, x0, y0, x1, y1)) {
+            int c0 = cellX(boxMinX), c1 = cellX(boxMaxX);
+            for (int r = cellY(boxMinY), r1 = cellY(boxMaxY); r <= r1; r++) {
+                count += cellStart[r * columns + c1 + 1] - cellStart[r * columns + c0];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the points that may be in a box of the view, all the ones in it and some around it.
+     *
+     * @param view transform from model space to the view
+     * @param x0   left of the box, in the view
+     * @param y0   top of the box, in the view
+     * @param x1   right of the box, in the view
+     * @param y1   bottom of the box, in the view
+     * @param dst  receives the indices of the points; as long as the number of points is always enough
+     * @return number of indices written
+     */
+    public int candidates(Affine2D view, float x0, float y0, float x1, float y1, int[] dst) {
+        update();
+        int count = 0;
+        if (toModel(view, x0, y0, x1, y1)) {
+            int c0 = cellX(boxMinX), c1 = cellX(boxMaxX);
+            for (int r = cellY(boxMinY), r1 = cellY(boxMaxY); r <= r1; r++) {
+                int from = cellStart[r * columns + c0], to = cellStart[r * columns + c1 + 1];
+                System.arraycopy(cellPoints, from, dst, count, to - from);
+                count += to - from;
+            }
+        }
+        for (int i = 0; i < outsideCount; i++) {
+            if (inBox(outside[i])) {
+                dst[count++] = outside[i];
+            }
+        }
+        for (int p = indexed; p < points.n; p++) {
+            if (inBox(p)) {
+                dst[count++] = p;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return whether a point is in the model space box of the last query
+     */
+    private boolean inBox(int p) {
+        float[] v = points.values;
+        float x = v[p * points.m], y = v[p * points.m + 1];
+        return x >= boxMinX && x <= boxMaxX && y >= boxMinY && y <= boxMaxY;
+    }
+
+    /**
+     * Finds the point closest to a position of the view, such as the one under the cursor.
+     *
+     * @param view      transform from model space to the view
+     * @param x         x coordinate in the view
+     * @param y         y coordinate in the view
+     * @param tolerance largest distance in the view at which a point is found
+     * @return index of the closest point, -1 if none is within the tolerance
+     */
+    public int nearest(Affine2D view, float x, float y, float tolerance) {
+        int count = candidates(view, x - tolerance, y - tolerance, x + tolerance, y + tolerance, scratch());
+        float a = view.getScaleX(), b = view.getShearY(), c = view.getShearX(), d = view.getScaleY();
+        float tx = view.getTranslateX(), ty = view.getTranslateY();
+        float[] v = points.values;
+        int best = -1;
+        float bestDistance = tolerance * tolerance;
+        for (int i = 0, m = points.m; i < count; i++) {
+            int p = scratch[i];
+            float px = v[p * m], py = v[p * m + 1];
+            float dx = a * px + c * py + tx - x, dy = b * px + d * py + ty - y;
+            float distance = dx * dx + dy * dy;
+            if (distance <= bestDistance) {
+                best = p;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the points inside a box of the view, given by any two opposite corners.
+     *
+     * @param view transform from model space to the view
+     * @return indices of the points in the box, in increasing order within each cell
+     */
+    public int[] select(Affine2D view, float x0, float y0, float x1, float y1) {
+        float left = Math.min(x0, x1), right = Math.max(x0, x1), top = Math.min(y0, y1), bottom = Math.max(y0, y1);
+        int count = candidates(view, left, top, right, bottom, scratch());
+        float a = view.getScaleX(), b = view.getShearY(), c = view.getShearX(), d = view.getScaleY();
+        float tx = view.getTranslateX(), ty = view.getTranslateY();
+        float[] v = points.values;
+        int selected = 0;
+        for (int i = 0, m = points.m; i < count; i++) {
+            int p = scratch[i];
+            float px = v[p * m], py = v[p * m + 1];
+            float sx = a * px + c * py + tx, sy = b * px + d * py + ty;
+            if (sx >= left && sx <= right && sy >= top && sy <= bottom) {
+                scratch[selected++] = p;
+            }
+        }
+        return Arrays.copyOf(scratch, selected);
+    }
+
+    /**
+     * Maps a box of the view to the bounding box of its preimage in model space.
+     *
+     * @return whether that box overlaps the grid
+     */
+    private boolean toModel(Affine2D view, float x0, float y0, float x1, float y1) {
+        float[] corners = {x0, y0, x1, y0, x0, y1, x1, y1};
+        view.inverse().transform(corners, 0, 2, 4);
+        boxMinX = Math.min(Math.min(corners[0], corners[2]), Math.min(corners[4], corners[6]));
+        boxMaxX = Math.max(Math.max(corners[0], corners[2]), Math.max(corners[4], corners[6]));
+        boxMinY = Math.min(Math.min(corners[1], corners[3]), Math.min(corners[5], corners[7]));
+        boxMaxY = Math.max(Math.max(corners[1], corners[3]), Math.max(corners[5], corners[7]));
+        return gridded > 0 && boxMaxX >= minX && boxMinX <= maxX && boxMaxY >= minY && boxMinY <= maxY;
+    }
+
+    private int[] scratch() {
+        if (scratch.length < points.n) {
+            scratch = new int[points.getCapacity()];
+        }
+        return scratch;
+    }
+
+    // ================== QUERIES END ==================
+
+
+    // ================== BUILD BEGIN ==================
+
+    /**
+     * Rebuilds the grid if it was invalidated, or once the columns appended since are
+     * more than an eighth of the ones in it, so that scanning them stays cheap.
+     */
+    private void update() {
+        int n = points.n;
+        if (indexed < 0 || n < indexed || n - indexed > Math.max(64, indexed / 8)) {
+            build();
+        }
+    }
+
+    /**
+     * Sizes the grid to the bounding box of the points, with about square cells of a few points each,
+     * and sorts the points by cell. Points with an infinite or NaN coordinate are left out of both
+     * and kept for a linear scan, since a single one would stretch the grid to an infinite width.
+     */
+    private void build() {
+        final int n = points.n, m = points.m;
+        float[] v = points.values;
+        indexed = n;
+        gridded = 0;
+        outsideCount = 0;
+        if (n == 0) return;
+        minX = minY = Float.POSITIVE_INFINITY;
+        maxX = maxY = Float.NEGATIVE_INFINITY;
+        for (int p = 0; p < n; p++) {
+            float x = v[p * m], y = v[p * m + 1];
+            if (Float.isFinite(x) && Float.isFinite(y)) {
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+                gridded++;
+            }
+        }
+        if (outside.length < n - gridded) {
+            outside = new int[n - gridded];
+        }
+        if (gridded == 0) {
+            for (int p = 0; p < n; p++) {
+                outside[outsideCount++] = p;
+            }
+            return;
+        }
+        double width = (double) maxX - minX, height = (double) maxY - minY;
+        double cells = Math.max(1, gridded / POINTS_PER_CELL);
+        double side = Math.sqrt(width * height / cells);
+        if (!(side > 0)) {
+            // all the points on a line, or in one place
+            side = Math.max(width, height) / cells;
+        }
+        double across = Math.min(MAX_CELLS_PER_SIDE, Math.ceil(width / side));
+        double down = Math.min(MAX_CELLS_PER_SIDE, Math.ceil(height / side));
+        columns = !(across >= 1) ? 1 : (int) across;
+        rows = !(down >= 1) ? 1 : (int) down;
+        cellsPerX = width > 0 ? (float) (columns / width) : 0;
+        cellsPerY = height > 0 ? (float) (rows / height) : 0;
+
+        if (cellStart.length < columns * rows + 1) {
+            cellStart = new int[columns * rows + 1];
+        }
+        Arrays.fill(cellStart, 0, columns * rows + 1, 0);
+        for (int p = 0; p < n; p++) {
+            float x = v[p * m], y = v[p * m + 1];
+            if (Float.isFinite(x) && Float.isFinite(y)) {
+                cellStart[cell(x, y) + 1]++;
+            } else {
+                outside[outsideCount++] = p;
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        if (cellPoints.length < gridded) {
+            cellPoints = new int[points.getCapacity()];
+        }
+        int[] next = Arrays.copyOf(cellStart, columns * rows);
+        for (int p = 0; p < n; p++) {
+            float x = v[p * m], y = v[p * m + 1];
+            if (Float.isFinite(x) && Float.isFinite(y)) {
+                cellPoints[next[cell(x, y)]++] = p;
+            }
+        }
+    }
+
+    private int cell(float x, float y) {
+        return cellY(y) * columns + cellX(x);
+    }
+
+    private int cellX(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - minX) * cellsPerX)));
+    }
+
+    private int cellY(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - minY) * cellsPerY)));
+    }
+
+    // ================== BUILD END ==================
+}
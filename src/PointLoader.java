@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.InputMismatchException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams 2D points from a file on a background thread, in chunks that the consumer
+ * appends to its points whenever it is ready, so points can be shown while they load.
+ * <p>
+ * Two formats are read, told apart by their first bytes:
+ * <ul>
+ * <li>a {@link MatrixFile} with at least 2 rows, every column a point whose first two entries are x and y;</li>
+ * <li>text with one point per line, x and y being the first two numbers separated by commas,
+ * semicolons, tabs or spaces. Empty lines and lines starting with <code>#</code> are skipped,
+ * and the first other line is taken as a header if it isn't numeric.</li>
+ * </ul>
+ * The file is read sequentially in large blocks, and text is parsed straight from the bytes,
+ * without a String per line or number. Points with an infinite or NaN coordinate, such as a
+ * <code>NaN</code> or <code>1e39</code> in text or any such float in a binary file, are skipped.
+ * <p>
+ * Memory is bounded by a fixed pool of chunks: the reader fills a free chunk and queues it,
+ * the consumer appends queued chunks and gives them back. When the consumer falls behind,
+ * the reader waits for a free chunk instead of reading ahead.
+ */
+public final class PointLoader implements AutoCloseable {
+    /** Points per chunk */
+    private static final int CHUNK_POINTS = 1 << 16;
+    /** Chunks in the pool, the most read ahead of the consumer */
+    private static final int CHUNKS = 8;
+    /** Bytes per read from the file */
+    private static final int READ_SIZE = 1 << 20;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Packed homogeneous points [x y 1], numbered in the file from first.
+     */
+    private static final class Chunk {
+        final float[] entries = new float[3 * CHUNK_POINTS];
+        int count;
+        long first;
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Runnable onReady;
+    private final Thread thread;
+
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNKS);
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNKS);
+
+    /** Points read so far, only written by the reader */
+    private volatile long pointsRead;
+    /** Points left out for a non-finite coordinate, only written by the reader */
+    private volatile long pointsSkipped;
+    private volatile boolean finished, closed;
+    private volatile IOException error;
+
+    /**
+     * Opens a file and starts reading it on a new thread.
+     *
+     * @param path    file of points
+     * @param onReady called on the reader's thread whenever a chunk is queued, and once when reading
+     *                stops, e.g. to wake up the consumer; has to return quickly
+     * @throws IOException if the file can't be opened
+     */
+    public PointLoader(Path path, Runnable onReady) throws IOException {
+        this.path = path;
+        this.onReady = onReady;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        for (int i = 0; i < CHUNKS; i++) {
+            free.add(new Chunk());
+        }
+        thread = new Thread(this::run, "PointLoader " + path.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // ================== CONSUMER BEGIN ==================
+
+    /**
+     * Appends the points queued so far, without waiting for more.
+     *
+     * @param points buffer of homogeneous points with 3 rows
+     * @param step   only points whose number in the file is a multiple of step are appended,
+     *               to take a uniform sample of files too large to hold
+     * @return number of points appended
+     */
+    public int drainTo(GrowableMatrix points, int step) {
+        if (points.m != 3) {
+            throw new InputMismatchException("Dimension mismatch. Expected a matrix with 3 rows. Provided: " + points.m);
+        }
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step has to be positive. Provided: " + step);
+        }
+        int appended = 0;
+        for (Chunk chunk; (chunk = full.poll()) != null; ) {
+            if (step == 1) {
+                points.appendColumns(chunk.entries, 0, chunk.count);
+                appended += chunk.count;
+            } else {
+                for (int i = (int) ((step - chunk.first % step) % step); i < chunk.count; i += step) {
+                    points.appendColumns(chunk.entries, 3 * i, 1);
+                    appended++;
+                }
+            }
+            free.add(chunk);
+        }
+        return appended;
+    }
+
+    /**
+     * @return whether reading has stopped and every point read was drained
+     */
+    public boolean isDone() {
+        return finished && full.isEmpty();
+    }
+
+    /**
+     * @return what stopped reading before the end of the file, null if nothing did
+     */
+    public IOException getError() { return error; }
+
+    public long getPointsRead() { return pointsRead; }
+
+    /**
+     * @return number of points left out so far because a coordinate was infinite or NaN
+     */
+    public long getPointsSkipped() { return pointsSkipped; }
+
+    public Path getPath() { return path; }
+
+    /**
+     * Stops reading and closes the file. Points not drained yet are dropped.
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    // ================== CONSUMER END ==================
+
+
+    // ================== READER BEGIN ==================
+
+    private void run() {
+        try (channel) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            if (!magic.hasRemaining() && magic.getInt(0) == MatrixFile.MAGIC) {
+                readBinary();
+            } else {
+                readText();
+            }
+        } catch (ClosedByInterruptException | InterruptedException e) {
+            // closed by the consumer
+        } catch (IOException e) {
+            if (!closed) error = e;
+        } finally {
+            finished = true;
+            if (!closed) onReady.run();
+        }
+    }
+
+    private void readBinary() throws IOException, InterruptedException {
+        MatrixFile.Header header = MatrixFile.readHeader(channel, path);
+        if (header.rows < 2) {
+            throw new IOException(path + " has " + header.rows + " entry per column. Expected at least 2 for x and y.");
+        }
+        int columnBytes = header.rows * Float.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(1, READ_SIZE / columnBytes) * columnBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long remaining = header.columns;
+        Chunk chunk = null;
+        while (remaining > 0) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException(path + " is truncated. Expected columns: " + header.columns +
+                        "  Actual columns: " + (header.columns - remaining));
+            }
+            buffer.flip();
+            for (; remaining > 0 && buffer.remaining() >= columnBytes; remaining--) {
+                if (chunk == null) chunk = take();
+                int p = buffer.position();
+                add(chunk, buffer.getFloat(p), buffer.getFloat(p + Float.BYTES));
+                buffer.position(p + columnBytes);
+                if (chunk.count == CHUNK_POINTS) {
+                    publish(chunk);
+                    chunk = null;
+                }
+            }
+            buffer.compact();
+        }
+        if (chunk != null) publish(chunk);
+    }
+
+    private void readText() throws IOException, InterruptedException {
+        channel.position(0);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+        byte[] bytes = buffer.array();
+        float[] point = new float[2];
+        long line = 0;
+        // whether a point or the header was read, after which a line that isn't numeric is an error
+        boolean started = false;
+        Chunk chunk = null;
+        boolean eof = false;
+        while (!eof) {
+            eof = channel.read(buffer) < 0;
+            int end = buffer.position(), start = 0;
+            while (start < end) {
+                int newline = start;
+                while (newline < end && bytes[newline] != '\n') newline++;
+                if (newline == end && !eof) break;
+                line++;
+                boolean parsed;
+                try {
+                    parsed = parseLine(bytes, start, newline, point);
+                } catch (NumberFormatException e) {
+                    if (started) {
+                        throw new IOException(path + ", line " + line + ": " + e.getMessage());
+                    }
+                    // header
+                    started = true;
+                    parsed = false;
+                }
+                if (parsed) {
+                    started = true;
+                    if (chunk == null) chunk = take();
+                    add(chunk, point[0], point[1]);
+                    if (chunk.count == CHUNK_POINTS) {
+                        publish(chunk);
+                        chunk = null;
+                    }
+                }
+                start = newline + 1;
+            }
+            start = Math.min(start, end);
+            if (!eof && start == 0 && end == bytes.length) {
+                throw new IOException(path + ", line " + (line + 1) + " is longer than " + READ_SIZE + " bytes.");
+            }
+            System.arraycopy(bytes, start, bytes, 0, end - start);
+            buffer.position(end - start);
+        }
+        if (chunk != null) publish(chunk);
+    }
+
+    /**
+     * Reads x and y from the first two fields of the line [from, to).
+     *
+     * @return false for a blank line or a comment
+     * @throws NumberFormatException if the line doesn't start with two numbers
+     */
+    private static boolean parseLine(byte[] b, int from, int to, float[] point) {
+        if (to > from && b[to - 1] == '\r') to--;
+        int fields = 0;
+        for (int i = from; i < to && fields < 2; ) {
+            while (i < to && isSeparator(b[i])) i++;
+            if (i == to) break;
+            if (fields == 0 && b[i] == '#') return false;
+            int start = i;
+            while (i < to && !isSeparator(b[i])) i++;
+            point[fields++] = parseNumber(b, start, i);
+        }
+        if (fields == 1) {
+            throw new NumberFormatException("Expected x and y, found a single number.");
+        }
+        return fields == 2;
+    }
+
+    private static boolean isSeparator(byte c) {
+        return c == ',' || c == ';' || c == ' ' || c == '\t';
+    }
+
+    /**
+     * Parses a plain decimal number such as <code>-12.5e3</code> from its digits,
+     * falling back to {@link Float#parseFloat} for anything else, such as NaN or more than 22 powers of ten.
+     */
+    static float parseNumber(byte[] b, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (b[i] == '-' || b[i] == '+')) {
+            negative = b[i++] == '-';
+        }
+        long mantissa = 0;
+        int exponent = 0, digits = 0;
+        boolean any = false;
+        for (; i < to && b[i] >= '0' && b[i] <= '9'; i++, any = true) {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (b[i] - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exponent++;
+            }
+        }
+        if (i < to && b[i] == '.') {
+            for (i++; i < to && b[i] >= '0' && b[i] <= '9'; i++, any = true) {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b[i] - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                }
+            }
+        }
+        if (any && i < to && (b[i] == 'e' || b[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (b[i] == '-' || b[i] == '+')) {
+                negativeExponent = b[i++] == '-';
+            }
+            int e = 0, start = i;
+            for (; i < to && b[i] >= '0' && b[i] <= '9'; i++) {
+                e = Math.min(e * 10 + (b[i] - '0'), 1000);
+            }
+            any = i > start;
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!any || i != to || exponent < -22 || exponent > 22) {
+            return Float.parseFloat(new String(b, from, to - from, StandardCharsets.US_ASCII));
+        }
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return (float) (negative ? -value : value);
+    }
+
+    private Chunk take() throws InterruptedException {
+        // waits here while the consumer is behind
+        Chunk chunk = free.take();
+        chunk.count = 0;
+        chunk.first = pointsRead;
+        return chunk;
+    }
+
+    /**
+     * Appends a point to the chunk, unless it has a non-finite coordinate that no view could show.
+     */
+    private void add(Chunk chunk, float x, float y) {
+        if (!Float.isFinite(x) || !Float.isFinite(y)) {
+            pointsSkipped++;
+            return;
+        }
+        int i = 3 * chunk.count++;
+        chunk.entries[i] = x;
+        chunk.entries[i + 1] = y;
+        chunk.entries[i + 2] = 1;
+    }
+
+    private void publish(Chunk chunk) throws InterruptedException {
+        pointsRead += chunk.count;
+        full.put(chunk);
+        onReady.run();
+    }
+
+    // ================== READER END ==================
+}
@@ -0,0 +1,293 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Draws points as filled circles straight into the pixels of an image,
+ * which is then put on the screen with a single <code>drawImage</code>.
+ * <p>
+ * Going through <code>Graphics.fillOval</code> costs an AWT call per point. Here a point
+ * is a stamp of a precomputed sprite: one horizontal span per row of the circle,
+ * each filled with <code>Arrays.fill</code> on a row of the <code>int[]</code> raster.
+ * Large point sets are sorted by horizontal bands of the image and rasterized in parallel;
+ * every thread only writes the rows of its bands, so no synchronization is needed.
+ * <p>
+ * Clouds so dense that the disks would cover each other can be drawn as a density map
+ * instead, whose cost depends on the number of points only through one counting pass.
+ * A renderer keeps its buffers between frames and is meant to be used by one thread at a time.
+ */
+public final class PointRenderer {
+    private static final int BACKGROUND = 0xFFFFFF;
+    private static final int FOREGROUND = 0x000000;
+    /** Rows per band, the smallest unit of parallel rasterization */
+    private static final int BAND = 64;
+    /** Side of the square tiles points are counted in for a density map, in pixels */
+    private static final int TILE = 2;
+    /** Fewest points counted by each thread of a density map */
+    private static final int POINTS_PER_TASK = 1 << 16;
+    /** Largest count whose shade is looked up in a table */
+    private static final int SHADES = 4096;
+
+    private final int width, height;
+    private final BufferedImage image;
+    private final int[] pixels;
+
+    /** Sprite of the last diameter drawn: span of row j is [spanStart[j], spanEnd[j]) */
+    private int spriteDiameter = -1;
+    private int[] spanStart = new int[0], spanEnd = new int[0];
+    /** Points sorted by band: band b holds binPoints[binStart[b] .. binStart[b + 1]) */
+    private int[] binStart = new int[0], binPoints = new int[0];
+
+    private final int tileColumns, tileRows;
+    /** Tile counts of a density map, one array per counting task, merged into the first */
+    private int[][] tileCounts = new int[0][];
+    /** Largest merged count of every row of tiles */
+    private int[] rowMax = new int[0];
+    /** Color of every count up to SHADES in the last density map */
+    private int[] shades = new int[0];
+
+    /**
+     * @param width  width of the image in pixels
+     * @param height height of the image in pixels
+     */
+    public PointRenderer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image has to have a positive size. Provided: " + width + " by " + height);
+        }
+        this.width = width;
+        this.height = height;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        tileColumns = (width + TILE - 1) / TILE;
+        tileRows = (height + TILE - 1) / TILE;
+    }
+
+    /**
+     * Clears the image and draws the points, each as a circle of the given radius.
+     * A point is placed as <code>fillOval(x + xOffset - radius, y + yOffset - radius, 2 radius, 2 radius)</code> would.
+     *
+     * @param xs      x coordinates of the points
+     * @param ys      y coordinates of the points
+     * @param count   number of points
+     * @param xOffset added to every x, e.g. to move the origin to the middle of the image
+     * @param yOffset added to every y
+     * @param radius  radius of the circles
+     * @return the image, which stays the same object between calls
+     */
+    public BufferedImage render(float[] xs, float[] ys, int count, float xOffset, float yOffset, float radius) {
+        int diameter = (int) (2 * radius);
+        prepareSprite(diameter);
+        // sorting by band only pays off when there are several threads to hand the bands to
+        if (diameter <= 0 || !Parallel.isParallel((long) count * diameter + pixels.length)
+                || Parallel.getPool().getParallelism() < 2) {
+            Arrays.fill(pixels, BACKGROUND);
+            for (int p = 0; p < count && diameter > 0; p++) {
+                stamp(xs[p] + xOffset - radius, ys[p] + yOffset - radius, diameter, 0, height, FOREGROUND);
+            }
+            return image;
+        }
+        int bands = bin(ys, count, yOffset - radius, diameter);
+        Parallel.forColumns(bands, (long) count / bands * diameter + BAND * width, (from, to) -> {
+            Arrays.fill(pixels, from * BAND * width, Math.min(height, to * BAND) * width, BACKGROUND);
+            for (int band = from; band < to; band++) {
+                int top = band * BAND, bottom = Math.min(height, top + BAND);
+                for (int i = binStart[band]; i < binStart[band + 1]; i++) {
+                    int p = binPoints[i];
+                    stamp(xs[p] + xOffset - radius, ys[p] + yOffset - radius, diameter, top, bottom, FOREGROUND);
+                }
+            }
+        });
+        return image;
+    }
+
+    /**
+     * Clears the image and draws the density of the points: the number of points in each
+     * small tile of the screen, from white for none to black for the most, on a log scale.
+     * Points are counted in one pass split by ranges of points, every task into tile counts of its
+     * own, which are then merged and shaded split by rows of tiles.
+     *
+     * @param xs      x coordinates of the points
+     * @param ys      y coordinates of the points
+     * @param count   number of points
+     * @param xOffset added to every x
+     * @param yOffset added to every y
+     * @return the image, which stays the same object between calls
+     */
+    public BufferedImage renderDensity(float[] xs, float[] ys, int count, float xOffset, float yOffset) {
+        final int tiles = tileColumns * tileRows;
+        int tasks = Parallel.isParallel(count) ? Math.max(1, Math.min(Parallel.getPool().getParallelism(), count / POINTS_PER_TASK)) : 1;
+        if (tileCounts.length < tasks) {
+            int[][] grown = Arrays.copyOf(tileCounts, tasks);
+            for (int t = tileCounts.length; t < tasks; t++) {
+                grown[t] = new int[tiles];
+            }
+            tileCounts = grown;
+            rowMax = new int[tileRows];
+        }
+        int perTask = (count + tasks - 1) / tasks;
+        Parallel.forColumns(tasks, (long) perTask + tiles, (from, to) -> {
+            for (int task = from; task < to; task++) {
+                int[] counts = tileCounts[task];
+                Arrays.fill(counts, 0);
+                for (int p = task * perTask, end = Math.min(count, p + perTask); p < end; p++) {
+                    float x = xs[p] + xOffset, y = ys[p] + yOffset;
+                    if (x >= 0 && x < width && y >= 0 && y < height) {
+                        counts[(int) y / TILE * tileColumns + (int) x / TILE]++;
+                    }
+                }
+            }
+        });
+
+        int[] total = tileCounts[0];
+        Parallel.forColumns(tileRows, (long) tileColumns * tasks, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                int max = 0;
+                for (int t = row * tileColumns, end = t + tileColumns; t < end; t++) {
+                    int sum = total[t];
+                    for (int task = 1; task < tasks; task++) {
+                        sum += tileCounts[task][t];
+                    }
+                    total[t] = sum;
+                    max = Math.max(max, sum);
+                }
+                rowMax[row] = max;
+            }
+        });
+        int max = 0;
+        for (int row = 0; row < tileRows; row++) {
+            max = Math.max(max, rowMax[row]);
+        }
+
+        // single points stay visible as light gray, the densest tiles are black;
+        // shades of the common small counts come from a table instead of a log per tile
+        final double scale = max > 0 ? 1 / Math.log1p(max) : 0;
+        if (shades.length < Math.min(max, SHADES) + 1) {
+            shades = new int[Math.min(max, SHADES) + 1];
+        }
+        for (int c = 0; c <= Math.min(max, SHADES); c++) {
+            shades[c] = shade(c, scale);
+        }
+        Parallel.forColumns(tileRows, (long) tileColumns * TILE * TILE, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                int y = row * TILE, first = y * width;
+                for (int column = 0, t = row * tileColumns; column < tileColumns; column++, t++) {
+                    int c = total[t];
+                    int color = c < shades.length ? shades[c] : shade(c, scale);
+                    for (int x = column * TILE, right = Math.min(width, x + TILE); x < right; x++) {
+                        pixels[first + x] = color;
+                    }
+                }
+                for (int copy = y + 1, bottom = Math.min(height, y + TILE); copy < bottom; copy++) {
+                    System.arraycopy(pixels, first, pixels, copy * width, width);
+                }
+            }
+        });
+        return image;
+    }
+
+    private static int shade(int count, double scale) {
+        if (count == 0) return BACKGROUND;
+        int gray = (int) (220 * (1 - Math.log1p(count) * scale));
+        return gray << 16 | gray << 8 | gray;
+    }
+
+    /**
+     * Draws more points over the last image without clearing it, e.g. to highlight a few of them.
+     * Meant for small sets, so it runs on the calling thread.
+     *
+     * @param rgb color of the points, as 0xRRGGBB
+     * @return the image
+     * @see #render
+     */
+    public BufferedImage overlay(float[] xs, float[] ys, int count, float xOffset, float yOffset, float radius, int rgb) {
+        int diameter = (int) (2 * radius);
+        prepareSprite(diameter);
+        for (int p = 0; p < count && diameter > 0; p++) {
+            stamp(xs[p] + xOffset - radius, ys[p] + yOffset - radius, diameter, 0, height, rgb);
+        }
+        return image;
+    }
+
+    /**
+     * Sorts the points by the bands they cover with a counting sort, a point
+     * taller than a band going into all of them. Points off the top and bottom are dropped.
+     *
+     * @return number of bands
+     */
+    private int bin(float[] ys, int count, float shift, int diameter) {
+        int bands = (height + BAND - 1) / BAND;
+        if (binStart.length < bands + 1) {
+            binStart = new int[bands + 1];
+        }
+        Arrays.fill(binStart, 0);
+        for (int p = 0; p < count; p++) {
+            float up = ys[p] + shift;
+            if (up >= height || up + diameter <= 0) continue;
+            int y = (int) Math.floor(up);
+            for (int b = Math.max(0, y) / BAND, last = (Math.min(height, y + diameter) - 1) / BAND; b <= last; b++) {
+                binStart[b + 1]++;
+            }
+        }
+        for (int b = 0; b < bands; b++) {
+            binStart[b + 1] += binStart[b];
+        }
+        if (binPoints.length < binStart[bands]) {
+            binPoints = new int[binStart[bands]];
+        }
+        int[] next = Arrays.copyOf(binStart, bands);
+        for (int p = 0; p < count; p++) {
+            float up = ys[p] + shift;
+            if (up >= height || up + diameter <= 0) continue;
+            int y = (int) Math.floor(up);
+            for (int b = Math.max(0, y) / BAND, last = (Math.min(height, y + diameter) - 1) / BAND; b <= last; b++) {
+                binPoints[next[b]++] = p;
+            }
+        }
+        return bands;
+    }
+
+    /**
+     * Draws the sprite with its top left corner at (left, up), clipped to rows [top, bottom).
+     */
+    private void stamp(float left, float up, int diameter, int top, int bottom, int color) {
+        // culled in float first, since far away points don't fit in an int
+        if (left >= width || left + diameter <= 0 || up >= bottom || up + diameter <= top) return;
+        int x = (int) Math.floor(left), y = (int) Math.floor(up);
+        for (int j = Math.max(0, top - y), last = Math.min(diameter, bottom - y); j < last; j++) {
+            int x0 = Math.max(0, x + spanStart[j]), x1 = Math.min(width, x + spanEnd[j]);
+            if (x0 < x1) {
+                int row = (y + j) * width;
+                Arrays.fill(pixels, row + x0, row + x1, color);
+            }
+        }
+    }
+
+    /**
+     * Spans of a disk inscribed in a diameter by diameter box, sampled at pixel centers.
+     */
+    private void prepareSprite(int diameter) {
+        if (diameter == spriteDiameter) return;
+        int[] start = new int[Math.max(0, diameter)], end = new int[Math.max(0, diameter)];
+        double r = diameter / 2.0;
+        for (int j = 0; j < diameter; j++) {
+            double dy = j + 0.5 - r;
+            double half = Math.sqrt(Math.max(0, r * r - dy * dy));
+            start[j] = (int) Math.round(r - half);
+            end[j] = (int) Math.round(r + half);
+        }
+        spanStart = start;
+        spanEnd = end;
+        spriteDiameter = diameter;
+    }
+
+    /**
+     * @return image the points are drawn into
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+}
@@ -0,0 +1,146 @@
+import java.util.InputMismatchException;
+
+/**
+ * Order in which to multiply a chain of matrices ABC...Z.
+ * <p>
+ * The product of a chain is the same however it is parenthesized, but the cost is not:
+ * for the visualizer's (From Origin)*(Rotate)*(To Origin)*(data), multiplying right to left
+ * makes three passes over the 3 by N data, while composing the 3x3 matrices first makes one.
+ * The plan is found with the classic matrix-chain dynamic program over the dimensions,
+ * in O(k^3) time for a chain of k matrices.
+ */
+public final class ProductPlan {
+    /** Matrix i is dims[i] by dims[i + 1] */
+    private final int[] dims;
+    /** split[i][j] is the index after which the chain i..j is cut in two */
+    private final int[][] split;
+    /** Multiply-adds needed, per sub-chain */
+    private final long[][] cost;
+
+    private ProductPlan(int[] dims) {
+        this.dims = dims;
+        int k = dims.length - 1;
+        split = new int[k][k];
+        cost = new long[k][k];
+        for (int length = 2; length <= k; length++) {
+            for (int i = 0; i + length - 1 < k; i++) {
+                int j = i + length - 1;
+                cost[i][j] = Long.MAX_VALUE;
+                for (int s = i; s < j; s++) {
+                    long c = cost[i][s] + cost[s + 1][j] + (long) dims[i] * dims[s + 1] * dims[j + 1];
+                    if (c < cost[i][j]) {
+                        cost[i][j] = c;
+                        split[i][j] = s;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Plans the product of a chain of matrices.
+     *
+     * @param matrices matrices to be multiplied, separated by commas
+     * @return cheapest order of multiplication
+     */
+    public static ProductPlan of(Matrix... matrices) {
+        if (matrices.length == 0) {
+            throw new InputMismatchException("Attempted to multiply an empty list of matrices.");
+        }
+        int[] dims = new int[matrices.length + 1];
+        dims[0] = matrices[0].m;
+        for (int i = 0; i < matrices.length; i++) {
+            if (matrices[i].m != dims[i]) {
+                throw new InputMismatchException("Dimension mismatch. Attempted to multiply matrices of improper size.");
+            }
+            dims[i + 1] = matrices[i].n;
+        }
+        return new ProductPlan(dims);
+    }
+
+    /**
+     * Multiplies the chain in the planned order.
+     *
+     * @param matrices the same matrices the plan was made for
+     * @return product ABC...Z
+     */
+    public Matrix execute(Matrix... matrices) {
+        if (matrices.length != dims.length - 1) {
+            throw new InputMismatchException("Plan was made for a chain of " + (dims.length - 1) +
+                    " matrices. Provided: " + matrices.length);
+        }
+        for (int i = 0; i < matrices.length; i++) {
+            if (matrices[i].m != dims[i] || matrices[i].n != dims[i + 1]) {
+                throw new InputMismatchException("Matrix " + i + " doesn't have the size the plan was made for. " +
+                        "Expected: " + dims[i] + " by " + dims[i + 1] + "  Provided: " + matrices[i].m + " by " + matrices[i].n);
+            }
+        }
+        if (matrices.length == 1) {
+            return new Matrix(matrices[0]);
+        }
+        return execute(matrices, 0, matrices.length - 1);
+    }
+
+    private Matrix execute(Matrix[] matrices, int i, int j) {
+        if (i == j) {
+            return matrices[i];
+        }
+        int s = split[i][j];
+        return Matrix.product(execute(matrices, i, s), execute(matrices, s + 1, j));
+    }
+
+    /**
+     * @return estimated floating point operations of the planned product,
+     *         counting a multiply-add as two
+     */
+    public long getFlops() {
+        return 2 * cost[0][dims.length - 2];
+    }
+
+    /**
+     * Estimated cost of multiplying strictly right to left, the way the chain
+     * would be evaluated without a plan. Useful to see what the plan saves.
+     *
+     * @return floating point operations, counting a multiply-add as two
+     */
+    public long getRightToLeftFlops() {
+        int k = dims.length - 1;
+        long multiplyAdds = 0;
+        for (int i = k - 2; i >= 0; i--) {
+            multiplyAdds += (long) dims[i] * dims[i + 1] * dims[k];
+        }
+        return 2 * multiplyAdds;
+    }
+
+    /**
+     * Shows the chosen parenthesization, naming the matrices by their
+     * position in the chain, for example <code>((M0 M1) M2) M3</code>.
+     *
+     * @return text version of the plan
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        int k = dims.length - 1;
+        if (k == 1) {
+            return "M0";
+        }
+        int s = split[0][k - 1];
+        append(result, 0, s);
+        result.append(' ');
+        append(result, s + 1, k - 1);
+        return result.toString();
+    }
+
+    private void append(StringBuilder result, int i, int j) {
+        if (i == j) {
+            result.append('M').append(i);
+            return;
+        }
+        int s = split[i][j];
+        result.append('(');
+        append(result, i, s);
+        result.append(' ');
+        append(result, s + 1, j);
+        result.append(')');
+    }
+}
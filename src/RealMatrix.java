@@ -0,0 +1,60 @@
+/**
+ * Common view of the dense matrices, whatever precision they store their entries in.
+ * Entries are read and written as doubles; a float matrix rounds on write.
+ * <p>
+ * Besides moving data between precisions, such as in {@link MixedPrecisionSolver},
+ * it covers the operations that read the same in either precision: scaling, row reduction,
+ * sums and norms, and the transpose view. Operations between two matrices take the concrete
+ * type, so that both operands are in the same precision.
+ */
+public interface RealMatrix {
+    int getNumberOfRows();
+
+    int getNumberOfColumns();
+
+    double getDouble(int row, int column);
+
+    void setDouble(int row, int column, double value);
+
+    /**
+     * Multiplies every entry by a scalar, in the precision of the matrix.
+     *
+     * @param k the scalar to be multiplied by
+     */
+    void scale(double k);
+
+    /**
+     * Brings the matrix to an echelon form in place.
+     */
+    void to_echelon();
+
+    /**
+     * Row reduces the matrix in place.
+     */
+    void reduce();
+
+    /**
+     * @return sum of all the entries
+     */
+    double sum();
+
+    /**
+     * @return square root of the sum of the squares of the entries
+     */
+    double normFrobenius();
+
+    /**
+     * @return largest absolute column sum
+     */
+    double norm1();
+
+    /**
+     * @return largest absolute row sum
+     */
+    double normInf();
+
+    /**
+     * @return transpose of this matrix, a view whose writes change this matrix
+     */
+    RealMatrix transpose();
+}
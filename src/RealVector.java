@@ -0,0 +1,11 @@
+/**
+ * Common view of the vectors, whatever precision they store their entries in.
+ * Entries are read and written as doubles; a float vector rounds on write.
+ */
+public interface RealVector {
+    int getLength();
+
+    double getDouble(int index);
+
+    void setDouble(int index, double value);
+}
@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+
+/**
+ * Background thread that applies edits to a scene and renders it, so that the
+ * thread posting the edits, usually the Swing event dispatch thread, never waits on either.
+ * <p>
+ * Edits are queued and applied in the order they were posted, always on the loop's thread,
+ * which is the only one that touches the scene while the loop runs. Once the queue is drained
+ * a single frame is rendered. Edits that arrive while a frame is being rendered are applied
+ * together before the next one, so frames for intermediate states are never rendered,
+ * and a burst of mouse events costs one frame instead of one per event.
+ * <p>
+ * Edits posted while the loop is stopped wait for the next {@link #start()}.
+ * An edit or frame that throws is reported to the thread's uncaught exception handler,
+ * and the loop goes on with the next one.
+ */
+final class RenderLoop {
+    private final String name;
+    private final Runnable render;
+
+    private final Object lock = new Object();
+    /** Edits posted since the last drain, guarded by lock */
+    private ArrayList<Runnable> pending = new ArrayList<>();
+    /** Reused as the next pending list, only touched by the loop's thread */
+    private ArrayList<Runnable> draining = new ArrayList<>();
+    /** Running thread, null when stopped; guarded by lock */
+    private Thread thread;
+
+    /**
+     * Creates a stopped loop.
+     *
+     * @param name   name of the thread
+     * @param render renders one frame of the scene as it is after the applied edits
+     */
+    RenderLoop(String name, Runnable render) {
+        this.name = name;
+        this.render = render;
+    }
+
+    /**
+     * Starts the loop's thread, which applies the edits queued so far and renders a frame.
+     * Does nothing if the loop is running.
+     */
+    void start() {
+        synchronized (lock) {
+            if (thread != null) return;
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+            // first frame, even with nothing queued
+            pending.add(() -> { });
+        }
+    }
+
+    /**
+     * Stops the loop and waits for the frame being rendered, if any.
+     * Edits not applied yet stay queued. Afterwards the scene may be touched by the calling thread
+     * until the loop is started again.
+     */
+    void stop() {
+        Thread stopping;
+        synchronized (lock) {
+            stopping = thread;
+            if (stopping == null) return;
+            thread = null;
+            lock.notifyAll();
+        }
+        boolean interrupted = false;
+        while (stopping.isAlive()) {
+            try {
+                stopping.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues an edit of the scene, followed by a new frame. Never blocks on rendering.
+     *
+     * @param edit change to the scene, run on the loop's thread
+     */
+    void post(Runnable edit) {
+        synchronized (lock) {
+            pending.add(edit);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Asks for a new frame without changing the scene.
+     */
+    void requestFrame() {
+        post(() -> { });
+    }
+
+    private void run() {
+        Thread self = Thread.currentThread();
+        while (true) {
+            ArrayList<Runnable> edits;
+            synchronized (lock) {
+                while (thread == self && pending.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // only stop() ends the loop
+                    }
+                }
+                if (thread != self) return;
+                edits = pending;
+                pending = draining;
+            }
+            for (Runnable edit : edits) {
+                runReporting(edit);
+            }
+            edits.clear();
+            draining = edits;
+            runReporting(render);
+        }
+    }
+
+    /**
+     * Runs a task, handing anything it throws, errors included, to the uncaught exception
+     * handler instead of letting it end the loop and freeze the display.
+     */
+    private static void runReporting(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, t);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Portable kernels written as plain loops, left to the JIT's auto-vectorizer.
+ */
+final class ScalarKernels implements FloatKernels {
+    public float dot(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        float result = 0;
+        for (int i = 0; i < length; i++) {
+            result += x[xOffset + i] * y[yOffset + i];
+        }
+        return result;
+    }
+
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    public void add(float[] x, int xOffset, float[] y, int yOffset, float[] r, int rOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            r[rOffset + i] = x[xOffset + i] + y[yOffset + i];
+        }
+    }
+
+    public void subtract(float[] x, int xOffset, float[] y, int yOffset, float[] r, int rOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            r[rOffset + i] = x[xOffset + i] - y[yOffset + i];
+        }
+    }
+
+    public void scale(float k, float[] x, int xOffset, float[] r, int rOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            r[rOffset + i] = k * x[xOffset + i];
+        }
+    }
+
+    public String name() { return Kernels.SCALAR; }
+}
@@ -0,0 +1,89 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels written with the JDK Vector API, using the widest vector shape
+ * the hardware prefers. Needs the <code>jdk.incubator.vector</code> module
+ * at runtime; {@link Kernels} falls back to {@link ScalarKernels} without it.
+ */
+final class SimdKernels implements FloatKernels {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    public float dot(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        // four independent accumulators hide the latency of the fused multiply-adds
+        FloatVector acc0 = FloatVector.zero(SPECIES), acc1 = acc0, acc2 = acc0, acc3 = acc0;
+        int i = 0;
+        for (int bound = length - 4 * LANES; i <= bound; i += 4 * LANES) {
+            acc0 = FloatVector.fromArray(SPECIES, x, xOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, y, yOffset + i), acc0);
+            acc1 = FloatVector.fromArray(SPECIES, x, xOffset + i + LANES)
+                    .fma(FloatVector.fromArray(SPECIES, y, yOffset + i + LANES), acc1);
+            acc2 = FloatVector.fromArray(SPECIES, x, xOffset + i + 2 * LANES)
+                    .fma(FloatVector.fromArray(SPECIES, y, yOffset + i + 2 * LANES), acc2);
+            acc3 = FloatVector.fromArray(SPECIES, x, xOffset + i + 3 * LANES)
+                    .fma(FloatVector.fromArray(SPECIES, y, yOffset + i + 3 * LANES), acc3);
+        }
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            acc0 = FloatVector.fromArray(SPECIES, x, xOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, y, yOffset + i), acc0);
+        }
+        float result = acc0.add(acc1).add(acc2.add(acc3)).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += x[xOffset + i] * y[yOffset + i];
+        }
+        return result;
+    }
+
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        FloatVector a = FloatVector.broadcast(SPECIES, alpha);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, x, xOffset + i)
+                    .fma(a, FloatVector.fromArray(SPECIES, y, yOffset + i))
+                    .intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    public void add(float[] x, int xOffset, float[] y, int yOffset, float[] r, int rOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, x, xOffset + i)
+                    .add(FloatVector.fromArray(SPECIES, y, yOffset + i))
+                    .intoArray(r, rOffset + i);
+        }
+        for (; i < length; i++) {
+            r[rOffset + i] = x[xOffset + i] + y[yOffset + i];
+        }
+    }
+
+    public void subtract(float[] x, int xOffset, float[] y, int yOffset, float[] r, int rOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, x, xOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, y, yOffset + i))
+                    .intoArray(r, rOffset + i);
+        }
+        for (; i < length; i++) {
+            r[rOffset + i] = x[xOffset + i] - y[yOffset + i];
+        }
+    }
+
+    public void scale(float k, float[] x, int xOffset, float[] r, int rOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, x, xOffset + i)
+                    .mul(k)
+                    .intoArray(r, rOffset + i);
+        }
+        for (; i < length; i++) {
+            r[rOffset + i] = k * x[xOffset + i];
+        }
+    }
+
+    public String name() { return Kernels.SIMD; }
+}
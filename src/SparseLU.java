@@ -0,0 +1,467 @@
+import java.util.Arrays;
+import java.util.InputMismatchException;
+
+/**
+ * LU decomposition of a sparse square matrix, PAQ = LU, keeping L and U sparse.
+ * <p>
+ * The columns are first reordered by approximate minimum degree on the pattern of A + A<sup>T</sup>,
+ * which keeps the fill-in, the zeros that elimination turns into nonzeros, small.
+ * The factorization is then left-looking (Gilbert-Peierls): each column of L and U is
+ * found by a sparse triangular solve whose nonzero pattern is computed first by a
+ * depth-first search, so the work is proportional to the floating point operations
+ * and never to n<sup>2</sup>. Pivoting is partial with a threshold that prefers the
+ * diagonal, so that the fill-reducing order is only broken for stability.
+ */
+public final class SparseLU {
+    /** A diagonal pivot is kept if it is at least this fraction of the largest candidate */
+    static final float PIVOT_THRESHOLD = 0.1f;
+
+    private final int n;
+    /** Unit lower triangular factor, diagonal stored first in each column */
+    private final CscMatrix l;
+    /** Upper triangular factor, diagonal stored last in each column */
+    private final CscMatrix u;
+    /** Row i of A is row pinv[i] of PAQ */
+    private final int[] pinv;
+    /** Column k of AQ is column q[k] of A */
+    private final int[] q;
+
+    private SparseLU(int n, CscMatrix l, CscMatrix u, int[] pinv, int[] q) {
+        this.n = n;
+        this.l = l;
+        this.u = u;
+        this.pinv = pinv;
+        this.q = q;
+    }
+
+    /**
+     * Factors a sparse square matrix, reordered by minimum degree.
+     *
+     * @param a square matrix
+     * @return factorization of a
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public static SparseLU of(CscMatrix a) {
+        if (a.m != a.n) {
+            throw new InputMismatchException("LU decomposition requires a square matrix. Provided: " + a.m + " by " + a.n);
+        }
+        return factor(a, minimumDegree(a));
+    }
+
+    /**
+     * Left-looking factorization with threshold partial pivoting.
+     *
+     * @param q order in which to eliminate the columns of a
+     */
+    private static SparseLU factor(CscMatrix a, int[] q) {
+        final int n = a.n;
+        int capacity = 4 * a.getNonZeros() + n;
+        int[] lp = new int[n + 1], li = new int[capacity], up = new int[n + 1], ui = new int[capacity];
+        float[] lx = new float[capacity], ux = new float[capacity];
+        int[] pinv = new int[n];
+        Arrays.fill(pinv, -1);
+        float[] x = new float[n];
+        int[] pattern = new int[n], stack = new int[n], positions = new int[n], marks = new int[n];
+        int lnz = 0, unz = 0;
+
+        for (int k = 0; k < n; k++) {
+            lp[k] = lnz;
+            up[k] = unz;
+            if (lnz + n > li.length) {
+                int size = 2 * li.length + n;
+                li = Arrays.copyOf(li, size);
+                lx = Arrays.copyOf(lx, size);
+            }
+            if (unz + n > ui.length) {
+                int size = 2 * ui.length + n;
+                ui = Arrays.copyOf(ui, size);
+                ux = Arrays.copyOf(ux, size);
+            }
+            int col = q[k];
+
+            // x = L \ A(:, col), nonzero at pattern[top..n)
+            int top = reach(a, col, lp, li, pinv, pattern, stack, positions, marks, k + 1);
+            for (int p = top; p < n; p++) x[pattern[p]] = 0;
+            for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+                x[a.rowIndices[p]] = a.values[p];
+            }
+            for (int p = top; p < n; p++) {
+                int j = pattern[p], jj = pinv[j];
+                if (jj < 0) continue;
+                float xj = x[j];
+                for (int t = lp[jj] + 1; t < lp[jj + 1]; t++) {
+                    x[li[t]] -= lx[t] * xj;
+                }
+            }
+
+            // rows already pivotal go to U, the largest of the others is the pivot
+            int pivotRow = -1;
+            float largest = -1;
+            for (int p = top; p < n; p++) {
+                int i = pattern[p];
+                if (pinv[i] < 0) {
+                    float value = Math.abs(x[i]);
+                    if (value > largest) {
+                        largest = value;
+                        pivotRow = i;
+                    }
+                } else {
+                    ui[unz] = pinv[i];
+                    ux[unz++] = x[i];
+                }
+            }
+            if (pivotRow == -1 || largest <= 0) {
+                throw new ArithmeticException("Matrix is singular. No pivot found for column " + col + ".");
+            }
+            if (pinv[col] < 0 && Math.abs(x[col]) >= PIVOT_THRESHOLD * largest) {
+                pivotRow = col;
+            }
+            float pivot = x[pivotRow];
+            ui[unz] = k;
+            ux[unz++] = pivot;
+            pinv[pivotRow] = k;
+            li[lnz] = pivotRow;
+            lx[lnz++] = 1;
+            for (int p = top; p < n; p++) {
+                int i = pattern[p];
+                if (pinv[i] < 0) {
+                    li[lnz] = i;
+                    lx[lnz++] = x[i] / pivot;
+                }
+                x[i] = 0;
+            }
+        }
+        lp[n] = lnz;
+        up[n] = unz;
+        // rows of L were recorded before their pivot order was known
+        for (int p = 0; p < lnz; p++) li[p] = pinv[li[p]];
+        // the columns are in the order of the search; sorting them keeps the diagonal
+        // of L first and that of U last, since their other rows are below and above it
+        CscMatrix l = sorted(n, lp, li, lx);
+        CscMatrix u = sorted(n, up, ui, ux);
+        return new SparseLU(n, l, u, pinv, q);
+    }
+
+    /**
+     * Sorts the row indices within every column by transposing twice.
+     *
+     * @return n by n matrix with sorted columns
+     */
+    private static CscMatrix sorted(int n, int[] pointers, int[] indices, float[] entries) {
+        CscMatrix t = CscMatrix.transposeOf(n, n, pointers, indices, entries);
+        return CscMatrix.transposeOf(n, n, t.columnPointers, t.rowIndices, t.values);
+    }
+
+    /**
+     * Finds the nonzero pattern of L \ A(:, col) by depth-first search in the graph of L,
+     * from every nonzero row of the column. The pattern comes out in topological order,
+     * the order in which the triangular solve has to visit it.
+     *
+     * @param stamp value marking visited rows for this column, different for every call
+     * @return top, such that the pattern is in pattern[top..n)
+     */
+    private static int reach(CscMatrix a, int col, int[] lp, int[] li, int[] pinv,
+                             int[] pattern, int[] stack, int[] positions, int[] marks, int stamp) {
+        int n = a.n, top = n;
+        for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+            int start = a.rowIndices[p];
+            if (marks[start] == stamp) continue;
+            int head = 0;
+            stack[0] = start;
+            while (head >= 0) {
+                int j = stack[head], jj = pinv[j];
+                if (marks[j] != stamp) {
+                    marks[j] = stamp;
+                    positions[head] = jj < 0 ? 0 : lp[jj];
+                }
+                boolean done = true;
+                int end = jj < 0 ? 0 : lp[jj + 1];
+                for (int t = positions[head]; t < end; t++) {
+                    int i = li[t];
+                    if (marks[i] == stamp) continue;
+                    positions[head] = t;
+                    stack[++head] = i;
+                    done = false;
+                    break;
+                }
+                if (done) {
+                    head--;
+                    pattern[--top] = j;
+                }
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Approximate minimum degree ordering on the graph of A + A<sup>T</sup>.
+     * <p>
+     * Eliminating a vertex joins its neighbours into a clique, the fill its elimination causes.
+     * Instead of adding those edges, the clique is kept as a single "element": a list of its
+     * vertices that the neighbours point to. Elements that become part of a new one are absorbed,
+     * so the graph never takes more memory than A itself. Exact degrees would need unions of
+     * element lists; like AMD, the order uses an upper bound on the degree that only costs
+     * a pass over the neighbours of the eliminated vertex.
+     *
+     * @return elimination order of the columns
+     */
+    static int[] minimumDegree(CscMatrix a) {
+        final int n = a.n;
+        // variables adjacent in A + A^T, without the diagonal; duplicates don't matter
+        int[] varCount = new int[n];
+        for (int j = 0; j < n; j++) {
+            for (int p = a.columnPointers[j]; p < a.columnPointers[j + 1]; p++) {
+                int i = a.rowIndices[p];
+                if (i != j) {
+                    varCount[i]++;
+                    varCount[j]++;
+                }
+            }
+        }
+        int[][] vars = new int[n][];
+        for (int v = 0; v < n; v++) vars[v] = new int[varCount[v]];
+        Arrays.fill(varCount, 0);
+        for (int j = 0; j < n; j++) {
+            for (int p = a.columnPointers[j]; p < a.columnPointers[j + 1]; p++) {
+                int i = a.rowIndices[p];
+                if (i != j) {
+                    vars[i][varCount[i]++] = j;
+                    vars[j][varCount[j]++] = i;
+                }
+            }
+        }
+        int[] marks = new int[n];
+        for (int v = 0; v < n; v++) {
+            varCount[v] = distinct(vars[v], varCount[v], v, marks, v + 1);
+        }
+
+        // elements adjacent to each variable, and the variables of each element
+        int[][] elems = new int[n][];
+        int[] elemCount = new int[n];
+        int[][] members = new int[n][];
+        boolean[] eliminated = new boolean[n], absorbed = new boolean[n];
+
+        // vertices bucketed by degree in doubly linked lists
+        int[] degree = varCount.clone();
+        int[] head = new int[n], next = new int[n], previous = new int[n];
+        Arrays.fill(head, -1);
+        for (int v = 0; v < n; v++) link(v, degree[v], head, next, previous);
+        int minDegree = 0;
+
+        int[] order = new int[n];
+        int[] buffer = new int[n];
+        int[] w = new int[n], wStamp = new int[n];
+        int stamp = n + 1;
+        for (int k = 0; k < n; k++) {
+            while (head[minDegree] == -1) minDegree++;
+            int v = head[minDegree];
+            unlink(v, degree[v], head, next, previous);
+            order[k] = v;
+            eliminated[v] = true;
+
+            // the new element: neighbours of v, directly or through the elements it absorbs
+            stamp++;
+            int size = 0;
+            for (int j = 0; j < varCount[v]; j++) {
+                int u = vars[v][j];
+                if (!eliminated[u] && marks[u] != stamp) {
+                    marks[u] = stamp;
+                    buffer[size++] = u;
+                }
+            }
+            for (int j = 0; j < elemCount[v]; j++) {
+                int e = elems[v][j];
+                if (absorbed[e]) continue;
+                for (int u : members[e]) {
+                    if (!eliminated[u] && marks[u] != stamp) {
+                        marks[u] = stamp;
+                        buffer[size++] = u;
+                    }
+                }
+                absorbed[e] = true;
+                members[e] = null;
+            }
+            int[] element = Arrays.copyOf(buffer, size);
+            members[v] = element;
+            vars[v] = null;
+            elems[v] = null;
+
+            // w[e] = |e \ element| for the other elements next to the new one
+            for (int i : element) {
+                for (int j = 0; j < elemCount[i]; j++) {
+                    int e = elems[i][j];
+                    if (absorbed[e]) continue;
+                    if (wStamp[e] != k + 1) {
+                        wStamp[e] = k + 1;
+                        w[e] = members[e].length;
+                    }
+                    w[e]--;
+                }
+            }
+
+            for (int i : element) {
+                unlink(i, degree[i], head, next, previous);
+                // keep the live elements, dropping those inside the new one, and add the new one
+                int count = 0, external = 0;
+                for (int j = 0; j < elemCount[i]; j++) {
+                    int e = elems[i][j];
+                    if (absorbed[e]) continue;
+                    if (w[e] == 0) {
+                        absorbed[e] = true;
+                        members[e] = null;
+                        continue;
+                    }
+                    elems[i][count++] = e;
+                    external += w[e];
+                }
+                if (elems[i] == null || count == elems[i].length) {
+                    elems[i] = elems[i] == null ? new int[4] : Arrays.copyOf(elems[i], 2 * count);
+                }
+                elems[i][count++] = v;
+                elemCount[i] = count;
+                // variables reachable through the new element don't need their own edge
+                count = 0;
+                for (int j = 0; j < varCount[i]; j++) {
+                    int u = vars[i][j];
+                    if (!eliminated[u] && marks[u] != stamp) vars[i][count++] = u;
+                }
+                varCount[i] = count;
+
+                int d = Math.min(n - k - 1, Math.min(degree[i] + size - 1, count + size - 1 + external));
+                degree[i] = d;
+                link(i, d, head, next, previous);
+                minDegree = Math.min(minDegree, d);
+            }
+        }
+        return order;
+    }
+
+    private static void link(int v, int d, int[] head, int[] next, int[] previous) {
+        next[v] = head[d];
+        previous[v] = -1;
+        if (head[d] != -1) previous[head[d]] = v;
+        head[d] = v;
+    }
+
+    private static void unlink(int v, int d, int[] head, int[] next, int[] previous) {
+        if (previous[v] != -1) next[previous[v]] = next[v];
+        else head[d] = next[v];
+        if (next[v] != -1) previous[next[v]] = previous[v];
+    }
+
+    /**
+     * Moves the distinct entries of list[0..length) other than self to its front.
+     *
+     * @return number of entries kept
+     */
+    private static int distinct(int[] list, int length, int self, int[] marks, int stamp) {
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            int x = list[i];
+            if (x != self && marks[x] != stamp) {
+                marks[x] = stamp;
+                list[size++] = x;
+            }
+        }
+        return size;
+    }
+
+    // ================== SOLVE BEGIN ==================
+
+    /**
+     * Solves Ax = b.
+     *
+     * @param b right-hand side
+     * @return x
+     */
+    public Vector solve(Vector b) {
+        if (b.length != n) {
+            throw new InputMismatchException("Dimension mismatch. Expected a right-hand side of length " + n +
+                    ". Provided: " + b.length);
+        }
+        float[] work = new float[n];
+        Vector x = new Vector(n);
+        for (int i = 0; i < n; i++) work[pinv[i]] = b.getEntry(i);
+        substitute(work);
+        for (int k = 0; k < n; k++) x.entries[q[k]] = work[k];
+        return x;
+    }
+
+    /**
+     * Solves AX = B for every column of B, splitting the columns across threads.
+     *
+     * @param b right-hand sides, one per column
+     * @return X
+     */
+    public Matrix solve(Matrix b) {
+        if (b.m != n) {
+            throw new InputMismatchException("Dimension mismatch. Expected right-hand sides with " + n +
+                    " rows. Provided: " + b.m);
+        }
+        Matrix x = new Matrix(n, b.n);
+        Parallel.forColumns(b.n, 2L * getNonZeros(), (from, to) -> {
+            float[] work = new float[n];
+            for (int col = from; col < to; col++) {
+                for (int i = 0; i < n; i++) work[pinv[i]] = b.getEntry(i, col);
+                substitute(work);
+                for (int k = 0; k < n; k++) x.values[col * n + q[k]] = work[k];
+            }
+        });
+        return x;
+    }
+
+    /**
+     * Overwrites Pb with the solution of LUy = Pb, column by column through the sparse factors.
+     */
+    private void substitute(float[] x) {
+        for (int j = 0; j < n; j++) {
+            float xj = x[j];
+            if (xj == 0) continue;
+            for (int p = l.columnPointers[j] + 1; p < l.columnPointers[j + 1]; p++) {
+                x[l.rowIndices[p]] -= l.values[p] * xj;
+            }
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            int last = u.columnPointers[j + 1] - 1;
+            float xj = x[j] /= u.values[last];
+            if (xj == 0) continue;
+            for (int p = u.columnPointers[j]; p < last; p++) {
+                x[u.rowIndices[p]] -= u.values[p] * xj;
+            }
+        }
+    }
+
+    // ================== SOLVE END ==================
+
+
+    /**
+     * @return unit lower triangular factor
+     */
+    public CscMatrix getL() { return l; }
+
+    /**
+     * @return upper triangular factor
+     */
+    public CscMatrix getU() { return u; }
+
+    /**
+     * @return row i of PAQ is row <code>getRowPermutation()[i]</code> of A
+     */
+    public int[] getRowPermutation() {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) p[pinv[i]] = i;
+        return p;
+    }
+
+    /**
+     * @return column k of AQ is column <code>getColumnPermutation()[k]</code> of A
+     */
+    public int[] getColumnPermutation() { return q.clone(); }
+
+    /**
+     * @return entries stored in L and U together, a measure of the fill-in
+     */
+    public int getNonZeros() { return l.getNonZeros() + u.getNonZeros(); }
+
+    public int getSize() { return n; }
+}
@@ -0,0 +1,284 @@
+import java.util.InputMismatchException;
+
+/**
+ * Count, mean, variance, minimum and maximum of every row or every column
+ * of a matrix, gathered in one streaming pass.
+ * <p>
+ * Entries are accumulated in double precision relative to a shift, the first entry
+ * of each chunk, so large offsets such as screen coordinates don't cancel out the variance.
+ * Within a chunk the sums are compensated (Kahan), so their error doesn't grow with the
+ * length of the chunk. Chunks are then merged pairwise with the update of Chan, Golub and LeVeque,
+ * so the error of the mean and variance grows with the log of the number of chunks rather than with N.
+ * Chunks are fixed by the shape of the matrix, so results are the same for any number of threads.
+ */
+public final class Statistics {
+    /** Entries per chunk of a row-wise pass */
+    private static final int CHUNK = 1 << 14;
+    /** Most chunks in a row-wise pass, bounding the memory for partial results */
+    private static final int MAX_CHUNKS = 64;
+
+    /** Number of entries summarized for every line */
+    private final long count;
+    private final double[] mean;
+    /** Sum of squared deviations from the mean */
+    private final double[] m2;
+    private final float[] min;
+    private final float[] max;
+
+    private Statistics(long count, double[] mean, double[] m2, float[] min, float[] max) {
+        this.count = count;
+        this.mean = mean;
+        this.m2 = m2;
+        this.min = min;
+        this.max = max;
+    }
+
+    // ================== GATHERING BEGIN ==================
+
+    /**
+     * Summarizes every row across the columns, e.g. the bounding box and centroid
+     * of a 3 by N matrix of points. Split across threads by chunks of columns.
+     *
+     * @param a matrix to summarize
+     * @return statistics of the m rows, each over n entries
+     */
+    public static Statistics ofRows(Matrix a) {
+        final int m = a.m, n = a.n;
+        int columnsPerChunk = Math.max(Math.max(1, CHUNK / m), (n + MAX_CHUNKS - 1) / MAX_CHUNKS);
+        int chunks = (n + columnsPerChunk - 1) / columnsPerChunk;
+        Statistics[] partial = new Statistics[chunks];
+        Parallel.forColumns(chunks, (long) columnsPerChunk * m, (from, to) -> {
+            for (int chunk = from; chunk < to; chunk++) {
+                int first = chunk * columnsPerChunk, last = Math.min(n, first + columnsPerChunk);
+                double[] shift = new double[m], s1 = new double[m], s2 = new double[m];
+                // low order bits lost by s1 and s2, fed back into the next addition
+                double[] c1 = new double[m], c2 = new double[m];
+                float[] lo = new float[m], hi = new float[m];
+                for (int row = 0; row < m; row++) {
+                    float x = a.getEntry(row, first);
+                    shift[row] = x;
+                    lo[row] = x;
+                    hi[row] = x;
+                }
+                for (int col = first; col < last; col++) {
+                    int c = a.index(0, col);
+                    for (int row = 0; row < m; row++, c += a.rowStride) {
+                        float x = a.values != null ? a.values[c] : a.storage.get(c);
+                        double d = x - shift[row];
+                        double y1 = d - c1[row], t1 = s1[row] + y1;
+                        c1[row] = (t1 - s1[row]) - y1;
+                        s1[row] = t1;
+                        double y2 = d * d - c2[row], t2 = s2[row] + y2;
+                        c2[row] = (t2 - s2[row]) - y2;
+                        s2[row] = t2;
+                        lo[row] = Math.min(lo[row], x);
+                        hi[row] = Math.max(hi[row], x);
+                    }
+                }
+                partial[chunk] = shifted(last - first, shift, s1, s2, lo, hi);
+            }
+        });
+        return mergePairwise(partial);
+    }
+
+    /**
+     * Summarizes every column across the rows. Split across threads by columns.
+     *
+     * @param a matrix to summarize
+     * @return statistics of the n columns, each over m entries
+     */
+    public static Statistics ofColumns(Matrix a) {
+        final int m = a.m, n = a.n;
+        double[] shift = new double[n], s1 = new double[n], s2 = new double[n];
+        float[] lo = new float[n], hi = new float[n];
+        Parallel.forColumns(n, m, (from, to) -> {
+            for (int col = from; col < to; col++) {
+                int c = a.index(0, col);
+                float first = a.values != null ? a.values[c] : a.storage.get(c);
+                double sum = 0, squares = 0, sumError = 0, squaresError = 0;
+                float low = first, high = first;
+                for (int row = 0; row < m; row++, c += a.rowStride) {
+                    float x = a.values != null ? a.values[c] : a.storage.get(c);
+                    // in double, where the difference of two floats is exact
+                    double d = (double) x - first;
+                    double y1 = d - sumError, t1 = sum + y1;
+                    sumError = (t1 - sum) - y1;
+                    sum = t1;
+                    double y2 = d * d - squaresError, t2 = squares + y2;
+                    squaresError = (t2 - squares) - y2;
+                    squares = t2;
+                    low = Math.min(low, x);
+                    high = Math.max(high, x);
+                }
+                shift[col] = first;
+                s1[col] = sum;
+                s2[col] = squares;
+                lo[col] = low;
+                hi[col] = high;
+            }
+        });
+        return shifted(m, shift, s1, s2, lo, hi);
+    }
+
+    /**
+     * Summarizes all the entries together.
+     *
+     * @param a matrix to summarize
+     * @return statistics of a single line of m * n entries
+     */
+    public static Statistics of(Matrix a) {
+        return ofColumns(a).total();
+    }
+
+    /**
+     * Merges the statistics of all the lines into one, as if they were a single line.
+     *
+     * @return statistics of a single line holding every entry
+     */
+    public Statistics total() {
+        Statistics[] lines = new Statistics[mean.length];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = new Statistics(count, new double[]{mean[i]}, new double[]{m2[i]},
+                    new float[]{min[i]}, new float[]{max[i]});
+        }
+        return mergePairwise(lines);
+    }
+
+    /**
+     * Turns sums of deviations from a shift K into a mean and a sum of squared deviations:
+     * mean = K + s1 / c and M2 = s2 - s1<sup>2</sup> / c.
+     */
+    private static Statistics shifted(long count, double[] shift, double[] s1, double[] s2, float[] min, float[] max) {
+        for (int i = 0; i < shift.length; i++) {
+            double d = s1[i] / count;
+            s2[i] = Math.max(0, s2[i] - s1[i] * d);
+            shift[i] += d;
+        }
+        return new Statistics(count, shift, s2, min, max);
+    }
+
+    /**
+     * Merges partial results like a balanced tree, so that each one goes through log2(k) merges.
+     */
+    private static Statistics mergePairwise(Statistics[] partial) {
+        for (int step = 1; step < partial.length; step *= 2) {
+            for (int i = 0; i + step < partial.length; i += 2 * step) {
+                partial[i] = partial[i].merge(partial[i + step]);
+            }
+        }
+        return partial[0];
+    }
+
+    /**
+     * Statistics of the same lines over the entries of both.
+     */
+    private Statistics merge(Statistics that) {
+        long total = count + that.count;
+        double[] resultMean = new double[mean.length], resultM2 = new double[mean.length];
+        float[] resultMin = new float[mean.length], resultMax = new float[mean.length];
+        for (int i = 0; i < mean.length; i++) {
+            double delta = that.mean[i] - mean[i];
+            resultMean[i] = mean[i] + delta * that.count / total;
+            resultM2[i] = m2[i] + that.m2[i] + delta * delta * ((double) count * that.count / total);
+            resultMin[i] = Math.min(min[i], that.min[i]);
+            resultMax[i] = Math.max(max[i], that.max[i]);
+        }
+        return new Statistics(total, resultMean, resultM2, resultMin, resultMax);
+    }
+
+    // ================== GATHERING END ==================
+
+
+    // ================== GET BEGIN ==================
+
+    /**
+     * @return number of rows or columns summarized
+     */
+    public int getLength() { return mean.length; }
+
+    /**
+     * @return number of entries in every row or column
+     */
+    public long getCount() { return count; }
+
+    public double getSum(int index) { return mean[index] * count; }
+
+    public double getMean(int index) { return mean[index]; }
+
+    /**
+     * @return sample variance, dividing by count - 1; 0 for a single entry
+     */
+    public double getVariance(int index) { return count > 1 ? m2[index] / (count - 1) : 0; }
+
+    public double getStandardDeviation(int index) { return Math.sqrt(getVariance(index)); }
+
+    public float getMin(int index) { return min[index]; }
+
+    public float getMax(int index) { return max[index]; }
+
+    /**
+     * @return means of all the lines, e.g. the centroid of a matrix of points
+     */
+    public Vector getMeans() {
+        Vector result = new Vector(mean.length);
+        for (int i = 0; i < mean.length; i++) {
+            result.entries[i] = (float) mean[i];
+        }
+        return result;
+    }
+
+    // ================== GET END ==================
+
+
+    // ================== SECOND MOMENTS BEGIN ==================
+
+    /**
+     * Gram matrix A<sup>T</sup>A. Only the blocks on and above the diagonal are
+     * multiplied, about half the work of a full product, then mirrored below.
+     *
+     * @param a matrix whose columns are multiplied pairwise
+     * @return symmetric n by n matrix of the dot products of the columns of a
+     */
+    public static Matrix gram(Matrix a) {
+        final int n = a.n, block = 64;
+        Matrix result = new Matrix(n, n);
+        Matrix at = a.transpose();
+        int blocks = (n + block - 1) / block;
+        // block j costs about (j + 1) times a full block of the product
+        Parallel.forColumns(blocks, (long) a.m * block * n / 2, (from, to) -> {
+            for (int jb = from; jb < to; jb++) {
+                int j0 = jb * block, width = Math.min(block, n - j0), rows = j0 + width;
+                Gemm.multiply(at.subMatrix(0, 0, rows, a.m), a.columns(j0, j0 + width),
+                        result.subMatrix(0, j0, rows, width), 0, width);
+            }
+        });
+        for (int col = 0; col < n; col++) {
+            for (int row = col + 1; row < n; row++) {
+                result.values[col * n + row] = result.values[row * n + col];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sample covariance of the columns of a, with every row one observation:
+     * the Gram matrix of the centered data, divided by m - 1.
+     * For points stored one per column, pass the transpose view.
+     *
+     * @param a observations by variables
+     * @return symmetric n by n covariance matrix
+     */
+    public static Matrix covariance(Matrix a) {
+        if (a.m < 2) {
+            throw new InputMismatchException("Covariance needs at least two observations. Provided: " + a.m);
+        }
+        Statistics columns = ofColumns(a);
+        Matrix centered = new Matrix(a);
+        centered.vectorizeIndexed((row, column, value) -> (float) (value - columns.mean[column]), true);
+        Matrix result = gram(centered);
+        result.scale(1f / (a.m - 1));
+        return result;
+    }
+
+    // ================== SECOND MOMENTS END ==================
+}
@@ -2,10 +2,15 @@ import java.util.InputMismatchException;
 
 /**
  * This class is a representation of a vector in any number of dimensions.
+ * <p>
+ * Entry i is stored at <code>entries[offset + i * stride]</code>, which lets
+ * a vector be a zero-copy view of a column or a row of a {@link Matrix}.
  */
-public class Vector {
+public class Vector implements RealVector {
     protected final float[] entries;
     protected final int length;
+    protected final int offset;
+    protected final int stride;
 
     /**
      * Constructs an empty vector of specific length
@@ -16,6 +21,8 @@ public class Vector {
         if (length >= 0) {
             entries = new float[length];
             this.length = length;
+            offset = 0;
+            stride = 1;
         }
         else
             throw new InputMismatchException("Length of a vector has to be a non-negative number.");
@@ -29,10 +36,10 @@ public class Vector {
     public Vector(float... values) {
         length = values.length;
         entries = new float[length];
+        offset = 0;
+        stride = 1;
 
-        for (int i = 0; i < length; i++) {
-            entries[i] = values[i];
-        }
+        System.arraycopy(values, 0, entries, 0, length);
     }
 
     /**
@@ -42,12 +49,35 @@ public class Vector {
     public Vector(Vector v) {
         length = v.length;
         entries = new float[length];
+        offset = 0;
+        stride = 1;
 
         for (int i = 0; i < length; i++) {
-            entries[i] = v.entries[i];
+            entries[i] = v.getEntry(i);
         }
     }
 
+    /**
+     * Constructs a view over existing storage without copying it.
+     * Writes to the view go through to the array.
+     *
+     * @param entries backing array
+     * @param offset  index of the first entry in the array
+     * @param stride  distance between consecutive entries in the array
+     * @param length  number of entries in the vector
+     */
+    protected Vector(float[] entries, int offset, int stride, int length) {
+        if (length < 0)
+            throw new InputMismatchException("Length of a vector has to be a non-negative number.");
+        if (length > 0 && (offset < 0 || offset + (long) (length - 1) * stride >= entries.length))
+            throw new IndexOutOfBoundsException("View of length " + length + " at offset " + offset
+                    + " with stride " + stride + " doesn't fit in an array of length " + entries.length);
+        this.entries = entries;
+        this.offset = offset;
+        this.stride = stride;
+        this.length = length;
+    }
+
     /**
      * Componentwise vector addition
      *
@@ -55,14 +85,40 @@ public class Vector {
      */
     public void add(Vector that) {
         if (this.length == that.length) {
-            for (int i = 0; i < length; i++) {
-                this.entries[i] = this.entries[i] + that.entries[i];
+            float[] x = this.entries, y = that.entries;
+            if (stride == 1 && that.stride == 1) {
+                Kernels.get().add(x, offset, y, that.offset, x, offset, length);
+                return;
+            }
+            for (int i = 0, xi = offset, yi = that.offset; i < length; i++, xi += stride, yi += that.stride) {
+                x[xi] = x[xi] + y[yi];
             }
         } else
             throw new IllegalArgumentException("Dimension mismatch. Attempted to add vectors of different lengths:\n"
                     +this.length+" and "+that.length);
     }
 
+    /**
+     * Adds a multiple of another vector to this vector, y = y + alpha * x
+     *
+     * @param alpha scalar to multiply x by
+     * @param x     vector to be added
+     */
+    public void axpy(float alpha, Vector x) {
+        if (this.length == x.length) {
+            float[] y = this.entries, xs = x.entries;
+            if (stride == 1 && x.stride == 1) {
+                Kernels.get().axpy(alpha, xs, x.offset, y, offset, length);
+                return;
+            }
+            for (int i = 0, yi = offset, xi = x.offset; i < length; i++, yi += stride, xi += x.stride) {
+                y[yi] += alpha * xs[xi];
+            }
+        } else
+            throw new IllegalArgumentException("Dimension mismatch. Attempted to add vectors of different lengths:\n"
+                    +this.length+" and "+x.length);
+    }
+
     /**
      * Multiplies the vector by a nonzero scalar.
      *
@@ -70,11 +126,39 @@ public class Vector {
      * @return this vector scaled by k
      */
     public Vector scale(float k) {
-        Vector result = new Vector(length);
-        for (int i = 0; i < length; i++) {
-            result.entries[i] = this.entries[i] * k;
+        return scaleInto(k, new Vector(length));
+    }
+
+    /**
+     * Multiplies the vector by a scalar into an existing vector, without allocating.
+     *
+     * @param k   the scalar to be multiplied by
+     * @param dst destination, which may be this vector itself but not overlap it otherwise
+     * @return dst, holding this vector scaled by k
+     */
+    public Vector scaleInto(float k, Vector dst) {
+        if (this.length != dst.length)
+            throw new IllegalArgumentException("Dimension mismatch. Attempted to scale into a vector of different length:\n"
+                    +this.length+" and "+dst.length);
+        if (!(entries == dst.entries && offset == dst.offset && stride == dst.stride) && overlaps(this, dst))
+            throw new IllegalArgumentException("Destination partially overlaps the vector being scaled.");
+        float[] r = dst.entries;
+        if (stride == 1 && dst.stride == 1) {
+            Kernels.get().scale(k, entries, offset, r, dst.offset, length);
+            return dst;
         }
-        return result;
+        for (int i = 0, xi = offset, ri = dst.offset; i < length; i++, xi += stride, ri += dst.stride) {
+            r[ri] = this.entries[xi] * k;
+        }
+        return dst;
+    }
+
+    /**
+     * Whether two vectors may share entries: same array and overlapping spans.
+     */
+    static boolean overlaps(Vector a, Vector b) {
+        if (a.entries != b.entries || a.length == 0 || b.length == 0) return false;
+        return a.offset <= b.offset + (b.length - 1) * b.stride && b.offset <= a.offset + (a.length - 1) * a.stride;
     }
 
     /**
@@ -84,11 +168,7 @@ public class Vector {
      */
     public float dot(Vector that) {
         if (this.length == that.length) {
-            float result = 0;
-            for (int i = 0; i < length; i++) {
-                result += this.entries[i] * that.entries[i];
-            }
-            return result;
+            return dot(this, that);
         } else
             throw new IllegalArgumentException("Dimension mismatch. Attempted perform dot product on vectors of different lengths:\n"
                     +this.length+" and "+that.length);
@@ -102,9 +182,13 @@ public class Vector {
      */
     public static float dot(Vector a, Vector b) {
         if (a.length == b.length) {
+            float[] x = a.entries, y = b.entries;
+            if (a.stride == 1 && b.stride == 1) {
+                return Kernels.get().dot(x, a.offset, y, b.offset, a.length);
+            }
             float result = 0;
-            for (int i = 0; i < a.length; i++) {
-                result += a.entries[i] * b.entries[i];
+            for (int i = 0, xi = a.offset, yi = b.offset; i < a.length; i++, xi += a.stride, yi += b.stride) {
+                result += x[xi] * y[yi];
             }
             return result;
         } else
@@ -113,14 +197,53 @@ public class Vector {
     }
 
     public float getEntry(int index) {
-        return entries[index];
+        checkIndex(index);
+        return entries[offset + index * stride];
+    }
+
+    public void setEntry(int index, float value) {
+        checkIndex(index);
+        entries[offset + index * stride] = value;
+    }
+
+    /**
+     * A view shares its array with the rest of the matrix, so the array bounds don't catch a bad index.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of a vector of length " + length + ".");
+        }
     }
 
+    public double getDouble(int index) { return getEntry(index); }
+
+    public void setDouble(int index, double value) { setEntry(index, (float) value); }
+
+    public int getLength() { return length; }
+
     /**
-     * @return entries of this vector in an array form
+     * Whether the entries of this vector are packed at the start of its array,
+     * so that the array itself can be handed out.
+     *
+     * @return true if the vector owns its whole array
+     */
+    protected boolean isCompact() {
+        return offset == 0 && stride == 1 && entries.length == length;
+    }
+
+    /**
+     * @return entries of this vector in an array form.
+     *         A view over a matrix returns a copy of its entries.
      */
     public float[] toFloatArray() {
-        return entries;
+        if (isCompact()) {
+            return entries;
+        }
+        float[] result = new float[length];
+        for (int i = 0, xi = offset; i < length; i++, xi += stride) {
+            result[i] = entries[xi];
+        }
+        return result;
     }
 
     /**
@@ -131,8 +254,8 @@ public class Vector {
      */
     public String toString() {
         StringBuilder result = new StringBuilder();
-        for (int i = 0; i < entries.length; i++) {
-            result.append("").append(entries[i]).append("\n");
+        for (int i = 0; i < length; i++) {
+            result.append("").append(getEntry(i)).append("\n");
         }
         return result.toString();
     }
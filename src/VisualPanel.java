@@ -3,10 +3,17 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Random;
 
 /**
  * This class displays various matrix operations and handles user input.
+ * <p>
+ * Input events only post edits to a {@link RenderLoop}, which applies them to the points
+ * and renders frames on its own thread, so the event dispatch thread never waits on
+ * either however many points there are. Frames are double buffered: the loop draws
+ * into the back renderer while the front one is on the screen, then swaps them.
  */
 public class VisualPanel extends JPanel implements MouseListener, MouseMotionListener, MouseWheelListener {
     private final int width, height, xOffset, yOffset;
@@ -14,9 +21,80 @@ public class VisualPanel extends JPanel implements MouseListener, MouseMotionLis
     private final float SCALING_FACTOR = 0.1f, ROTATION_AMOUNT = 5;
     private boolean resizePointsWithZoom;
 
-    private float mouseX, mouseY, previousMouseX, previousMouseY, pointRadius;
+    private float mouseX, mouseY, previousMouseX, previousMouseY;
 
-    private Matrix data, transposeToOrigin, transposeFromOrigin;
+    // corners of the selection box being dragged with the right button, in panel coordinates
+    private int boxStartX, boxStartY, boxEndX, boxEndY;
+    private boolean selectingBox;
+
+    // color of selected points and of the selection box
+    private static final Color SELECTION_COLOR = new Color(0x1E64FF);
+    // extra distance at which a click still picks a point, in pixels
+    private static final float PICK_SLACK = 3;
+
+    /**
+     * Default for {@link #setDensityThreshold}: past one disk per pixel on average,
+     * the points cover each other and individual ones can't be told apart.
+     */
+    public static final float DEFAULT_DENSITY_THRESHOLD = 1;
+
+    // average number of disks covering a pixel above which a density map is drawn instead
+    private volatile float densityThreshold = DEFAULT_DENSITY_THRESHOLD;
+
+    /**
+     * Once the accumulated transform scales areas by more than this factor,
+     * or less than its inverse, it is baked into the points.
+     * Past that, mapping clicks back into model space loses too much precision.
+     */
+    private static final float BAKE_THRESHOLD = 10000;
+
+    // the scene: only touched by the render loop's thread while the loop runs, which is while the panel is displayed
+
+    // every column is a point in homogeneous coordinates, in model space
+    private GrowableMatrix data;
+
+    // transforms from model space to the screen, accumulated since the last bake
+    private Affine2D model;
+
+    private float pointRadius;
+
+    // finds the points on the screen and under the cursor, in model space so that it survives transforms
+    private PointIndex index;
+
+    // indices of the selected points
+    private int[] selection = new int[0];
+
+    /**
+     * Most points kept while loading a file. Past that, every other point is dropped,
+     * both from the points loaded so far and from the rest of the file.
+     */
+    private static final int MAX_LOADED_POINTS = 1 << 23;
+
+    // file being loaded, null if none
+    private PointLoader loader;
+
+    // only every loadStep-th point of the file is kept
+    private int loadStep;
+
+    // transforms baked into the points since the file started loading, applied to the points still coming
+    private Affine2D fileToModel = Affine2D.IDENTITY;
+
+    // whether the view was fitted to the first points of the file
+    private boolean loadFitted;
+
+    // screen coordinates of the points, and indices of the ones that may be on the screen, reused between frames
+    private float[] screenX = new float[0], screenY = new float[0];
+    private int[] visible = new int[0];
+
+    // rasterizes the next frame while the front one is on the screen
+    private PointRenderer back;
+
+    // last finished frame and whether there is one yet, guarded by frameLock
+    private PointRenderer front;
+    private boolean hasFrame;
+    private final Object frameLock = new Object();
+
+    private final RenderLoop loop;
 
     public VisualPanel(int width, int height) {
         super(null);
@@ -25,53 +103,257 @@ public class VisualPanel extends JPanel implements MouseListener, MouseMotionLis
         // Because the origin of the graphics object is in the top left corner by default
         xOffset = width / 2;
         yOffset = height / 2;
+        front = new PointRenderer(width, height);
+        back = new PointRenderer(width, height);
 
         // Start with an empty screen
         data = createRandomDataMatrix(30000);
+        index = new PointIndex(data);
+        model = Affine2D.IDENTITY;
 
         setupGUI();
+        loop = new RenderLoop("VisualPanel renderer", this::renderFrame);
+    }
+
+    /**
+     * Starts rendering once the panel is displayed.
+     */
+    public void addNotify() {
+        super.addNotify();
+        loop.start();
     }
 
-    private Matrix createRandomDataMatrix(int numberOfPoints) {
-        Matrix result = new Matrix(3, numberOfPoints);
+    /**
+     * Stops the render loop and any file being loaded, so that a panel which is no longer
+     * displayed doesn't keep a thread holding all its points.
+     */
+    public void removeNotify() {
+        loop.stop();
+        stopLoading();
+        super.removeNotify();
+    }
+
+    private GrowableMatrix createRandomDataMatrix(int numberOfPoints) {
+        GrowableMatrix result = new GrowableMatrix(3, numberOfPoints);
         Random r = new Random();
         for (int col = 0; col < numberOfPoints; col++) {
-            result.setColumn(col, new Vector(r.nextInt(width) - xOffset, r.nextInt(height) - yOffset, 1));
+            result.append(r.nextInt(width) - xOffset, r.nextInt(height) - yOffset, 1);
         }
         return result;
     }
 
-    private void updateTransposeToOriginMatrices() {
-        transposeToOrigin = Matrix.translationMatrix(-mouseX, -mouseY);
-        transposeFromOrigin = Matrix.translationMatrix(mouseX, mouseY);
+    /**
+     * Composes a transform with the accumulated one. O(1), regardless of the number of points.
+     *
+     * @param transform transform to be applied after the current one
+     */
+    private void applyTransform(Affine2D transform) {
+        model = model.then(transform);
+        float det = Math.abs(model.determinant());
+        if (det > BAKE_THRESHOLD || det < 1 / BAKE_THRESHOLD) {
+            bakeTransform();
+        }
+    }
+
+    /**
+     * Applies the accumulated transform to the points themselves.
+     */
+    private void bakeTransform() {
+        model.transform(data);
+        fileToModel = fileToModel.then(model);
+        model = Affine2D.IDENTITY;
+        index.invalidate();
+    }
+
+    /**
+     * Centers the points on the screen and scales them to fill most of it,
+     * from the bounding box of the points gathered in one pass over them.
+     */
+    private void zoomToFit(boolean resizePoints) {
+        if (data.n == 0) return;
+        bakeTransform();
+        Statistics rows = data.asMatrix().rowStatistics();
+        float minX = rows.getMin(0), maxX = rows.getMax(0), minY = rows.getMin(1), maxY = rows.getMax(1);
+        float k = 0.9f * Math.min(width / Math.max(maxX - minX, 1e-3f), height / Math.max(maxY - minY, 1e-3f));
+        if (data.n == 1) k = 1;
+        applyTransform(Affine2D.translation(-(minX + maxX) / 2, -(minY + maxY) / 2).then(Affine2D.scaling(k)));
+        if (resizePoints) pointRadius *= k;
+    }
+
+    /**
+     * Replaces the points with the ones in a file, shown as they are read. The file is read on a
+     * background thread, a bounded number of chunks ahead of the points appended to the display.
+     *
+     * @param path text file with an x and y per line, or a {@link MatrixFile}
+     * @throws IOException if the file can't be opened
+     * @see PointLoader
+     */
+    public void loadPoints(Path path) throws IOException {
+        PointLoader next = new PointLoader(path, () -> loop.post(this::drainLoader));
+        loop.post(() -> {
+            stopLoading();
+            loader = next;
+            loadStep = 1;
+            loadFitted = false;
+            data.clear();
+            index.invalidate();
+            selection = new int[0];
+            model = Affine2D.IDENTITY;
+            fileToModel = Affine2D.IDENTITY;
+            // chunks queued before this edit posted their drains too early
+            drainLoader();
+        });
+    }
+
+    /**
+     * Appends the points the loader has read since the last call. Runs on the render loop's thread.
+     */
+    private void drainLoader() {
+        if (loader == null) return;
+        int first = data.n;
+        if (loader.drainTo(data, loadStep) > 0) {
+            // the new points are in the coordinates of the file, the others had transforms baked in since
+            fileToModel.transform(data.values, 3 * first, 3, data.n - first);
+            while (data.n > MAX_LOADED_POINTS) {
+                data.keepEvery(2);
+                loadStep *= 2;
+                index.invalidate();
+                selection = new int[0];
+            }
+            if (!loadFitted) {
+                zoomToFit(false);
+                loadFitted = true;
+            }
+        }
+        if (loader.isDone()) {
+            IOException error = loader.getError();
+            loader = null;
+            if (error != null) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, error.getMessage(),
+                        "Loading stopped", JOptionPane.ERROR_MESSAGE));
+            }
+        }
+    }
+
+    private void stopLoading() {
+        if (loader != null) {
+            loader.close();
+            loader = null;
+        }
+    }
+
+    /**
+     * Renders the scene into the back buffer and swaps it to the front. Runs on the render loop's thread.
+     */
+    private void renderFrame() {
+        // the points are only transformed here, on their way to the screen
+        if (screenX.length < data.n) {
+            screenX = new float[data.getCapacity()];
+            screenY = new float[data.getCapacity()];
+            visible = new int[data.getCapacity()];
+        }
+        int count = data.n;
+        float margin = pointRadius + 1;
+        float left = -xOffset - margin, top = -yOffset - margin;
+        float right = width - xOffset + margin, bottom = height - yOffset + margin;
+        if (index.countCandidates(model, left, top, right, bottom) < count / 2) {
+            // zoomed in: only the points in cells on the screen are transformed and stamped
+            count = index.candidates(model, left, top, right, bottom, visible);
+            model.transform(data.values, 3, visible, screenX, screenY, count);
+        } else {
+            model.transform(data.values, 0, 3, screenX, screenY, 0, count);
+        }
+
+        // every column (point) in the data matrix is stamped into the image, which also clears it,
+        // unless there are so many on the screen that only their density can be seen;
+        // zooming in brings back the points, as fewer of them are left on the screen
+        if (count * Math.PI * pointRadius * pointRadius > (double) densityThreshold * width * height) {
+            back.renderDensity(screenX, screenY, count, xOffset, yOffset);
+        } else {
+            back.render(screenX, screenY, count, xOffset, yOffset, pointRadius);
+        }
+        if (selection.length > 0) {
+            model.transform(data.values, 3, selection, screenX, screenY, selection.length);
+            back.overlay(screenX, screenY, selection.length, xOffset, yOffset, pointRadius, SELECTION_COLOR.getRGB() & 0xFFFFFF);
+        }
+
+        // waits at most for a drawImage in progress, after which nothing reads the old front
+        synchronized (frameLock) {
+            PointRenderer finished = back;
+            back = front;
+            front = finished;
+            hasFrame = true;
+        }
+        repaint();
     }
 
     public void paintComponent(Graphics g) {
-        // clears the screen
-        g.setColor(Color.WHITE);
-        g.clearRect(0, 0, width, height);
+        synchronized (frameLock) {
+            if (hasFrame) {
+                g.drawImage(front.getImage(), 0, 0, null);
+            } else {
+                g.clearRect(0, 0, getWidth(), getHeight());
+            }
+        }
+        if (selectingBox) {
+            g.setColor(SELECTION_COLOR);
+            g.drawRect(Math.min(boxStartX, boxEndX), Math.min(boxStartY, boxEndY),
+                    Math.abs(boxEndX - boxStartX), Math.abs(boxEndY - boxStartY));
+        }
+    }
 
-        // for every column (point) in the data matrix
-        g.setColor(Color.BLACK);
-        for (float[] column : data.values) {
-            g.fillOval((int) ((column[0] + xOffset) - pointRadius), (int) ((column[1] + yOffset) - pointRadius),
-                    (int) (2 * pointRadius), (int) (2 * pointRadius));
+    /**
+     * Sets how crowded the screen has to be for the points to be drawn as a density map,
+     * whose cost is bounded by the size of the screen rather than the number of points.
+     *
+     * @param threshold average number of point disks covering each pixel,
+     *                  or {@link Float#POSITIVE_INFINITY} to always draw the points
+     */
+    public void setDensityThreshold(float threshold) {
+        if (!(threshold > 0)) {
+            throw new IllegalArgumentException("Density threshold has to be positive. Provided: " + threshold);
         }
+        densityThreshold = threshold;
+        loop.requestFrame();
     }
 
+    public float getDensityThreshold() { return densityThreshold; }
+
     public void mouseClicked(MouseEvent e) {
+        if (SwingUtilities.isRightMouseButton(e)) {
+            // selects the point under the cursor, or nothing
+            float x = e.getX() - xOffset, y = e.getY() - yOffset;
+            loop.post(() -> {
+                int picked = index.nearest(model, x, y, pointRadius + PICK_SLACK);
+                selection = picked < 0 ? new int[0] : new int[]{picked};
+            });
+            return;
+        }
         // adds a new point where the mouse was clicked
         // does not interfere with dragging the points
-        data = data.addColumn(new Vector(e.getX() - xOffset, e.getY() - yOffset, 1));
-        repaint();
+        // the point is stored in model space, so it goes through the inverse of the accumulated transform,
+        // which is taken on the loop's thread after every transform posted before the click
+        float[] point = {e.getX() - xOffset, e.getY() - yOffset, 1};
+        loop.post(() -> {
+            model.inverse().transform(point, 0, 3, 1);
+            data.append(point);
+        });
     }
 
     public void mousePressed(MouseEvent e) {
-
+        if (SwingUtilities.isRightMouseButton(e)) {
+            boxStartX = boxEndX = e.getX();
+            boxStartY = boxEndY = e.getY();
+        }
     }
 
     public void mouseReleased(MouseEvent e) {
-
+        if (selectingBox && SwingUtilities.isRightMouseButton(e)) {
+            // selects the points in the box dragged with the right button
+            selectingBox = false;
+            float x0 = boxStartX - xOffset, y0 = boxStartY - yOffset, x1 = boxEndX - xOffset, y1 = boxEndY - yOffset;
+            loop.post(() -> selection = index.select(model, x0, y0, x1, y1));
+        }
     }
 
     public void mouseEntered(MouseEvent e) {
@@ -89,8 +371,16 @@ public class VisualPanel extends JPanel implements MouseListener, MouseMotionLis
         float dy = mouseY - previousMouseY;
         previousMouseX = mouseX;
         previousMouseY = mouseY;
-        data = Matrix.product(Matrix.translationMatrix(dx, dy), data);
-        repaint();
+        if (SwingUtilities.isRightMouseButton(e)) {
+            // the box is drawn over the last frame, without rendering a new one
+            selectingBox = true;
+            boxEndX = e.getX();
+            boxEndY = e.getY();
+            repaint();
+            return;
+        }
+        Affine2D translation = Affine2D.translation(dx, dy);
+        loop.post(() -> applyTransform(translation));
     }
 
     public void mouseMoved(MouseEvent e) {
@@ -101,47 +391,44 @@ public class VisualPanel extends JPanel implements MouseListener, MouseMotionLis
     }
 
     public void mouseWheelMoved(MouseWheelEvent e) {
-        // matrices that transport the figure to the origin
-        // only need to be updated if zoom or rotation is to be performed
-        updateTransposeToOriginMatrices();
-
+        Affine2D transform;
+        float radiusFactor = 1;
         if (e.isShiftDown()) {
             // if wheel is scrolled down
             if (e.getWheelRotation() > 0) {
                 // rotate clockwise by performing
-                // (From Origin)*(Rotate)*(To Origin)*(data)
-                data = Matrix.product(transposeFromOrigin, Matrix.rotationMatrix(ROTATION_AMOUNT), transposeToOrigin,
-                        data);
+                // (From Origin)*(Rotate)*(To Origin)*(model)
+                transform = Affine2D.about(Affine2D.rotation(ROTATION_AMOUNT), mouseX, mouseY);
             } else {
                 // rotate counterclockwise by performing
-                // (From Origin)*(Rotate)*(To Origin)*(data)
-                data = Matrix.product(transposeFromOrigin, Matrix.rotationMatrix(-ROTATION_AMOUNT), transposeToOrigin,
-                        data);
+                // (From Origin)*(Rotate)*(To Origin)*(model)
+                transform = Affine2D.about(Affine2D.rotation(-ROTATION_AMOUNT), mouseX, mouseY);
             }
         } else {
             if (e.getWheelRotation() > 0) {
                 // scale down by performing
-                // (From Origin)*(Scale)*(To Origin)*(data)
-                data = Matrix.product(transposeFromOrigin, Matrix.scalingMatrix(1 - SCALING_FACTOR), transposeToOrigin,
-                        data);
-                // scale the radius of the points by the same factor, if necessary
-                if (resizePointsWithZoom)
-                    pointRadius *= 1 - SCALING_FACTOR;
-                else
-                    pointRadius = 6;
+                // (From Origin)*(Scale)*(To Origin)*(model)
+                transform = Affine2D.about(Affine2D.scaling(1 - SCALING_FACTOR), mouseX, mouseY);
+                radiusFactor = 1 - SCALING_FACTOR;
             } else {
                 // scale up by performing
-                // (From Origin)*(Scale)*(To Origin)*(data)
-                data = Matrix.product(transposeFromOrigin, Matrix.scalingMatrix(1 + SCALING_FACTOR), transposeToOrigin,
-                        data);
-                // scale the radius of the points by the same factor, if necessary
-                if (resizePointsWithZoom)
-                    pointRadius *= 1 + SCALING_FACTOR;
+                // (From Origin)*(Scale)*(To Origin)*(model)
+                transform = Affine2D.about(Affine2D.scaling(1 + SCALING_FACTOR), mouseX, mouseY);
+                radiusFactor = 1 + SCALING_FACTOR;
+            }
+        }
+        // scale the radius of the points by the same factor, if necessary
+        boolean resize = resizePointsWithZoom, zoom = !e.isShiftDown();
+        float factor = radiusFactor;
+        loop.post(() -> {
+            applyTransform(transform);
+            if (zoom) {
+                if (resize)
+                    pointRadius *= factor;
                 else
                     pointRadius = 6;
             }
-        }
-        repaint();
+        });
     }
 
     /**
@@ -189,24 +476,37 @@ public class VisualPanel extends JPanel implements MouseListener, MouseMotionLis
         rotationInfo.setLocation(0, scalingInfo.getY() + scalingInfo.getHeight());
         add(rotationInfo);
 
+        JLabel selectionInfo = new JLabel();
+        selectionInfo.setFont(selectionInfo.getFont().deriveFont(20.0f));
+        selectionInfo.setText("Select by clicking or dragging a box with RMB");
+        selectionInfo.setSize(selectionInfo.getPreferredSize());
+        selectionInfo.setLocation(0, rotationInfo.getY() + rotationInfo.getHeight());
+        add(selectionInfo);
+
         JButton clearPointsButton = new JButton("Clear Points");
         clearPointsButton.setSize(clearPointsButton.getPreferredSize());
-        clearPointsButton.setLocation(0, rotationInfo.getY() + rotationInfo.getHeight());
+        clearPointsButton.setLocation(0, selectionInfo.getY() + selectionInfo.getHeight());
         clearPointsButton.setFocusable(false);
-        clearPointsButton.addActionListener(e -> {
-            data = createRandomDataMatrix(0);
-            repaint();
-        });
+        clearPointsButton.addActionListener(e -> loop.post(() -> {
+            stopLoading();
+            data.clear();
+            index.invalidate();
+            selection = new int[0];
+            model = Affine2D.IDENTITY;
+        }));
         add(clearPointsButton);
 
         JButton randomPointsButton = new JButton("Fill With Random Points");
         randomPointsButton.setSize(randomPointsButton.getPreferredSize());
         randomPointsButton.setLocation(0, clearPointsButton.getY() + clearPointsButton.getHeight() + 5);
         randomPointsButton.setFocusable(false);
-        randomPointsButton.addActionListener(e -> {
+        randomPointsButton.addActionListener(e -> loop.post(() -> {
+            stopLoading();
             data = createRandomDataMatrix(100);
-            repaint();
-        });
+            index = new PointIndex(data);
+            selection = new int[0];
+            model = Affine2D.IDENTITY;
+        }));
         add(randomPointsButton);
 
         JCheckBox resizePointsWithZoomBox = new JCheckBox("Resize points with zoom");
@@ -216,9 +516,43 @@ public class VisualPanel extends JPanel implements MouseListener, MouseMotionLis
         resizePointsWithZoomBox.setFocusable(false);
         resizePointsWithZoomBox.addActionListener(e -> {
             resizePointsWithZoom = !resizePointsWithZoom;
-            pointRadius = 6;
-            repaint();
+            loop.post(() -> pointRadius = 6);
         });
         add(resizePointsWithZoomBox);
+
+        JButton zoomToFitButton = new JButton("Zoom To Fit");
+        zoomToFitButton.setSize(zoomToFitButton.getPreferredSize());
+        zoomToFitButton.setLocation(0, resizePointsWithZoomBox.getY() + resizePointsWithZoomBox.getHeight() + 5);
+        zoomToFitButton.setFocusable(false);
+        zoomToFitButton.addActionListener(e -> {
+            boolean resize = resizePointsWithZoom;
+            loop.post(() -> zoomToFit(resize));
+        });
+        add(zoomToFitButton);
+
+        JCheckBox densityBox = new JCheckBox("Show crowded points as density", true);
+        densityBox.setSize(densityBox.getPreferredSize());
+        densityBox.setLocation(0, zoomToFitButton.getY() + zoomToFitButton.getHeight() + 5);
+        densityBox.setBackground(Color.WHITE);
+        densityBox.setFocusable(false);
+        densityBox.addActionListener(e ->
+                setDensityThreshold(densityBox.isSelected() ? DEFAULT_DENSITY_THRESHOLD : Float.POSITIVE_INFINITY));
+        add(densityBox);
+
+        JButton loadPointsButton = new JButton("Load Points...");
+        loadPointsButton.setSize(loadPointsButton.getPreferredSize());
+        loadPointsButton.setLocation(0, densityBox.getY() + densityBox.getHeight() + 5);
+        loadPointsButton.setFocusable(false);
+        loadPointsButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    loadPoints(chooser.getSelectedFile().toPath());
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(this, ex.getMessage(), "Can't load points", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        add(loadPointsButton);
     }
 }
\ No newline at end of file
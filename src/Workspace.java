@@ -0,0 +1,112 @@
+import java.util.Arrays;
+
+/**
+ * Per-thread pool of scratch matrices and vectors, so that loops which need
+ * temporaries stop allocating once they are warmed up.
+ * <p>
+ * Scratch space is taken within a scope:
+ * <pre>
+ * try (Workspace w = Workspace.open()) {
+ *     Vector r = w.vector(n);
+ *     a.timesInto(x, r);
+ * }
+ * </pre>
+ * The k-th object taken in a scope is cached in slot k, and is handed out again by
+ * the next scope that asks for the same shape in that slot, which is what any loop
+ * doing the same work every time does. Scopes nest, each starting after the slots
+ * still held by the scopes around it.
+ * <p>
+ * Nothing taken from a workspace may be kept after its scope closes, and the
+ * entries are left over from earlier use, so they have to be overwritten first.
+ * The into-destination operations, such as {@link Matrix#productInto}, do that.
+ */
+public final class Workspace implements AutoCloseable {
+    private static final ThreadLocal<Workspace> local = ThreadLocal.withInitial(Workspace::new);
+
+    private Object[] slots = new Object[16];
+    /** First free slot */
+    private int top;
+    /** Value of top when each open scope started */
+    private int[] marks = new int[8];
+    private int depth;
+
+    private Workspace() {
+    }
+
+    /**
+     * Starts a scope in the workspace of the current thread.
+     * Has to be closed on the same thread, with try-with-resources.
+     *
+     * @return the workspace of the current thread
+     */
+    public static Workspace open() {
+        Workspace w = local.get();
+        if (w.depth == w.marks.length) {
+            w.marks = Arrays.copyOf(w.marks, 2 * w.depth);
+        }
+        w.marks[w.depth++] = w.top;
+        return w;
+    }
+
+    /**
+     * @param length number of entries
+     * @return scratch vector, contents unspecified
+     */
+    public Vector vector(int length) {
+        Object cached = next();
+        if (cached instanceof Vector && ((Vector) cached).length == length) {
+            return keep((Vector) cached);
+        }
+        return keep(new Vector(length));
+    }
+
+    /**
+     * @param length number of entries
+     * @return scratch double precision vector, contents unspecified
+     */
+    public DoubleVector doubleVector(int length) {
+        Object cached = next();
+        if (cached instanceof DoubleVector && ((DoubleVector) cached).length == length) {
+            return keep((DoubleVector) cached);
+        }
+        return keep(new DoubleVector(length));
+    }
+
+    /**
+     * @param m number of rows
+     * @param n number of columns
+     * @return packed scratch matrix on the heap, contents unspecified
+     */
+    public Matrix matrix(int m, int n) {
+        Object cached = next();
+        if (cached instanceof Matrix && ((Matrix) cached).m == m && ((Matrix) cached).n == n) {
+            return keep((Matrix) cached);
+        }
+        return keep(new Matrix(m, n));
+    }
+
+    /**
+     * Ends the innermost scope, giving its slots back.
+     */
+    public void close() {
+        if (depth == 0) {
+            throw new IllegalStateException("Workspace was closed more times than it was opened.");
+        }
+        top = marks[--depth];
+    }
+
+    private Object next() {
+        if (depth == 0) {
+            throw new IllegalStateException("Scratch space can only be taken within an open scope.");
+        }
+        if (top == slots.length) {
+            slots = Arrays.copyOf(slots, 2 * top);
+        }
+        return slots[top];
+    }
+
+    private <T> T keep(T value) {
+        slots[top++] = value;
+        return value;
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SparseLUTest {
+    private static final int N = 300;
+
+    /**
+     * Random sparse system: a few entries per column around a diagonal that is not always the largest,
+     * so that both the fill-reducing order and the threshold pivoting come into play.
+     */
+    private static CscMatrix randomSystem(Random random) {
+        int perColumn = 4, nnz = N * (perColumn + 1);
+        int[] rows = new int[nnz], columns = new int[nnz];
+        float[] entries = new float[nnz];
+        int k = 0;
+        for (int j = 0; j < N; j++) {
+            rows[k] = j;
+            columns[k] = j;
+            entries[k++] = 1 + random.nextFloat();
+            for (int t = 0; t < perColumn; t++) {
+                rows[k] = random.nextInt(N);
+                columns[k] = j;
+                entries[k++] = random.nextFloat() - 0.5f;
+            }
+        }
+        return CscMatrix.fromTriplets(N, N, rows, columns, entries);
+    }
+
+    @Test
+    void factorEntriesMatchTheirDenseForm() {
+        SparseLU lu = randomSystem(new Random(1)).lu();
+        for (CscMatrix factor : new CscMatrix[]{lu.getL(), lu.getU()}) {
+            Matrix dense = factor.toMatrix();
+            for (int i = 0; i < N; i++) {
+                for (int j = 0; j < N; j++) {
+                    assertEquals(dense.getEntry(i, j), factor.getEntry(i, j), "entry (" + i + ", " + j + ")");
+                }
+            }
+        }
+        for (int k = 0; k < N; k++) {
+            assertEquals(1, lu.getL().getEntry(k, k));
+        }
+    }
+
+    @Test
+    void solveLeavesASmallResidual() {
+        Random random = new Random(2);
+        CscMatrix a = randomSystem(random);
+        Vector b = new Vector(N);
+        for (int i = 0; i < N; i++) b.setEntry(i, random.nextFloat() - 0.5f);
+
+        Vector x = a.lu().solve(b);
+        Vector r = a.times(x);
+        float residual = 0, scale = 0;
+        for (int i = 0; i < N; i++) {
+            residual = Math.max(residual, Math.abs(r.getEntry(i) - b.getEntry(i)));
+            scale = Math.max(scale, Math.abs(b.getEntry(i)));
+        }
+        assertTrue(residual <= 1e-3f * scale, "residual " + residual);
+    }
+}